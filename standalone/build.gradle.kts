@@ -67,6 +67,7 @@ tasks {
         relocate("org.apache.xmlgraphics", "net.sourceforge.svg2ico.shadowjar.org.apache.xmlgraphics")
         relocate("org.w3c.dom.svg", "net.sourceforge.svg2ico.shadowjar.org.w3c.dom.svg")
         relocate("org.apache.commons.cli", "net.sourceforge.svg2ico.shadowjar.org.apache.commons.cli")
+        relocate("org.reactivestreams", "net.sourceforge.svg2ico.shadowjar.org.reactivestreams")
         relocate("org.w3c.css", "org.w3c.css")
         relocate("org.w3c.dom", "org.w3c.dom")
         exclude("**/org/w3c/dom/xpath/**/*")
@@ -19,10 +19,13 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Locale;
 
 import static java.lang.Float.parseFloat;
 import static java.lang.Integer.parseInt;
-import static net.sourceforge.svg2ico.Svg2Ico.svgToCompressedIco;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.SourceImage.sourceImage;
+import static net.sourceforge.svg2ico.SourceImage.sourceImageToCompress;
 import static net.sourceforge.svg2ico.Svg2Ico.svgToIco;
 
 public final class CommandLine {
@@ -34,7 +37,8 @@ public final class CommandLine {
             .addOption("height", true, "height of output ICO in pixels")
             .addOption("depth", true, "optional colour depth in bits per pixel")
             .addOption("compress", false, "optional flag to output compressed ICO")
-            .addOption("userStylesheet", true, "optional user stylesheet file");
+            .addOption("userStylesheet", true, "optional user stylesheet file")
+            .addOption("quality", true, "optional rendering quality: draft, balanced or quality (the default)");
 
     public static void main(String[] args) {
         org.apache.commons.cli.CommandLine commandLine;
@@ -42,7 +46,11 @@ public final class CommandLine {
             commandLine = new DefaultParser().parse(OPTIONS, args);
             if (!commandLine.hasOption("src") || !commandLine.hasOption("dest") || !commandLine.hasOption("width") || !commandLine.hasOption("height")) {
                 printHelp();
+            } else if (!isRenderingQuality(commandLine.getOptionValue("quality", "quality"))) {
+                System.err.println("quality must be one of draft, balanced or quality");
+                printHelp();
             } else {
+                final RenderingQuality renderingQuality = RenderingQuality.valueOf(commandLine.getOptionValue("quality", "quality").toUpperCase(Locale.ROOT));
                 try {
                     File src = new File(commandLine.getOptionValue("src"));
                     File dest = new File(commandLine.getOptionValue("dest"));
@@ -55,38 +63,40 @@ public final class CommandLine {
                         ) {
                             float width = parseFloat(commandLine.getOptionValue("width"));
                             float height = parseFloat(commandLine.getOptionValue("height"));
+                            final SourceImage sourceImage;
                             if (commandLine.hasOption("depth")) {
                                 int depth = parseInt(commandLine.getOptionValue("depth"));
                                 if (commandLine.hasOption("userStylesheet")) {
                                     File userStylesheet = new File(commandLine.getOptionValue("userStylesheet"));
                                     if (commandLine.hasOption("compress")) {
-                                        svgToCompressedIco(srcFileInputStream, destFileOutputStream, width, height, depth, userStylesheet.toURI());
+                                        sourceImage = sourceImageToCompress(srcFileInputStream, width, height, depth, userStylesheet.toURI());
                                     } else {
-                                        svgToIco(srcFileInputStream, destFileOutputStream, width, height, depth, userStylesheet.toURI());
+                                        sourceImage = sourceImage(srcFileInputStream, width, height, depth, userStylesheet.toURI());
                                     }
                                 } else {
                                     if (commandLine.hasOption("compress")) {
-                                        svgToCompressedIco(srcFileInputStream, destFileOutputStream, width, height, depth);
+                                        sourceImage = sourceImageToCompress(srcFileInputStream, width, height, depth);
                                     } else {
-                                        svgToIco(srcFileInputStream, destFileOutputStream, width, height, depth);
+                                        sourceImage = sourceImage(srcFileInputStream, width, height, depth);
                                     }
                                 }
                             } else {
                                 if (commandLine.hasOption("userStylesheet")) {
                                     File userStylesheet = new File(commandLine.getOptionValue("userStylesheet"));
                                     if (commandLine.hasOption("compress")) {
-                                        svgToCompressedIco(srcFileInputStream, destFileOutputStream, width, height, userStylesheet.toURI());
+                                        sourceImage = sourceImageToCompress(srcFileInputStream, width, height, userStylesheet.toURI());
                                     } else {
-                                        svgToIco(srcFileInputStream, destFileOutputStream, width, height, userStylesheet.toURI());
+                                        sourceImage = sourceImage(srcFileInputStream, width, height, userStylesheet.toURI());
                                     }
                                 } else {
                                     if (commandLine.hasOption("compress")) {
-                                        svgToCompressedIco(srcFileInputStream, destFileOutputStream, width, height);
+                                        sourceImage = sourceImageToCompress(srcFileInputStream, width, height);
                                     } else {
-                                        svgToIco(srcFileInputStream, destFileOutputStream, width, height);
+                                        sourceImage = sourceImage(srcFileInputStream, width, height);
                                     }
                                 }
                             }
+                            svgToIco(destFileOutputStream, sourceImage.withRenderOptions(renderOptions().withRenderingQuality(renderingQuality)));
                         }
                     }
                 } catch (ImageConversionException | IOException e) {
@@ -99,6 +109,15 @@ public final class CommandLine {
         }
     }
 
+    private static boolean isRenderingQuality(final String value) {
+        for (final RenderingQuality renderingQuality : RenderingQuality.values()) {
+            if (renderingQuality.name().equalsIgnoreCase(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static void printFailure(final Exception e) {
         System.err.println("failed to create ICO");
         e.printStackTrace();
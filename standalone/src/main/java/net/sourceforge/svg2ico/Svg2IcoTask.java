@@ -18,6 +18,7 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
 import static net.sourceforge.svg2ico.SourceImage.sourceImage;
 import static net.sourceforge.svg2ico.SourceImage.sourceImageToCompress;
 import static net.sourceforge.svg2ico.Svg2Ico.svgToIco;
@@ -31,6 +32,7 @@ public final class Svg2IcoTask extends Task {
     private Float height;
     private Integer depth;
     private Boolean compress;
+    private RenderingQuality quality;
     private final List<SourceImage> sourceImages = new LinkedList<>();
 
     public void execute() {
@@ -38,7 +40,7 @@ public final class Svg2IcoTask extends Task {
             throw new BuildException("Must set src, width and height attributes or supply at least one sourceImage nested element.");
         } else {
             if (isSet(src) && isSet(width) && isSet(height)) {
-                sourceImages.add(0, new SourceImage(src, userStylesheet, width, height, depth, compress));
+                sourceImages.add(0, new SourceImage(src, userStylesheet, width, height, depth, compress, quality));
             }
             try (FileOutputStream outputStream = new FileOutputStream(checkSet("dest", dest))) {
                 final List<Closeable> stuffToClose = new ArrayList<>(sourceImages.size());
@@ -79,7 +81,7 @@ public final class Svg2IcoTask extends Task {
                                 }
                             }
                         }
-                        apiSourceImages.add(apiSourceImage);
+                        apiSourceImages.add(isSet(sourceImage.quality) ? apiSourceImage.withRenderOptions(renderOptions().withRenderingQuality(sourceImage.quality)) : apiSourceImage);
                     }
                     svgToIco(outputStream, apiSourceImages);
                 } finally {
@@ -105,6 +107,15 @@ public final class Svg2IcoTask extends Task {
         return value != null;
     }
 
+    private static RenderingQuality renderingQuality(final String quality) {
+        for (final RenderingQuality renderingQuality : RenderingQuality.values()) {
+            if (renderingQuality.name().equalsIgnoreCase(quality)) {
+                return renderingQuality;
+            }
+        }
+        throw new BuildException("Quality must be one of draft, balanced or quality, but was " + quality + ".");
+    }
+
     public void setDest(final File dest) {
         this.dest = dest;
     }
@@ -133,6 +144,10 @@ public final class Svg2IcoTask extends Task {
         this.compress = compress;
     }
 
+    public void setQuality(final String quality) {
+        this.quality = renderingQuality(quality);
+    }
+
     public void addConfiguredSourceImage(SourceImage sourceImage) {
         sourceImages.add(sourceImage);
     }
@@ -144,17 +159,23 @@ public final class Svg2IcoTask extends Task {
         private Float height;
         private Integer depth;
         private Boolean compress;
+        private RenderingQuality quality;
 
         public SourceImage() {
         }
 
         public SourceImage(File src, File userStylesheet, Float width, Float height, Integer depth, Boolean compress) {
+            this(src, userStylesheet, width, height, depth, compress, RenderingQuality.BALANCED);
+        }
+
+        public SourceImage(File src, File userStylesheet, Float width, Float height, Integer depth, Boolean compress, RenderingQuality quality) {
             this.src = src;
             this.userStylesheet = userStylesheet;
             this.width = width;
             this.height = height;
             this.depth = depth;
             this.compress = compress;
+            this.quality = quality;
         }
 
         public void setSrc(final File src) {
@@ -180,5 +201,9 @@ public final class Svg2IcoTask extends Task {
         public void setCompress(final boolean compress) {
             this.compress = compress;
         }
+
+        public void setQuality(final String quality) {
+            this.quality = renderingQuality(quality);
+        }
     }
 }
@@ -10,10 +10,13 @@
 
 package com.gitlab.svg2ico
 
+import net.sourceforge.svg2ico.RenderingQuality
 import org.gradle.api.Action
 import org.gradle.api.file.RegularFileProperty
 import org.gradle.api.model.ObjectFactory
 import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Input
 import org.gradle.api.tasks.InputFile
 import org.gradle.api.tasks.Nested
 import org.gradle.api.tasks.Optional
@@ -28,6 +31,10 @@ abstract class Source @Inject constructor(private val objectFactory: ObjectFacto
     @get:Optional
     abstract val userStyleSheet: RegularFileProperty
 
+    @get:Input
+    @get:Optional
+    abstract val quality: Property<RenderingQuality>
+
     @get:Nested
     val outputDimensions: ListProperty<OutputDimension> = objectFactory.listProperty(OutputDimension::class.java)
         .convention(listOf(64, 48, 32, 24, 16).map { dimension ->
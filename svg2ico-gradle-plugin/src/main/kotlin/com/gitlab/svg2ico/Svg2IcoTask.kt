@@ -11,6 +11,8 @@
 package com.gitlab.svg2ico
 
 import net.sourceforge.svg2ico.ImageConversionException
+import net.sourceforge.svg2ico.RenderOptions.renderOptions
+import net.sourceforge.svg2ico.RenderingQuality
 import net.sourceforge.svg2ico.SourceImage
 import net.sourceforge.svg2ico.SourceImage.sourceImage
 import net.sourceforge.svg2ico.Svg2Ico
@@ -19,6 +21,7 @@ import org.gradle.api.DefaultTask
 import org.gradle.api.file.RegularFileProperty
 import org.gradle.api.model.ObjectFactory
 import org.gradle.api.provider.ListProperty
+import org.gradle.api.provider.Property
 import org.gradle.api.tasks.*
 import java.io.IOException
 import javax.inject.Inject
@@ -40,10 +43,10 @@ abstract class Svg2IcoTask @Inject constructor(private val objectFactory: Object
 
     @TaskAction
     fun apply() {
-        data class Input(val sourcePath: RegularFileProperty, val userStylesheet: RegularFileProperty, val outputDimension: OutputDimension)
+        data class Input(val sourcePath: RegularFileProperty, val userStylesheet: RegularFileProperty, val quality: Property<RenderingQuality>, val outputDimension: OutputDimension)
 
         val inputs = sources.get().flatMap { source ->
-            source.outputDimensions.get().map { Input(source.sourcePath, source.userStyleSheet, it) }
+            source.outputDimensions.get().map { Input(source.sourcePath, source.userStyleSheet, source.quality, it) }
         }
         try {
             destination.get().asFile.outputStream().use { destinationOutputStream ->
@@ -67,7 +70,7 @@ abstract class Svg2IcoTask @Inject constructor(private val objectFactory: Object
                                     input.outputDimension.height.get().toFloat()
                                 )
                             )
-                            acc(sourceImages + sourceImage)
+                            acc(sourceImages + input.quality.map { sourceImage.withRenderOptions(renderOptions().withRenderingQuality(it)) }.getOrElse(sourceImage))
                         }
                     }
                 }(emptyList())
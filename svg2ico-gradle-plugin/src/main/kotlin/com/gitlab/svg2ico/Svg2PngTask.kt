@@ -11,6 +11,9 @@
 package com.gitlab.svg2ico
 
 import net.sourceforge.svg2ico.ImageConversionException
+import net.sourceforge.svg2ico.RenderOptions.renderOptions
+import net.sourceforge.svg2ico.RenderingQuality
+import net.sourceforge.svg2ico.SourceImage.sourceImage
 import net.sourceforge.svg2ico.Svg2Png
 import org.gradle.api.DefaultTask
 import org.gradle.api.file.RegularFileProperty
@@ -28,6 +31,10 @@ abstract class Svg2PngTask : DefaultTask() {
     @get:Optional
     abstract val userStyleSheet: RegularFileProperty
 
+    @get:Input
+    @get:Optional
+    abstract val quality: Property<RenderingQuality>
+
     @get:Input
     abstract val width: Property<Int>
 
@@ -42,24 +49,24 @@ abstract class Svg2PngTask : DefaultTask() {
         try {
             destination.get().asFile.outputStream().use { destinationOutputStream ->
                 source.get().asFile.inputStream().use { sourceInputStream ->
-                    userStyleSheet.map {
-                        {
-                            Svg2Png.svgToPng(
-                                sourceInputStream,
-                                destinationOutputStream,
-                                width.get().toFloat(),
-                                height.get().toFloat(),
-                                it.asFile.toURI()
-                            )
-                        }
-                    }.getOrElse {
-                        Svg2Png.svgToPng(
+                    val sourceImage = userStyleSheet.map {
+                        sourceImage(
                             sourceInputStream,
-                            destinationOutputStream,
                             width.get().toFloat(),
                             height.get().toFloat(),
+                            it.asFile.toURI()
+                        )
+                    }.getOrElse(
+                        sourceImage(
+                            sourceInputStream,
+                            width.get().toFloat(),
+                            height.get().toFloat()
                         )
-                    }()
+                    )
+                    Svg2Png.svgToPng(
+                        destinationOutputStream,
+                        quality.map { sourceImage.withRenderOptions(renderOptions().withRenderingQuality(it)) }.getOrElse(sourceImage)
+                    )
                 }
             }
         } catch (e: ImageConversionException) {
@@ -111,4 +111,48 @@ class Svg2PngTaskTest {
                 .shouldBeAFile()
         }
 
-}
\ No newline at end of file
+    @TestFactory
+    fun `Can choose rendering quality`() =
+        KotlinGroovyTestCase(
+            kotlin = """
+            plugins {
+                id("com.gitlab.svg2ico")
+            }
+            
+            tasks.register("png", com.gitlab.svg2ico.Svg2PngTask::class) {
+                source = file("resources/favicon.svg")
+                width = 128
+                height = 128
+                quality = net.sourceforge.svg2ico.RenderingQuality.DRAFT
+                destination = project.layout.buildDirectory.file("icons/favicon.png")
+            }
+        """,
+            groovy = """
+            plugins {
+                id 'com.gitlab.svg2ico'
+            }
+            
+            task png (type : Svg2PngTask) {
+                source = file('resources/favicon.svg')
+                width = 128
+                height = 128
+                quality = net.sourceforge.svg2ico.RenderingQuality.DRAFT
+                destination = project.layout.buildDirectory.file('icons/favicon.png')
+            }
+        """
+        ).test {
+            writeSampleSvg(it.resolve(Path("resources")), "favicon.svg")
+
+            val result: BuildResult = GradleRunner.create()
+                .withProjectDir(it.toFile())
+                .withArguments("png")
+                .withPluginClasspath()
+                .build()
+
+            result.task(":png").shouldNotBeNull().outcome shouldBe TaskOutcome.SUCCESS
+
+            it.resolve("build/icons/favicon.png").toFile()
+                .shouldBeAFile()
+        }
+
+}
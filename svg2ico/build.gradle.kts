@@ -15,7 +15,7 @@ buildscript {
 }
 
 plugins {
-    java
+    `java-library`
     signing
     `maven-publish`
     `jvm-test-suite`
@@ -40,6 +40,7 @@ java {
 val userGuide: Configuration by configurations.creating
 
 dependencies {
+    api(libs.reactiveStreams)
     implementation(libs.batikTranscoder)
     implementation(libs.image4j)
 
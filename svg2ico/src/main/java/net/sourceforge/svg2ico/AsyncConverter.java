@@ -0,0 +1,210 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+// Reads sources and writes outputs on the I/O executor, and parses, renders and encodes on the render executor, which, being CPU bound, is best bounded to about
+// as many threads as there are processors. Cancelling a returned future interrupts its render, which then stops as it would for any other interrupt.
+public final class AsyncConverter {
+
+    private final Executor renderExecutor;
+    private final Executor ioExecutor;
+
+    private AsyncConverter(final Executor renderExecutor, final Executor ioExecutor) {
+        this.renderExecutor = renderExecutor;
+        this.ioExecutor = ioExecutor;
+    }
+
+    public static AsyncConverter asyncConverter(final Executor renderExecutor, final Executor ioExecutor) {
+        if (renderExecutor == null) {
+            throw new IllegalArgumentException("Render executor must not be null");
+        } else if (ioExecutor == null) {
+            throw new IllegalArgumentException("I/O executor must not be null");
+        }
+        return new AsyncConverter(renderExecutor, ioExecutor);
+    }
+
+    public CompletableFuture<Void> svgToIco(final OutputStream outputStream, final SourceImage... sourceImages) {
+        return svgToIco(outputStream, asList(sourceImages));
+    }
+
+    public CompletableFuture<Void> svgToIco(final OutputStream outputStream, final List<SourceImage> sourceImages) {
+        return convert(new ArrayList<>(sourceImages), new Conversion<byte[]>() {
+            @Override
+            byte[] render(final List<SourceImage> bufferedSourceImages) throws IOException, ImageConversionException {
+                final ByteArrayOutputStream ico = new ByteArrayOutputStream();
+                Svg2Ico.svgToIco(ico, bufferedSourceImages);
+                return ico.toByteArray();
+            }
+        }, outputStream);
+    }
+
+    public CompletableFuture<Void> svgToPng(final OutputStream outputStream, final SourceImage sourceImage) {
+        return convert(singletonList(sourceImage), new Conversion<byte[]>() {
+            @Override
+            byte[] render(final List<SourceImage> bufferedSourceImages) throws IOException, ImageConversionException {
+                final ByteArrayOutputStream png = new ByteArrayOutputStream();
+                Svg2Png.svgToPng(png, bufferedSourceImages.get(0));
+                return png.toByteArray();
+            }
+        }, outputStream);
+    }
+
+    public CompletableFuture<BufferedImage> svgToRaster(final SourceImage sourceImage) {
+        return convert(singletonList(sourceImage), new Conversion<BufferedImage>() {
+            @Override
+            BufferedImage render(final List<SourceImage> bufferedSourceImages) throws ImageConversionException {
+                return bufferedSourceImages.get(0).toBufferedImage();
+            }
+        });
+    }
+
+    private CompletableFuture<Void> convert(final List<SourceImage> sourceImages, final Conversion<byte[]> conversion, final OutputStream outputStream) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        final CompletableFuture<byte[]> encoded = convert(sourceImages, conversion);
+        encoded.whenComplete(new BiConsumer<byte[], Throwable>() {
+            @Override
+            public void accept(final byte[] bytes, final Throwable throwable) {
+                if (throwable != null) {
+                    result.completeExceptionally(throwable);
+                } else {
+                    execute(ioExecutor, new Stage(result) {
+                        @Override
+                        void runStage() throws IOException {
+                            outputStream.write(bytes);
+                            outputStream.flush();
+                            result.complete(null);
+                        }
+                    });
+                }
+            }
+        });
+        result.whenComplete(new BiConsumer<Void, Throwable>() {
+            @Override
+            public void accept(final Void nothing, final Throwable throwable) {
+                if (result.isCancelled()) {
+                    encoded.cancel(true);
+                }
+            }
+        });
+        return result;
+    }
+
+    private <T> CompletableFuture<T> convert(final List<SourceImage> sourceImages, final Conversion<T> conversion) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final Interrupter interrupter = new Interrupter();
+        result.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(final T rendered, final Throwable throwable) {
+                if (result.isCancelled()) {
+                    interrupter.interrupt();
+                }
+            }
+        });
+        execute(ioExecutor, new Stage(result) {
+            @Override
+            void runStage() throws IOException {
+                final List<SourceImage> bufferedSourceImages = SourceImage.buffered(sourceImages);
+                execute(renderExecutor, new Stage(result) {
+                    @Override
+                    void runStage() throws IOException, ImageConversionException {
+                        interrupter.enter();
+                        try {
+                            result.complete(conversion.render(bufferedSourceImages));
+                        } finally {
+                            interrupter.exit();
+                        }
+                    }
+                });
+            }
+        });
+        return result;
+    }
+
+    private static void execute(final Executor executor, final Stage stage) {
+        try {
+            executor.execute(stage);
+        } catch (RejectedExecutionException e) {
+            stage.result.completeExceptionally(e);
+        }
+    }
+
+    private abstract static class Conversion<T> {
+        abstract T render(List<SourceImage> bufferedSourceImages) throws IOException, ImageConversionException;
+    }
+
+    private abstract static class Stage implements Runnable {
+        private final CompletableFuture<?> result;
+
+        Stage(final CompletableFuture<?> result) {
+            this.result = result;
+        }
+
+        // A stage whose future is already done, because it was cancelled, has nothing left to do. Anything a stage throws, even running out of memory, fails
+        // the future, rather than leaving it to wait forever.
+        @Override
+        public final void run() {
+            if (!result.isDone()) {
+                try {
+                    runStage();
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }
+
+        abstract void runStage() throws IOException, ImageConversionException;
+    }
+
+    // Only interrupts the thread while it's rendering, and clears the interrupt afterwards, so an executor's thread isn't left interrupted for whatever it runs next.
+    private static final class Interrupter {
+        private Thread thread = null;
+        private boolean cancelled = false;
+        private boolean interrupted = false;
+
+        synchronized void enter() {
+            thread = Thread.currentThread();
+            if (cancelled) {
+                interrupted = true;
+                thread.interrupt();
+            }
+        }
+
+        synchronized void exit() {
+            thread = null;
+            if (interrupted) {
+                Thread.interrupted();
+            }
+        }
+
+        synchronized void interrupt() {
+            cancelled = true;
+            if (thread != null) {
+                interrupted = true;
+                thread.interrupt();
+            }
+        }
+    }
+
+}
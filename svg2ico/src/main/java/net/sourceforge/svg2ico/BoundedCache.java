@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+final class BoundedCache<K, V> {
+
+    private final Map<K, V> entries;
+
+    BoundedCache(final int maximumSize) {
+        entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return size() > maximumSize;
+            }
+        };
+    }
+
+    synchronized V get(final K key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(final K key, final V value) {
+        entries.put(key, value);
+    }
+
+}
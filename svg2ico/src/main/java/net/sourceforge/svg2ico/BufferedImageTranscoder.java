@@ -0,0 +1,278 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.Bridge;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.DocumentLoader;
+import org.apache.batik.bridge.ExternalResourceSecurity;
+import org.apache.batik.bridge.FontFamilyResolver;
+import org.apache.batik.bridge.RelaxedExternalResourceSecurity;
+import org.apache.batik.bridge.UserAgent;
+import org.apache.batik.bridge.svg12.SVG12BridgeContext;
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.gvt.renderer.ImageRenderer;
+import org.apache.batik.transcoder.TranscoderOutput;
+import org.apache.batik.transcoder.image.ImageTranscoder;
+import org.apache.batik.util.ParsedURL;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.net.URI;
+
+import static org.apache.batik.util.SVGConstants.SVG_ANIMATE_COLOR_TAG;
+import static org.apache.batik.util.SVGConstants.SVG_ANIMATE_MOTION_TAG;
+import static org.apache.batik.util.SVGConstants.SVG_ANIMATE_TAG;
+import static org.apache.batik.util.SVGConstants.SVG_ANIMATE_TRANSFORM_TAG;
+import static org.apache.batik.util.SVGConstants.SVG_NAMESPACE_URI;
+import static org.apache.batik.util.SVGConstants.SVG_SET_TAG;
+
+final class BufferedImageTranscoder extends ImageTranscoder {
+
+    private static final String[] ANIMATION_TAGS = {SVG_ANIMATE_TAG, SVG_ANIMATE_COLOR_TAG, SVG_ANIMATE_MOTION_TAG, SVG_ANIMATE_TRANSFORM_TAG, SVG_SET_TAG};
+
+    private final URI userStylesheet;
+    private final RenderOptions renderOptions;
+    private final RenderBudget renderBudget;
+    private final ImageRenderer imageRenderer;
+    private ConfiguredRenderer configuredRenderer = null;
+    private BufferedImage img = null;
+
+    BufferedImageTranscoder(final URI userStylesheet, final RenderOptions renderOptions, final RenderBudget renderBudget) {
+        this(userStylesheet, renderOptions, renderBudget, null);
+    }
+
+    // The image renderer, if there is one, replaces the one that rasterises the document, for example to record it as a display list instead.
+    BufferedImageTranscoder(final URI userStylesheet, final RenderOptions renderOptions, final RenderBudget renderBudget, final ImageRenderer imageRenderer) {
+        this.userStylesheet = userStylesheet;
+        this.renderOptions = renderOptions;
+        this.renderBudget = renderBudget;
+        this.imageRenderer = imageRenderer;
+    }
+
+    @Override
+    public BufferedImage createImage(int w, int h) {
+        if (configuredRenderer != null && configuredRenderer.stripImage() != null) {
+            return configuredRenderer.stripImage();
+        }
+        return new BufferedImage(w, h, renderOptions.premultipliedAlpha() ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Override
+    public void writeImage(BufferedImage img, TranscoderOutput output) {
+        this.img = img.getType() == BufferedImage.TYPE_INT_ARGB_PRE ? straightAlpha(img) : img;
+    }
+
+    // Encoders and everything else downstream expect straight alpha, so the premultiplied image is converted in place, once, rather than pixel by pixel as they read it.
+    private static BufferedImage straightAlpha(final BufferedImage premultipliedImage) {
+        final WritableRaster raster = premultipliedImage.getRaster();
+        PixelKernels.unpremultiply(((DataBufferInt) raster.getDataBuffer()).getData());
+        return new BufferedImage(ColorModel.getRGBdefault(), raster, false, null);
+    }
+
+    BufferedImage getBufferedImage() {
+        return img;
+    }
+
+    float imageWidth() {
+        return width;
+    }
+
+    float imageHeight() {
+        return height;
+    }
+
+    @Override
+    protected ImageRenderer createRenderer() {
+        ImageRenderer r;
+        if (imageRenderer != null) {
+            r = imageRenderer;
+        } else {
+            // The tree is built before the renderer is asked for, and any render can be cancelled, so painting it always checks the budget as it goes.
+            PaintCheckpoints.addPaintCheckpoints(root, renderBudget);
+            if (renderOptions.levelOfDetailThreshold() > 0 || renderOptions.premultipliedAlpha() || renderOptions.offHeapRasters()) {
+                configuredRenderer = new ConfiguredRenderer(renderOptions, renderBudget);
+                r = configuredRenderer;
+            } else {
+                r = super.createRenderer();
+            }
+        }
+
+        RenderingHints rh = r.getRenderingHints();
+
+        rh.add(renderOptions.renderingQuality().renderingHints());
+
+        r.setRenderingHints(rh);
+
+        return r;
+    }
+
+    @Override
+    protected UserAgent createUserAgent() {
+        return new SVGAbstractTranscoderUserAgent() {
+            @Override
+            public FontFamilyResolver getFontFamilyResolver() {
+                return ctx == null ? super.getFontFamilyResolver() : new CachingFontFamilyResolver(super.getFontFamilyResolver(), renderOptions.resourceResolver(), ctx);
+            }
+
+            // Resources the resolver provides are local, so they don't need Batik's protection against fetching external resources.
+            @Override
+            public ExternalResourceSecurity getExternalResourceSecurity(final ParsedURL resourceURL, final ParsedURL docURL) {
+                if (resolves(renderOptions.resourceResolver(), resourceURL)) {
+                    return new RelaxedExternalResourceSecurity(resourceURL, docURL);
+                }
+                return super.getExternalResourceSecurity(resourceURL, docURL);
+            }
+        };
+    }
+
+    // A resolver that fails hasn't provided the resource, so it gets the same protection as any other. What it does provide is cached, so loading it
+    // afterwards doesn't resolve it again.
+    private static boolean resolves(final ResourceResolver resourceResolver, final ParsedURL resourceURL) {
+        if (resourceResolver == null) {
+            return false;
+        }
+        try {
+            return resourceResolver.content(resourceURL.toString()) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Rather than handing Batik the user stylesheet's URI to fetch and parse for every render, the bridge contexts apply an already parsed copy from the cache.
+    @Override
+    protected BridgeContext createBridgeContext(final String svgVersion) {
+        final ResourceResolver resourceResolver = renderOptions.resourceResolver();
+        final DocumentLoader documentLoader = resourceResolver == null ? new DocumentLoader(userAgent) : new ResourceResolvingDocumentLoader(userAgent, resourceResolver);
+        if ("1.2".equals(svgVersion)) {
+            return new ConfiguredSvg12BridgeContext(userAgent, documentLoader, userStylesheet, renderOptions, renderBudget);
+        } else {
+            return new ConfiguredBridgeContext(userAgent, documentLoader, userStylesheet, renderOptions, renderBudget);
+        }
+    }
+
+    private static BridgeContext createBridgeContext(final UserAgent userAgent, final DocumentLoader documentLoader, final URI userStylesheet, final RenderOptions renderOptions, final RenderBudget renderBudget, final SVGOMDocument document) {
+        if (document.isSVG12()) {
+            return new ConfiguredSvg12BridgeContext(userAgent, documentLoader, userStylesheet, renderOptions, renderBudget);
+        } else {
+            return new ConfiguredBridgeContext(userAgent, documentLoader, userStylesheet, renderOptions, renderBudget);
+        }
+    }
+
+    private static void applyUserStylesheet(final BridgeContext bridgeContext, final URI userStylesheet, final SVGOMDocument document) {
+        if (userStylesheet != null) {
+            final CSSEngine cssEngine = document.getCSSEngine();
+            try {
+                cssEngine.setUserAgentStyleSheet(StylesheetCache.styleSheet(userStylesheet, cssEngine));
+            } catch (Exception e) {
+                bridgeContext.getUserAgent().displayError(e);
+            }
+        }
+    }
+
+    private static void registerBridges(final BridgeContext bridgeContext, final RenderOptions renderOptions) {
+        bridgeContext.putBridge(new CachingImageElementBridge(renderOptions.resourceResolver()));
+        if (renderOptions.staticOnly()) {
+            // Without their bridges, animation elements are ignored outright, so the animation engine is never created for them.
+            for (final String animationTag : ANIMATION_TAGS) {
+                bridgeContext.removeBridge(SVG_NAMESPACE_URI, animationTag);
+            }
+        }
+    }
+
+    private static final class ConfiguredBridgeContext extends BridgeContext {
+        private final URI userStylesheet;
+        private final RenderOptions renderOptions;
+        private final RenderBudget renderBudget;
+
+        ConfiguredBridgeContext(final UserAgent userAgent, final DocumentLoader documentLoader, final URI userStylesheet, final RenderOptions renderOptions, final RenderBudget renderBudget) {
+            super(userAgent, documentLoader);
+            this.userStylesheet = userStylesheet;
+            this.renderOptions = renderOptions;
+            this.renderBudget = renderBudget;
+        }
+
+        @Override
+        protected void initializeDocument(final Document document) {
+            final SVGOMDocument svgDocument = (SVGOMDocument) document;
+            final boolean initialised = svgDocument.getCSSEngine() != null;
+            super.initializeDocument(document);
+            if (!initialised) {
+                applyUserStylesheet(this, userStylesheet, svgDocument);
+            }
+        }
+
+        @Override
+        public void registerSVGBridges() {
+            super.registerSVGBridges();
+            registerBridges(this, renderOptions);
+        }
+
+        @Override
+        public BridgeContext createBridgeContext(final SVGOMDocument document) {
+            return BufferedImageTranscoder.createBridgeContext(getUserAgent(), getDocumentLoader(), userStylesheet, renderOptions, renderBudget, document);
+        }
+
+        // Batik looks up the bridge for every element it builds, including each copy a use element makes, so this is where building is counted and checked.
+        @Override
+        public Bridge getBridge(final Element element) {
+            renderBudget.countElement();
+            return super.getBridge(element);
+        }
+    }
+
+    private static final class ConfiguredSvg12BridgeContext extends SVG12BridgeContext {
+        private final URI userStylesheet;
+        private final RenderOptions renderOptions;
+        private final RenderBudget renderBudget;
+
+        ConfiguredSvg12BridgeContext(final UserAgent userAgent, final DocumentLoader documentLoader, final URI userStylesheet, final RenderOptions renderOptions, final RenderBudget renderBudget) {
+            super(userAgent, documentLoader);
+            this.userStylesheet = userStylesheet;
+            this.renderOptions = renderOptions;
+            this.renderBudget = renderBudget;
+        }
+
+        @Override
+        protected void initializeDocument(final Document document) {
+            final SVGOMDocument svgDocument = (SVGOMDocument) document;
+            final boolean initialised = svgDocument.getCSSEngine() != null;
+            super.initializeDocument(document);
+            if (!initialised) {
+                applyUserStylesheet(this, userStylesheet, svgDocument);
+            }
+        }
+
+        @Override
+        public void registerSVGBridges() {
+            super.registerSVGBridges();
+            registerBridges(this, renderOptions);
+        }
+
+        @Override
+        public BridgeContext createBridgeContext(final SVGOMDocument document) {
+            return BufferedImageTranscoder.createBridgeContext(getUserAgent(), getDocumentLoader(), userStylesheet, renderOptions, renderBudget, document);
+        }
+
+        @Override
+        public Bridge getBridge(final Element element) {
+            renderBudget.countElement();
+            return super.getBridge(element);
+        }
+    }
+}
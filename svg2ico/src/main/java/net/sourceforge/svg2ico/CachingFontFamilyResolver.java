@@ -0,0 +1,157 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.CSSFontFace;
+import org.apache.batik.bridge.FontFace;
+import org.apache.batik.bridge.FontFamilyResolver;
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.css.engine.FontFaceRule;
+import org.apache.batik.css.engine.SVGCSSEngine;
+import org.apache.batik.css.engine.StyleMap;
+import org.apache.batik.css.engine.value.Value;
+import org.apache.batik.css.engine.value.ValueConstants;
+import org.apache.batik.gvt.font.AWTFontFamily;
+import org.apache.batik.gvt.font.GVTFontFamily;
+import org.apache.batik.util.ParsedURL;
+import org.w3c.dom.css.CSSValue;
+
+import java.awt.*;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static net.sourceforge.svg2ico.InputStreams.readAllBytes;
+import static net.sourceforge.svg2ico.Sha256.sha256Hex;
+
+final class CachingFontFamilyResolver implements FontFamilyResolver {
+
+    private static final BoundedCache<String, Font> FONTS = new BoundedCache<>(32);
+
+    private final FontFamilyResolver fontFamilyResolver;
+    private final ResourceResolver resourceResolver;
+    private final BridgeContext bridgeContext;
+
+    CachingFontFamilyResolver(final FontFamilyResolver fontFamilyResolver, final ResourceResolver resourceResolver, final BridgeContext bridgeContext) {
+        this.fontFamilyResolver = fontFamilyResolver;
+        this.resourceResolver = resourceResolver;
+        this.bridgeContext = bridgeContext;
+    }
+
+    @Override
+    public GVTFontFamily resolve(final String familyName) {
+        return fontFamilyResolver.resolve(familyName);
+    }
+
+    // Batik only hands over the font face, not the URLs in its src descriptor, so they're looked up from the matching @font-face rule.
+    @Override
+    public GVTFontFamily resolve(final String familyName, final FontFace fontFace) {
+        final GVTFontFamily fontFamily = fontFamilyResolver.resolve(familyName, fontFace);
+        if (fontFamily != null || !familyName.equals(fontFace.getFamilyName())) {
+            return fontFamily;
+        }
+        final CSSEngine cssEngine = ((SVGOMDocument) bridgeContext.getDocument()).getCSSEngine();
+        for (final Object rule : cssEngine.getFontFaces()) {
+            final FontFaceRule fontFaceRule = (FontFaceRule) rule;
+            final StyleMap styleMap = fontFaceRule.getStyleMap();
+            if (familyName.equalsIgnoreCase(CSSFontFace.getStringProp(styleMap, cssEngine, SVGCSSEngine.FONT_FAMILY_INDEX))
+                    && matches(styleMap.getValue(SVGCSSEngine.FONT_WEIGHT_INDEX), fontFace.getFontWeight())
+                    && matches(styleMap.getValue(SVGCSSEngine.FONT_STYLE_INDEX), fontFace.getFontStyle())) {
+                final Font font = font(styleMap.getValue(SVGCSSEngine.SRC_INDEX), fontFaceRule.getURL());
+                if (font != null) {
+                    return new AWTFontFamily(fontFace, font);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public GVTFontFamily loadFont(final InputStream in, final FontFace fontFace) throws Exception {
+        return fontFamilyResolver.loadFont(in, fontFace);
+    }
+
+    @Override
+    public GVTFontFamily getDefault() {
+        return fontFamilyResolver.getDefault();
+    }
+
+    @Override
+    public GVTFontFamily getFamilyThatCanDisplay(final char c) {
+        return fontFamilyResolver.getFamilyThatCanDisplay(c);
+    }
+
+    private static boolean matches(final Value value, final String expected) {
+        return value == null || value.getCssText().equals(expected);
+    }
+
+    private Font font(final Value src, final ParsedURL base) {
+        if (src == null || src == ValueConstants.NONE_VALUE) {
+            return null;
+        } else if (src.getCssValueType() == CSSValue.CSS_VALUE_LIST) {
+            for (int i = 0; i < src.getLength(); i++) {
+                final Font font = font(src.item(i), base);
+                if (font != null) {
+                    return font;
+                }
+            }
+            return null;
+        } else {
+            final Object srcValue = CSSFontFace.getSrcValue(src, base);
+            return srcValue instanceof ParsedURL && ((ParsedURL) srcValue).getRef() == null ? font((ParsedURL) srcValue) : null;
+        }
+    }
+
+    private Font font(final ParsedURL purl) {
+        final String uri = purl.toString();
+        if (resourceResolver != null) {
+            Font font = resourceResolver.fonts().get(uri);
+            if (font == null) {
+                try {
+                    final byte[] content = resourceResolver.content(uri);
+                    if (content != null) {
+                        font = font(content);
+                        resourceResolver.fonts().put(uri, font);
+                    }
+                } catch (IOException | FontFormatException e) {
+                    bridgeContext.getUserAgent().displayError(e);
+                }
+            }
+            if (font != null) {
+                return font;
+            }
+        }
+        // Anything that fails here is left for Batik to load, and to report, itself.
+        try {
+            final String documentUrl = ((SVGOMDocument) bridgeContext.getDocument()).getURL();
+            bridgeContext.getUserAgent().checkLoadExternalResource(purl, documentUrl == null ? null : new ParsedURL(documentUrl));
+            try (InputStream inputStream = purl.openStream()) {
+                return font(readAllBytes(inputStream));
+            }
+        } catch (SecurityException | IOException | FontFormatException e) {
+            return null;
+        }
+    }
+
+    // Fonts are shared by content, so each font file is only loaded once however many conversions use it, and the glyph outlines Java2D caches against the font carry over between them too.
+    private static Font font(final byte[] content) throws IOException, FontFormatException {
+        final String contentHash = sha256Hex(content);
+        Font font = FONTS.get(contentHash);
+        if (font == null) {
+            font = Font.createFont(Font.TRUETYPE_FONT, new ByteArrayInputStream(content));
+            FONTS.put(contentHash, font);
+        }
+        return font;
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.bridge.Bridge;
+import org.apache.batik.bridge.BridgeContext;
+import org.apache.batik.bridge.BridgeException;
+import org.apache.batik.bridge.SVGImageElementBridge;
+import org.apache.batik.ext.awt.image.renderable.Filter;
+import org.apache.batik.ext.awt.image.spi.ImageTagRegistry;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.ShapeNode;
+import org.apache.batik.util.ParsedURL;
+import org.apache.xmlgraphics.java2d.color.ICCColorSpaceWithIntent;
+import org.w3c.dom.Element;
+import org.w3c.dom.svg.SVGDocument;
+
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static net.sourceforge.svg2ico.InputStreams.readAllBytes;
+import static net.sourceforge.svg2ico.Sha256.sha256Hex;
+
+final class CachingImageElementBridge extends SVGImageElementBridge {
+
+    private static final BoundedCache<String, Filter> DATA_URI_IMAGES = new BoundedCache<>(32);
+
+    private final ResourceResolver resourceResolver;
+
+    CachingImageElementBridge(final ResourceResolver resourceResolver) {
+        this.resourceResolver = resourceResolver;
+    }
+
+    @Override
+    public Bridge getInstance() {
+        return new CachingImageElementBridge(resourceResolver);
+    }
+
+    @Override
+    protected GraphicsNode createImageGraphicsNode(final BridgeContext ctx, final Element e, final ParsedURL purl) {
+        final String uri = purl.toString();
+        byte[] content = resourceResolver == null ? null : content(ctx, e, uri);
+        final BoundedCache<String, Filter> images;
+        final String key;
+        if (content != null) {
+            images = resourceResolver.images();
+            key = uri;
+        } else if ("data".equals(purl.getProtocol())) {
+            // Embedded images are keyed by a digest of the data URI, so the cache doesn't hold on to a second copy of the encoded image.
+            images = DATA_URI_IMAGES;
+            key = sha256Hex(uri);
+        } else {
+            return super.createImageGraphicsNode(ctx, e, purl);
+        }
+        final Rectangle2D bounds = getImageBounds(ctx, e);
+        if (bounds.getWidth() == 0 || bounds.getHeight() == 0) {
+            final ShapeNode shapeNode = new ShapeNode();
+            shapeNode.setShape(bounds);
+            return shapeNode;
+        }
+        final ICCColorSpaceWithIntent colorspace = extractColorSpace(e, ctx);
+        // Decoded images are only shared when they're not colour managed, as the colour space is part of the decoding.
+        Filter image = colorspace == null ? images.get(key) : null;
+        if (image == null) {
+            if (content == null) {
+                content = decode(ctx, e, purl);
+            }
+            image = ImageTagRegistry.getRegistry().readURL(new ByteArrayInputStream(content), purl, colorspace, false, false);
+            if (image != null && colorspace == null) {
+                images.put(key, image);
+            }
+        }
+        if (image != null) {
+            return createRasterImageNode(ctx, e, image, purl);
+        }
+        try {
+            imgDocument = (SVGDocument) ctx.getDocumentLoader().loadDocument(uri, new ByteArrayInputStream(content));
+        } catch (IOException ioe) {
+            throw new BridgeException(ctx, e, ioe, ERR_URI_IO, new Object[]{uri});
+        }
+        return createSVGImageNode(ctx, e, imgDocument);
+    }
+
+    private byte[] content(final BridgeContext ctx, final Element e, final String uri) {
+        try {
+            return resourceResolver.content(uri);
+        } catch (IOException ioe) {
+            throw new BridgeException(ctx, e, ioe, ERR_URI_IO, new Object[]{uri});
+        }
+    }
+
+    private static byte[] decode(final BridgeContext ctx, final Element e, final ParsedURL purl) {
+        try (InputStream inputStream = purl.openStream()) {
+            return readAllBytes(inputStream);
+        } catch (IOException ioe) {
+            throw new BridgeException(ctx, e, ioe, ERR_URI_IO, new Object[]{purl.toString()});
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.ext.awt.image.GraphicsUtil;
+import org.apache.batik.ext.awt.image.rendered.CachableRed;
+import org.apache.batik.ext.awt.image.rendered.TranslateRed;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.filter.GraphicsNodeRed8Bit;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.nio.IntBuffer;
+
+final class ConfiguredRenderer extends StaticRenderer {
+
+    private static final int STRIP_PIXELS = 1 << 16;
+
+    private final float levelOfDetailThreshold;
+    private final boolean premultipliedAlpha;
+    private final boolean offHeapRasters;
+    private final RenderBudget renderBudget;
+    private BufferedImage stripImage = null;
+
+    ConfiguredRenderer(final RenderOptions renderOptions, final RenderBudget renderBudget) {
+        this.levelOfDetailThreshold = renderOptions.levelOfDetailThreshold();
+        this.premultipliedAlpha = renderOptions.premultipliedAlpha();
+        this.offHeapRasters = renderOptions.offHeapRasters();
+        this.renderBudget = renderBudget;
+    }
+
+    // Prunes the tree of every node that would paint nothing but a sliver of a pixel, or nothing inside the image at all, before Batik rasterises it.
+    // Each render builds its own tree, so pruning it doesn't affect later renders of the same document.
+    @Override
+    public void setTree(final GraphicsNode rootGN) {
+        if (levelOfDetailThreshold > 0 && rootGN instanceof CompositeGraphicsNode) {
+            cull((CompositeGraphicsNode) rootGN, usr2dev, new Rectangle2D.Float(0, 0, offScreenWidth, offScreenHeight));
+        }
+        super.setTree(rootGN);
+    }
+
+    // Mirrors StaticRenderer.renderGNR, but rasterises the tree into premultiplied tiles where, away from macOS, Batik would use straight alpha ones.
+    @Override
+    protected CachableRed renderGNR() {
+        if (!premultipliedAlpha) {
+            return super.renderGNR();
+        }
+        final CachableRed graphicsNodeRed = graphicsNodeRed();
+        if (graphicsNodeRed == null) {
+            return null;
+        }
+        final CachableRed cachableRed = setupCache(graphicsNodeRed);
+        return new TranslateRed(cachableRed, cachableRed.getMinX() + Math.round((float) usr2dev.getTranslateX()), cachableRed.getMinY() + Math.round((float) usr2dev.getTranslateY()));
+    }
+
+    @Override
+    public void updateOffScreen(final int width, final int height) {
+        super.updateOffScreen(width, height);
+        if (offHeapRasters) {
+            stripImage = OffHeapRasters.offHeapImage(width, height);
+        }
+    }
+
+    // Rasterises a few rows at a time into a small strip on the heap, copying each into the image, so an off heap image is the only full size buffer.
+    // Strips stay well under half of G1's smallest region size, so they're never humongous.
+    @Override
+    public void repaint(final Shape area) {
+        if (stripImage == null) {
+            super.repaint(area);
+            return;
+        }
+        final CachableRed graphicsNodeRed = rootGN == null ? null : graphicsNodeRed();
+        if (graphicsNodeRed == null) {
+            return;
+        }
+        final int translateX = Math.round((float) usr2dev.getTranslateX());
+        final int translateY = Math.round((float) usr2dev.getTranslateY());
+        final int stripHeight = Math.max(1, Math.min(STRIP_PIXELS / Math.max(offScreenWidth, 1), offScreenHeight));
+        final WritableRaster strip = graphicsNodeRed.getColorModel().createCompatibleWritableRaster(offScreenWidth, stripHeight);
+        final int[] stripPixels = ((DataBufferInt) strip.getDataBuffer()).getData();
+        final IntBuffer pixels = OffHeapRasters.pixels(stripImage);
+        for (int y = 0; y < offScreenHeight; y += stripHeight) {
+            renderBudget.checkpoint();
+            final int height = Math.min(stripHeight, offScreenHeight - y);
+            graphicsNodeRed.copyData(strip.createWritableChild(0, 0, offScreenWidth, height, -translateX, y - translateY, null));
+            if (graphicsNodeRed.getColorModel().isAlphaPremultiplied()) {
+                PixelKernels.unpremultiply(stripPixels);
+            }
+            pixels.position(y * offScreenWidth);
+            pixels.put(stripPixels, 0, height * offScreenWidth);
+        }
+    }
+
+    // The image is already complete, so there's nothing for the transcoder to draw onto it.
+    @Override
+    public BufferedImage getOffScreen() {
+        return stripImage == null ? super.getOffScreen() : null;
+    }
+
+    BufferedImage stripImage() {
+        return stripImage;
+    }
+
+    private CachableRed graphicsNodeRed() {
+        final Rectangle2D bounds = rootGN.getPrimitiveBounds();
+        if (bounds == null || bounds.getWidth() <= 0 || bounds.getHeight() <= 0) {
+            return null;
+        }
+        final AffineTransform transform = new AffineTransform(usr2dev.getScaleX(), usr2dev.getShearY(), usr2dev.getShearX(), usr2dev.getScaleY(), 0, 0);
+        return premultipliedAlpha ? new PremultipliedGraphicsNodeRed(rootGN, transform, renderingHints) : new GraphicsNodeRed8Bit(rootGN, transform, true, renderingHints);
+    }
+
+    private void cull(final CompositeGraphicsNode compositeGraphicsNode, final AffineTransform parentTransform, final Rectangle2D image) {
+        final AffineTransform transform = new AffineTransform(parentTransform);
+        if (compositeGraphicsNode.getTransform() != null) {
+            transform.concatenate(compositeGraphicsNode.getTransform());
+        }
+        for (int i = compositeGraphicsNode.size() - 1; i >= 0; i--) {
+            final GraphicsNode child = (GraphicsNode) compositeGraphicsNode.get(i);
+            final Rectangle2D bounds = child.getTransformedBounds(transform);
+            if (bounds != null && (!bounds.intersects(image) || Math.max(bounds.getWidth(), bounds.getHeight()) < levelOfDetailThreshold)) {
+                compositeGraphicsNode.remove(i);
+            } else if (child instanceof CompositeGraphicsNode) {
+                cull((CompositeGraphicsNode) child, transform, image);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")  // Batik's raw Vector getSources() doesn't match RenderedImage's generic one.
+    private static final class PremultipliedGraphicsNodeRed extends GraphicsNodeRed8Bit {
+        PremultipliedGraphicsNodeRed(final GraphicsNode graphicsNode, final AffineTransform transform, final RenderingHints renderingHints) {
+            super(graphicsNode, transform, true, renderingHints);
+        }
+
+        @Override
+        public ColorModel createColorModel() {
+            return GraphicsUtil.sRGB_Pre;
+        }
+    }
+}
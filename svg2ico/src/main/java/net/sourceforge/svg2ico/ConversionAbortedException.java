@@ -0,0 +1,41 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+public final class ConversionAbortedException extends ImageConversionException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Reason reason;
+
+    ConversionAbortedException(final Reason reason) {
+        super(reason.message);
+        this.reason = reason;
+    }
+
+    public Reason reason() {
+        return reason;
+    }
+
+    public enum Reason {
+        CANCELLED("Conversion was cancelled"),
+        TIME_LIMIT_EXCEEDED("Conversion took longer than its time limit"),
+        PIXEL_LIMIT_EXCEEDED("Conversion would render more pixels than its pixel limit"),
+        ELEMENT_LIMIT_EXCEEDED("Document has more elements than its element limit"),
+        MEMORY_BUDGET_EXCEEDED("Conversion needs more memory than its memory budget could make available");
+
+        private final String message;
+
+        Reason(final String message) {
+            this.message = message;
+        }
+    }
+}
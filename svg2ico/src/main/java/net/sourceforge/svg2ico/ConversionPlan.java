@@ -0,0 +1,164 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static net.sourceforge.svg2ico.IcoFile.icoFile;
+import static net.sourceforge.svg2ico.SvgDocument.svgDocument;
+
+// Works out everything about an ICO that doesn't depend on the SVG once, when the plan is made: which distinct sizes to render, and, when every image is an
+// uncompressed 32 bit bitmap, the whole layout of the file, so applying it to an SVG only renders and copies pixels into a copy of a ready made file.
+// Plans are immutable, so one can be applied to any number of SVGs on any number of threads at once.
+public final class ConversionPlan {
+
+    private final List<IcoImage> icoImages;
+    private final URI userStylesheet;
+    private final RenderOptions renderOptions;
+    private final float[] renderWidths;
+    private final float[] renderHeights;
+    private final int[] renders;
+    private final int[] colourDepth;
+    private final boolean[] compress;
+    private final byte[] bitmapIco;
+    private final int[] pixelWidths;
+    private final int[] pixelHeights;
+    private final int[] imageDataOffsets;
+
+    private ConversionPlan(final List<IcoImage> icoImages, final URI userStylesheet, final RenderOptions renderOptions) {
+        this.icoImages = icoImages;
+        this.userStylesheet = userStylesheet;
+        this.renderOptions = renderOptions;
+        final int count = icoImages.size();
+        final List<IcoImage> distinctSizes = new ArrayList<>(count);
+        renders = new int[count];
+        colourDepth = new int[count];
+        compress = new boolean[count];
+        boolean allBitmaps = true;
+        for (int i = 0; i < count; i++) {
+            final IcoImage icoImage = icoImages.get(i);
+            int render = 0;
+            while (render < distinctSizes.size() && (Float.compare(distinctSizes.get(render).width(), icoImage.width()) != 0 || Float.compare(distinctSizes.get(render).height(), icoImage.height()) != 0)) {
+                render++;
+            }
+            if (render == distinctSizes.size()) {
+                distinctSizes.add(icoImage);
+            }
+            renders[i] = render;
+            colourDepth[i] = icoImage.colourDepth();
+            compress[i] = icoImage.compress();
+            allBitmaps &= !icoImage.compress() && (icoImage.colourDepth() == 32 || icoImage.colourDepth() == -1);
+        }
+        renderWidths = new float[distinctSizes.size()];
+        renderHeights = new float[distinctSizes.size()];
+        for (int render = 0; render < distinctSizes.size(); render++) {
+            renderWidths[render] = distinctSizes.get(render).width();
+            renderHeights[render] = distinctSizes.get(render).height();
+        }
+        pixelWidths = new int[count];
+        pixelHeights = new int[count];
+        imageDataOffsets = new int[count];
+        bitmapIco = allBitmaps ? bitmapIco() : null;
+    }
+
+    public static ConversionPlan conversionPlan(final IcoImage... icoImages) {
+        return conversionPlan(asList(icoImages));
+    }
+
+    public static ConversionPlan conversionPlan(final List<IcoImage> icoImages) {
+        return new ConversionPlan(new ArrayList<>(icoImages), null, RenderOptions.renderOptions());
+    }
+
+    public ConversionPlan withUserStylesheet(final URI userStylesheet) {
+        return new ConversionPlan(icoImages, userStylesheet, renderOptions);
+    }
+
+    public ConversionPlan withRenderOptions(final RenderOptions renderOptions) {
+        return new ConversionPlan(icoImages, userStylesheet, renderOptions);
+    }
+
+    public void apply(final InputStream inputStream, final OutputStream outputStream) throws IOException, ImageConversionException {
+        apply(svgDocument(inputStream, renderOptions), outputStream);
+    }
+
+    public void apply(final Reader reader, final OutputStream outputStream) throws IOException, ImageConversionException {
+        apply(svgDocument(reader, renderOptions), outputStream);
+    }
+
+    private void apply(final SvgDocument svgDocument, final OutputStream outputStream) throws IOException, ImageConversionException {
+        final BufferedImage[] rasters = new BufferedImage[renderWidths.length];
+        final MemoryReservations memoryReservations = new MemoryReservations();
+        try {
+            for (int render = 0; render < rasters.length; render++) {
+                svgDocument.plan(renderWidths[render], renderHeights[render], userStylesheet, renderOptions, memoryReservations);
+            }
+            memoryReservations.reserve();
+            for (int render = 0; render < rasters.length; render++) {
+                rasters[render] = svgDocument.render(renderWidths[render], renderHeights[render], userStylesheet, renderOptions, memoryReservations);
+            }
+            final List<BufferedImage> images = new ArrayList<>(renders.length);
+            for (final int render : renders) {
+                images.add(rasters[render]);
+            }
+            if (bitmapIco != null && fitsBitmapIco(images)) {
+                outputStream.write(bitmapIco(images));
+            } else {
+                IcoEncoder.write(images, colourDepth, compress, outputStream);
+            }
+        } finally {
+            memoryReservations.release();
+        }
+    }
+
+    // The header, directory and each bitmap's info header are filled in; the colours and transparency masks are left for each SVG's pixels.
+    private byte[] bitmapIco() {
+        final List<IcoEntry> entries = new ArrayList<>(icoImages.size());
+        for (int i = 0; i < icoImages.size(); i++) {
+            pixelWidths[i] = (int) (icoImages.get(i).width() + 0.5);  // Rounded the way Batik's transcoder rounds the image size.
+            pixelHeights[i] = (int) (icoImages.get(i).height() + 0.5);
+            entries.add(IcoEncoder.bitmapIcoEntry(pixelWidths[i], pixelHeights[i]));
+        }
+        final IcoFile icoFile = icoFile(entries);
+        for (int i = 0; i < entries.size(); i++) {
+            imageDataOffsets[i] = icoFile.imageDataOffset(i);
+        }
+        return icoFile.toByteArray();
+    }
+
+    private boolean fitsBitmapIco(final List<BufferedImage> images) {
+        for (int i = 0; i < images.size(); i++) {
+            final BufferedImage image = images.get(i);
+            if (image.getWidth() != pixelWidths[i] || image.getHeight() != pixelHeights[i]
+                    || colourDepth[i] == -1 && image.getType() != BufferedImage.TYPE_INT_ARGB && !OffHeapRasters.isOffHeap(image)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] bitmapIco(final List<BufferedImage> images) {
+        final byte[] ico = Arrays.copyOf(bitmapIco, bitmapIco.length);
+        for (int i = 0; i < images.size(); i++) {
+            IcoEncoder.writeBitmap(images.get(i), ico, imageDataOffsets[i]);
+        }
+        return ico;
+    }
+
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+// Converts each request it receives on the executor and publishes a result for it, in the order the conversions finish. Requests are only asked for from upstream
+// while fewer than the maximum are being converted or waiting for downstream demand, so however many there are, no more than that are held at once.
+// A failed conversion is published as a failed result; only upstream failing, or an Error, ends the stream early. On Java 9 and later, FlowAdapters turns this
+// into a java.util.concurrent.Flow.Processor.
+public final class ConversionProcessor implements Processor<ConversionRequest, ConversionResult> {
+
+    private final Executor executor;
+    private final int maximumInFlight;
+    private final Deque<ConversionResult> results = new ArrayDeque<>();
+    private Subscription upstream = null;
+    private Subscriber<? super ConversionResult> downstream = null;
+    private boolean subscribed = false;
+    private long demand = 0;
+    private int requested = 0;
+    private int inFlight = 0;
+    private boolean upstreamComplete = false;
+    private Throwable upstreamFailure = null;
+    private Throwable fatalFailure = null;
+    private boolean terminated = false;
+    private boolean draining = false;
+
+    private ConversionProcessor(final Executor executor, final int maximumInFlight) {
+        this.executor = executor;
+        this.maximumInFlight = maximumInFlight;
+    }
+
+    public static ConversionProcessor conversionProcessor(final Executor executor, final int maximumInFlight) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor must not be null");
+        } else if (maximumInFlight <= 0) {
+            throw new IllegalArgumentException("Maximum in flight must be positive, but was " + maximumInFlight);
+        }
+        return new ConversionProcessor(executor, maximumInFlight);
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super ConversionResult> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber must not be null");
+        }
+        final boolean alreadySubscribed;
+        synchronized (this) {
+            alreadySubscribed = subscribed;
+            subscribed = true;
+        }
+        if (alreadySubscribed) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(final long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A conversion processor can only have one subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new DownstreamSubscription());
+        // Nothing is published until onSubscribe has returned, even if the subscriber asked for results during it.
+        synchronized (this) {
+            downstream = subscriber;
+        }
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(final Subscription subscription) {
+        if (subscription == null) {
+            throw new NullPointerException("Subscription must not be null");
+        }
+        final boolean alreadySubscribed;
+        synchronized (this) {
+            alreadySubscribed = upstream != null || terminated;
+            if (!alreadySubscribed) {
+                upstream = subscription;
+            }
+        }
+        if (alreadySubscribed) {
+            subscription.cancel();
+        } else {
+            drain();
+        }
+    }
+
+    @Override
+    public void onNext(final ConversionRequest conversionRequest) {
+        if (conversionRequest == null) {
+            throw new NullPointerException("Conversion request must not be null");
+        }
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            requested--;
+            inFlight++;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    convert(conversionRequest);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            publish(ConversionResult.failed(conversionRequest, e));
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        if (throwable == null) {
+            throw new NullPointerException("Throwable must not be null");
+        }
+        completeUpstream(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        completeUpstream(null);
+    }
+
+    // Results of conversions already under way are still published before the stream ends.
+    private void completeUpstream(final Throwable failure) {
+        synchronized (this) {
+            upstreamComplete = true;
+            upstreamFailure = failure;
+        }
+        drain();
+    }
+
+    private void convert(final ConversionRequest conversionRequest) {
+        try {
+            conversionRequest.convert();
+            publish(ConversionResult.succeeded(conversionRequest));
+        } catch (IOException | ImageConversionException | RuntimeException e) {
+            publish(ConversionResult.failed(conversionRequest, e));
+        } catch (Error e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    private void publish(final ConversionResult conversionResult) {
+        synchronized (this) {
+            if (!terminated) {
+                results.addLast(conversionResult);
+            }
+        }
+        drain();
+    }
+
+    private void fail(final Throwable throwable) {
+        final Subscription subscription;
+        synchronized (this) {
+            if (fatalFailure == null) {
+                fatalFailure = throwable;
+            }
+            subscription = upstream;
+        }
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        drain();
+    }
+
+    // Only one thread signals downstream at a time; any other that changes the state while it is leaves the signalling to it.
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            final Subscriber<? super ConversionResult> subscriber;
+            final Subscription subscription;
+            ConversionResult conversionResult = null;
+            Throwable failure = null;
+            boolean complete = false;
+            long toRequest = 0;
+            synchronized (this) {
+                subscriber = downstream;
+                subscription = upstream;
+                if (subscriber == null || terminated) {
+                    draining = false;
+                    return;
+                }
+                if (fatalFailure != null) {
+                    failure = fatalFailure;
+                    complete = true;
+                } else if (demand > 0 && !results.isEmpty()) {
+                    conversionResult = results.removeFirst();
+                    demand--;
+                    inFlight--;
+                } else if (upstreamComplete && inFlight == 0) {
+                    failure = upstreamFailure;
+                    complete = true;
+                } else if (upstream != null && !upstreamComplete && inFlight + requested < maximumInFlight) {
+                    toRequest = maximumInFlight - inFlight - requested;
+                    requested += toRequest;
+                } else {
+                    draining = false;
+                    return;
+                }
+                if (complete) {
+                    terminated = true;
+                    results.clear();
+                }
+            }
+            if (conversionResult != null) {
+                subscriber.onNext(conversionResult);
+            } else if (complete && failure != null) {
+                subscriber.onError(failure);
+            } else if (complete) {
+                subscriber.onComplete();
+            } else {
+                subscription.request(toRequest);
+            }
+        }
+    }
+
+    private final class DownstreamSubscription implements Subscription {
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Subscribers must request a positive number of results, but requested " + n));
+                return;
+            }
+            synchronized (ConversionProcessor.this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            final Subscription subscription;
+            synchronized (ConversionProcessor.this) {
+                terminated = true;
+                results.clear();
+                subscription = upstream;
+            }
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+
+public abstract class ConversionRequest {
+
+    private final URI userStylesheet;
+    private final RenderOptions renderOptions;
+    private final List<Output> outputs;
+
+    private ConversionRequest(final URI userStylesheet, final RenderOptions renderOptions, final List<Output> outputs) {
+        this.userStylesheet = userStylesheet;
+        this.renderOptions = renderOptions;
+        this.outputs = outputs;
+    }
+
+    public static ConversionRequest conversionRequest(final InputStream inputStream, final Output... outputs) {
+        return conversionRequest(inputStream, asList(outputs));
+    }
+
+    public static ConversionRequest conversionRequest(final InputStream inputStream, final List<Output> outputs) {
+        return new InputStreamConversionRequest(inputStream, null, RenderOptions.renderOptions(), new ArrayList<>(outputs));
+    }
+
+    public static ConversionRequest conversionRequest(final Reader reader, final Output... outputs) {
+        return conversionRequest(reader, asList(outputs));
+    }
+
+    public static ConversionRequest conversionRequest(final Reader reader, final List<Output> outputs) {
+        return new ReaderConversionRequest(reader, null, RenderOptions.renderOptions(), new ArrayList<>(outputs));
+    }
+
+    public abstract ConversionRequest withUserStylesheet(URI userStylesheet);
+
+    public abstract ConversionRequest withRenderOptions(RenderOptions renderOptions);
+
+    abstract void convert() throws IOException, ImageConversionException;
+
+    URI userStylesheet() {
+        return userStylesheet;
+    }
+
+    RenderOptions renderOptions() {
+        return renderOptions;
+    }
+
+    List<Output> outputs() {
+        return outputs;
+    }
+
+    private static final class InputStreamConversionRequest extends ConversionRequest {
+        private final InputStream inputStream;
+
+        InputStreamConversionRequest(final InputStream inputStream, final URI userStylesheet, final RenderOptions renderOptions, final List<Output> outputs) {
+            super(userStylesheet, renderOptions, outputs);
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        public ConversionRequest withUserStylesheet(final URI userStylesheet) {
+            return new InputStreamConversionRequest(inputStream, userStylesheet, renderOptions(), outputs());
+        }
+
+        @Override
+        public ConversionRequest withRenderOptions(final RenderOptions renderOptions) {
+            return new InputStreamConversionRequest(inputStream, userStylesheet(), renderOptions, outputs());
+        }
+
+        @Override
+        void convert() throws IOException, ImageConversionException {
+            Svg2Outputs.svgToOutputs(inputStream, userStylesheet(), renderOptions(), outputs());
+        }
+    }
+
+    private static final class ReaderConversionRequest extends ConversionRequest {
+        private final Reader reader;
+
+        ReaderConversionRequest(final Reader reader, final URI userStylesheet, final RenderOptions renderOptions, final List<Output> outputs) {
+            super(userStylesheet, renderOptions, outputs);
+            this.reader = reader;
+        }
+
+        @Override
+        public ConversionRequest withUserStylesheet(final URI userStylesheet) {
+            return new ReaderConversionRequest(reader, userStylesheet, renderOptions(), outputs());
+        }
+
+        @Override
+        public ConversionRequest withRenderOptions(final RenderOptions renderOptions) {
+            return new ReaderConversionRequest(reader, userStylesheet(), renderOptions, outputs());
+        }
+
+        @Override
+        void convert() throws IOException, ImageConversionException {
+            Svg2Outputs.svgToOutputs(reader, userStylesheet(), renderOptions(), outputs());
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.io.IOException;
+
+public final class ConversionResult {
+
+    private final ConversionRequest conversionRequest;
+    private final Exception failure;
+
+    private ConversionResult(final ConversionRequest conversionRequest, final Exception failure) {
+        this.conversionRequest = conversionRequest;
+        this.failure = failure;
+    }
+
+    static ConversionResult succeeded(final ConversionRequest conversionRequest) {
+        return new ConversionResult(conversionRequest, null);
+    }
+
+    static ConversionResult failed(final ConversionRequest conversionRequest, final Exception failure) {
+        return new ConversionResult(conversionRequest, failure);
+    }
+
+    public ConversionRequest conversionRequest() {
+        return conversionRequest;
+    }
+
+    public boolean succeeded() {
+        return failure == null;
+    }
+
+    // Throws whatever the conversion failed with, as the blocking conversion would have; does nothing if it succeeded.
+    public void throwFailure() throws IOException, ImageConversionException {
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        } else if (failure instanceof ImageConversionException) {
+            throw (ImageConversionException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+}
@@ -0,0 +1,519 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.SvgDocument.svgDocument;
+
+// The Java2D operations Batik paints for a document, recorded once so they can be replayed at any size without Batik. Nothing here refers to Batik
+// outside the factory methods, so reading and painting a display list never loads it.
+public final class DisplayList {
+
+    private static final int MAGIC = 0x53564744;
+    private static final int VERSION = 1;
+
+    private static final String[] ALIGNMENTS = {"none", "xminymin", "xmidymin", "xmaxymin", "xminymid", "xmidymid", "xmaxymid", "xminymax", "xmidymax", "xmaxymax"};
+    private static final int ALIGN_NONE = 0;
+
+    private final float width;
+    private final float height;
+    private final float[] viewBox;
+    private final int align;
+    private final boolean slice;
+    private final List<Operation> operations;
+
+    DisplayList(final float width, final float height, final float[] viewBox, final int align, final boolean slice, final List<Operation> operations) {
+        this.width = width;
+        this.height = height;
+        this.viewBox = viewBox;
+        this.align = align;
+        this.slice = slice;
+        this.operations = unmodifiableList(operations);
+    }
+
+    public static DisplayList displayList(final InputStream inputStream) throws ImageConversionException {
+        return displayList(inputStream, null, renderOptions());
+    }
+
+    public static DisplayList displayList(final Reader reader) throws ImageConversionException {
+        return displayList(reader, null, renderOptions());
+    }
+
+    public static DisplayList displayList(final InputStream inputStream, final RenderOptions renderOptions) throws ImageConversionException {
+        return displayList(inputStream, null, renderOptions);
+    }
+
+    public static DisplayList displayList(final Reader reader, final RenderOptions renderOptions) throws ImageConversionException {
+        return displayList(reader, null, renderOptions);
+    }
+
+    public static DisplayList displayList(final InputStream inputStream, final URI userStylesheet, final RenderOptions renderOptions) throws ImageConversionException {
+        return svgDocument(inputStream, renderOptions).displayList(userStylesheet, renderOptions);
+    }
+
+    public static DisplayList displayList(final Reader reader, final URI userStylesheet, final RenderOptions renderOptions) throws ImageConversionException {
+        return svgDocument(reader, renderOptions).displayList(userStylesheet, renderOptions);
+    }
+
+    // Takes the root element's viewBox and preserveAspectRatio attributes; an empty or invalid view box is treated as absent.
+    static DisplayList displayList(final float width, final float height, final String viewBox, final String preserveAspectRatio, final List<Operation> operations) {
+        int align = asList(ALIGNMENTS).indexOf("xmidymid");
+        boolean slice = false;
+        for (final String token : preserveAspectRatio.trim().toLowerCase(Locale.ROOT).split("\\s+")) {
+            if (asList(ALIGNMENTS).contains(token)) {
+                align = asList(ALIGNMENTS).indexOf(token);
+            }
+            slice |= "slice".equals(token);
+        }
+        return new DisplayList(width, height, viewBox(viewBox), align, slice, operations);
+    }
+
+    static float[] viewBox(final String viewBox) {
+        final String[] values = viewBox.trim().split("[\\s,]+");
+        if (values.length != 4) {
+            return null;
+        }
+        final float[] result = new float[4];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                result[i] = Float.parseFloat(values[i]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return result[2] > 0 && result[3] > 0 ? result : null;
+    }
+
+    // Read whole, so every count can be checked against the bytes left before anything is allocated for it.
+    public static DisplayList readDisplayList(final InputStream inputStream) throws IOException {
+        final DataInputStream dataInputStream = new DataInputStream(new ByteArrayInputStream(InputStreams.readAllBytes(inputStream)));
+        if (dataInputStream.readInt() != MAGIC) {
+            throw new IOException("Not a display list");
+        }
+        final int version = dataInputStream.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported display list version " + version);
+        }
+        final float width = dataInputStream.readFloat();
+        final float height = dataInputStream.readFloat();
+        final float[] viewBox = dataInputStream.readBoolean() ? readFloats(dataInputStream, 4) : null;
+        final int align = dataInputStream.readUnsignedByte();
+        if (align > 9) {
+            throw new IOException("Unknown view box alignment " + align);
+        }
+        final boolean slice = dataInputStream.readBoolean();
+        final int operationCount = readCount(dataInputStream, Operation.MINIMUM_SIZE);
+        final List<Operation> operations = new ArrayList<>(operationCount);
+        for (int i = 0; i < operationCount; i++) {
+            operations.add(Operation.read(dataInputStream));
+        }
+        return new DisplayList(width, height, viewBox, align, slice, operations);
+    }
+
+    public float width() {
+        return width;
+    }
+
+    public float height() {
+        return height;
+    }
+
+    public void write(final OutputStream outputStream) throws IOException {
+        final DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+        dataOutputStream.writeInt(MAGIC);
+        dataOutputStream.writeByte(VERSION);
+        dataOutputStream.writeFloat(width);
+        dataOutputStream.writeFloat(height);
+        dataOutputStream.writeBoolean(viewBox != null);
+        if (viewBox != null) {
+            writeFloats(dataOutputStream, viewBox);
+        }
+        dataOutputStream.writeByte(align);
+        dataOutputStream.writeBoolean(slice);
+        dataOutputStream.writeInt(operations.size());
+        for (final Operation operation : operations) {
+            operation.write(dataOutputStream);
+        }
+        dataOutputStream.flush();
+    }
+
+    public BufferedImage toBufferedImage(final int width, final int height) {
+        return toBufferedImage(width, height, RenderingQuality.QUALITY);
+    }
+
+    public BufferedImage toBufferedImage(final int width, final int height, final RenderingQuality renderingQuality) {
+        final BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = bufferedImage.createGraphics();
+        try {
+            graphics.setRenderingHints(renderingQuality.renderingHints());
+            paint(graphics, width, height);
+        } finally {
+            graphics.dispose();
+        }
+        return bufferedImage;
+    }
+
+    public void paint(final Graphics2D graphics2D, final float width, final float height) {
+        final Graphics2D graphics = (Graphics2D) graphics2D.create();
+        try {
+            graphics.transform(viewTransform(width, height));
+            final AffineTransform transform = graphics.getTransform();
+            final Shape clip = graphics.getClip();
+            for (final Operation operation : operations) {
+                graphics.setTransform(transform);
+                graphics.setClip(clip);
+                operation.paint(graphics);
+            }
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    // Mirrors the transform Batik's transcoder applies for a requested size: the document's view box fitted according to its preserveAspectRatio,
+    // or, without a view box, the document scaled uniformly from its top left corner.
+    private AffineTransform viewTransform(final float width, final float height) {
+        if (viewBox == null) {
+            final double scale = Math.min(width / this.width, height / this.height);
+            return AffineTransform.getScaleInstance(scale, scale);
+        }
+        final double scaleX = width / viewBox[2];
+        final double scaleY = height / viewBox[3];
+        final AffineTransform viewTransform = new AffineTransform();
+        if (align == ALIGN_NONE) {
+            viewTransform.scale(scaleX, scaleY);
+        } else {
+            final double scale = slice ? Math.max(scaleX, scaleY) : Math.min(scaleX, scaleY);
+            final int alignX = (align - 1) % 3;
+            final int alignY = (align - 1) / 3;
+            viewTransform.translate(alignX * (width - viewBox[2] * scale) / 2, alignY * (height - viewBox[3] * scale) / 2);
+            viewTransform.scale(scale, scale);
+        }
+        viewTransform.translate(-viewBox[0], -viewBox[1]);
+        return viewTransform;
+    }
+
+    // Rejects a count that can't be right for the bytes left, given the fewest bytes each of the things counted takes.
+    private static int readCount(final DataInputStream dataInputStream, final int minimumSize) throws IOException {
+        final int count = dataInputStream.readInt();
+        final int available = dataInputStream.available();
+        if (count < 0 || (long) count * minimumSize > available) {
+            throw new IOException("Display list truncated: " + count + " entries can't fit in the " + available + " bytes left");
+        }
+        return count;
+    }
+
+    private static float[] readFloats(final DataInputStream dataInputStream, final int count) throws IOException {
+        final float[] floats = new float[count];
+        for (int i = 0; i < count; i++) {
+            floats[i] = dataInputStream.readFloat();
+        }
+        return floats;
+    }
+
+    private static void writeFloats(final DataOutputStream dataOutputStream, final float[] floats) throws IOException {
+        for (final float f : floats) {
+            dataOutputStream.writeFloat(f);
+        }
+    }
+
+    static final class Operation {
+        private static final int COLOUR = 0;
+        private static final int LINEAR_GRADIENT = 1;
+        private static final int RADIAL_GRADIENT = 2;
+        // A path with no segments, filled with a colour, with no clip.
+        private static final int MINIMUM_SIZE = 1 + 4 + 1 + 1 + 4 + 4 + 6 * 8 + 1;
+
+        private final Shape shape;
+        private final BasicStroke stroke;
+        private final Paint paint;
+        private final float alpha;
+        private final AffineTransform transform;
+        private final Shape clip;
+
+        // A null stroke fills the shape; the clip is in the display list's coordinates, and the transform maps the shape into them.
+        Operation(final Shape shape, final BasicStroke stroke, final Paint paint, final float alpha, final AffineTransform transform, final Shape clip) {
+            this.shape = shape;
+            this.stroke = stroke;
+            this.paint = paint;
+            this.alpha = alpha;
+            this.transform = transform;
+            this.clip = clip;
+        }
+
+        void paint(final Graphics2D graphics) {
+            if (clip != null) {
+                graphics.clip(clip);
+            }
+            graphics.transform(transform);
+            graphics.setComposite(alpha == 1 ? AlphaComposite.SrcOver : AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+            graphics.setPaint(paint);
+            if (stroke == null) {
+                graphics.fill(shape);
+            } else {
+                graphics.setStroke(stroke);
+                graphics.draw(shape);
+            }
+        }
+
+        static Operation read(final DataInputStream dataInputStream) throws IOException {
+            final Shape shape = readShape(dataInputStream);
+            final BasicStroke stroke = dataInputStream.readBoolean() ? readStroke(dataInputStream) : null;
+            final Paint paint = readPaint(dataInputStream);
+            final float alpha = dataInputStream.readFloat();
+            final AffineTransform transform = readTransform(dataInputStream);
+            final Shape clip = dataInputStream.readBoolean() ? readShape(dataInputStream) : null;
+            return new Operation(shape, stroke, paint, alpha, transform, clip);
+        }
+
+        void write(final DataOutputStream dataOutputStream) throws IOException {
+            writeShape(dataOutputStream, shape);
+            dataOutputStream.writeBoolean(stroke != null);
+            if (stroke != null) {
+                writeStroke(dataOutputStream, stroke);
+            }
+            writePaint(dataOutputStream, paint);
+            dataOutputStream.writeFloat(alpha);
+            writeTransform(dataOutputStream, transform);
+            dataOutputStream.writeBoolean(clip != null);
+            if (clip != null) {
+                writeShape(dataOutputStream, clip);
+            }
+        }
+
+        private static Shape readShape(final DataInputStream dataInputStream) throws IOException {
+            final int windingRule = dataInputStream.readUnsignedByte();
+            if (windingRule != Path2D.WIND_EVEN_ODD && windingRule != Path2D.WIND_NON_ZERO) {
+                throw new IOException("Unknown winding rule " + windingRule);
+            }
+            final Path2D.Float path = new Path2D.Float(windingRule);
+            final int segmentCount = readCount(dataInputStream, 1);
+            for (int i = 0; i < segmentCount; i++) {
+                final int segmentType = dataInputStream.readUnsignedByte();
+                if (i == 0 && segmentType != PathIterator.SEG_MOVETO) {
+                    throw new IOException("Path starts with segment type " + segmentType + " rather than a move");
+                }
+                switch (segmentType) {
+                    case PathIterator.SEG_MOVETO:
+                        path.moveTo(dataInputStream.readFloat(), dataInputStream.readFloat());
+                        break;
+                    case PathIterator.SEG_LINETO:
+                        path.lineTo(dataInputStream.readFloat(), dataInputStream.readFloat());
+                        break;
+                    case PathIterator.SEG_QUADTO:
+                        path.quadTo(dataInputStream.readFloat(), dataInputStream.readFloat(), dataInputStream.readFloat(), dataInputStream.readFloat());
+                        break;
+                    case PathIterator.SEG_CUBICTO:
+                        path.curveTo(dataInputStream.readFloat(), dataInputStream.readFloat(), dataInputStream.readFloat(), dataInputStream.readFloat(), dataInputStream.readFloat(), dataInputStream.readFloat());
+                        break;
+                    case PathIterator.SEG_CLOSE:
+                        path.closePath();
+                        break;
+                    default:
+                        throw new IOException("Unknown path segment type " + segmentType);
+                }
+            }
+            return path;
+        }
+
+        // The segment count comes before the segments, so they're gathered first rather than iterating the shape twice.
+        private static void writeShape(final DataOutputStream dataOutputStream, final Shape shape) throws IOException {
+            final PathIterator pathIterator = shape.getPathIterator(null);
+            final List<float[]> segments = new ArrayList<>();
+            while (!pathIterator.isDone()) {
+                final float[] coordinates = new float[6];
+                final int segmentType = pathIterator.currentSegment(coordinates);
+                final float[] segment = new float[1 + 2 * pointCount(segmentType)];
+                segment[0] = segmentType;
+                System.arraycopy(coordinates, 0, segment, 1, segment.length - 1);
+                segments.add(segment);
+                pathIterator.next();
+            }
+            dataOutputStream.writeByte(pathIterator.getWindingRule());
+            dataOutputStream.writeInt(segments.size());
+            for (final float[] segment : segments) {
+                dataOutputStream.writeByte((int) segment[0]);
+                for (int i = 1; i < segment.length; i++) {
+                    dataOutputStream.writeFloat(segment[i]);
+                }
+            }
+        }
+
+        private static int pointCount(final int segmentType) {
+            switch (segmentType) {
+                case PathIterator.SEG_MOVETO:
+                case PathIterator.SEG_LINETO:
+                    return 1;
+                case PathIterator.SEG_QUADTO:
+                    return 2;
+                case PathIterator.SEG_CUBICTO:
+                    return 3;
+                default:
+                    return 0;
+            }
+        }
+
+        private static BasicStroke readStroke(final DataInputStream dataInputStream) throws IOException {
+            final float width = dataInputStream.readFloat();
+            final int cap = dataInputStream.readUnsignedByte();
+            final int join = dataInputStream.readUnsignedByte();
+            final float miterLimit = dataInputStream.readFloat();
+            final int dashCount = readCount(dataInputStream, 4);
+            final float[] dash = dashCount == 0 ? null : readFloats(dataInputStream, dashCount);
+            final float dashPhase = dataInputStream.readFloat();
+            // BasicStroke and the gradient paints check their own arguments; ones they reject mean the display list is corrupt.
+            try {
+                return new BasicStroke(width, cap, join, miterLimit, dash, dashPhase);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid stroke: " + e.getMessage(), e);
+            }
+        }
+
+        private static void writeStroke(final DataOutputStream dataOutputStream, final BasicStroke stroke) throws IOException {
+            dataOutputStream.writeFloat(stroke.getLineWidth());
+            dataOutputStream.writeByte(stroke.getEndCap());
+            dataOutputStream.writeByte(stroke.getLineJoin());
+            dataOutputStream.writeFloat(stroke.getMiterLimit());
+            final float[] dash = stroke.getDashArray();
+            dataOutputStream.writeInt(dash == null ? 0 : dash.length);
+            if (dash != null) {
+                writeFloats(dataOutputStream, dash);
+            }
+            dataOutputStream.writeFloat(stroke.getDashPhase());
+        }
+
+        private static Paint readPaint(final DataInputStream dataInputStream) throws IOException {
+            final int paintType = dataInputStream.readUnsignedByte();
+            switch (paintType) {
+                case COLOUR:
+                    return new Color(dataInputStream.readInt(), true);
+                case LINEAR_GRADIENT: {
+                    final Point2D start = new Point2D.Float(dataInputStream.readFloat(), dataInputStream.readFloat());
+                    final Point2D end = new Point2D.Float(dataInputStream.readFloat(), dataInputStream.readFloat());
+                    final int stopCount = readCount(dataInputStream, 4 + 4);
+                    final float[] fractions = readFloats(dataInputStream, stopCount);
+                    final Color[] colours = readColours(dataInputStream, stopCount);
+                    final MultipleGradientPaint.CycleMethod cycleMethod = enumValue(MultipleGradientPaint.CycleMethod.values(), dataInputStream.readUnsignedByte());
+                    final MultipleGradientPaint.ColorSpaceType colorSpaceType = enumValue(MultipleGradientPaint.ColorSpaceType.values(), dataInputStream.readUnsignedByte());
+                    final AffineTransform transform = readTransform(dataInputStream);
+                    try {
+                        return new LinearGradientPaint(start, end, fractions, colours, cycleMethod, colorSpaceType, transform);
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Invalid linear gradient: " + e.getMessage(), e);
+                    }
+                }
+                case RADIAL_GRADIENT: {
+                    final Point2D centre = new Point2D.Float(dataInputStream.readFloat(), dataInputStream.readFloat());
+                    final float radius = dataInputStream.readFloat();
+                    final Point2D focus = new Point2D.Float(dataInputStream.readFloat(), dataInputStream.readFloat());
+                    final int stopCount = readCount(dataInputStream, 4 + 4);
+                    final float[] fractions = readFloats(dataInputStream, stopCount);
+                    final Color[] colours = readColours(dataInputStream, stopCount);
+                    final MultipleGradientPaint.CycleMethod cycleMethod = enumValue(MultipleGradientPaint.CycleMethod.values(), dataInputStream.readUnsignedByte());
+                    final MultipleGradientPaint.ColorSpaceType colorSpaceType = enumValue(MultipleGradientPaint.ColorSpaceType.values(), dataInputStream.readUnsignedByte());
+                    final AffineTransform transform = readTransform(dataInputStream);
+                    try {
+                        return new RadialGradientPaint(centre, radius, focus, fractions, colours, cycleMethod, colorSpaceType, transform);
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Invalid radial gradient: " + e.getMessage(), e);
+                    }
+                }
+                default:
+                    throw new IOException("Unknown paint type " + paintType);
+            }
+        }
+
+        private static void writePaint(final DataOutputStream dataOutputStream, final Paint paint) throws IOException {
+            if (paint instanceof Color) {
+                dataOutputStream.writeByte(COLOUR);
+                dataOutputStream.writeInt(((Color) paint).getRGB());
+            } else if (paint instanceof LinearGradientPaint) {
+                final LinearGradientPaint linearGradientPaint = (LinearGradientPaint) paint;
+                dataOutputStream.writeByte(LINEAR_GRADIENT);
+                dataOutputStream.writeFloat((float) linearGradientPaint.getStartPoint().getX());
+                dataOutputStream.writeFloat((float) linearGradientPaint.getStartPoint().getY());
+                dataOutputStream.writeFloat((float) linearGradientPaint.getEndPoint().getX());
+                dataOutputStream.writeFloat((float) linearGradientPaint.getEndPoint().getY());
+                writeGradient(dataOutputStream, linearGradientPaint);
+            } else {
+                final RadialGradientPaint radialGradientPaint = (RadialGradientPaint) paint;
+                dataOutputStream.writeByte(RADIAL_GRADIENT);
+                dataOutputStream.writeFloat((float) radialGradientPaint.getCenterPoint().getX());
+                dataOutputStream.writeFloat((float) radialGradientPaint.getCenterPoint().getY());
+                dataOutputStream.writeFloat(radialGradientPaint.getRadius());
+                dataOutputStream.writeFloat((float) radialGradientPaint.getFocusPoint().getX());
+                dataOutputStream.writeFloat((float) radialGradientPaint.getFocusPoint().getY());
+                writeGradient(dataOutputStream, radialGradientPaint);
+            }
+        }
+
+        private static void writeGradient(final DataOutputStream dataOutputStream, final MultipleGradientPaint multipleGradientPaint) throws IOException {
+            dataOutputStream.writeInt(multipleGradientPaint.getFractions().length);
+            writeFloats(dataOutputStream, multipleGradientPaint.getFractions());
+            for (final Color colour : multipleGradientPaint.getColors()) {
+                dataOutputStream.writeInt(colour.getRGB());
+            }
+            dataOutputStream.writeByte(multipleGradientPaint.getCycleMethod().ordinal());
+            dataOutputStream.writeByte(multipleGradientPaint.getColorSpace().ordinal());
+            writeTransform(dataOutputStream, multipleGradientPaint.getTransform());
+        }
+
+        private static <T extends Enum<T>> T enumValue(final T[] values, final int ordinal) throws IOException {
+            if (ordinal >= values.length) {
+                throw new IOException("Unknown " + values[0].getDeclaringClass().getSimpleName() + " " + ordinal);
+            }
+            return values[ordinal];
+        }
+
+        private static Color[] readColours(final DataInputStream dataInputStream, final int count) throws IOException {
+            final Color[] colours = new Color[count];
+            for (int i = 0; i < count; i++) {
+                colours[i] = new Color(dataInputStream.readInt(), true);
+            }
+            return colours;
+        }
+
+        private static AffineTransform readTransform(final DataInputStream dataInputStream) throws IOException {
+            final double[] matrix = new double[6];
+            for (int i = 0; i < matrix.length; i++) {
+                matrix[i] = dataInputStream.readDouble();
+            }
+            return new AffineTransform(matrix);
+        }
+
+        private static void writeTransform(final DataOutputStream dataOutputStream, final AffineTransform transform) throws IOException {
+            final double[] matrix = new double[6];
+            transform.getMatrix(matrix);
+            for (final double value : matrix) {
+                dataOutputStream.writeDouble(value);
+            }
+        }
+    }
+}
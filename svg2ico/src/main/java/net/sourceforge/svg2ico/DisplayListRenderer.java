@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.ext.awt.LinearGradientPaint;
+import org.apache.batik.ext.awt.RadialGradientPaint;
+import org.apache.batik.gvt.CanvasGraphicsNode;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.CompositeShapePainter;
+import org.apache.batik.gvt.FillShapePainter;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.ShapeNode;
+import org.apache.batik.gvt.ShapePainter;
+import org.apache.batik.gvt.StrokeShapePainter;
+import org.apache.batik.gvt.renderer.StaticRenderer;
+import org.apache.batik.transcoder.TranscoderException;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.List;
+
+// Stands in for the rasterising renderer, painting the tree into a RecordingGraphics2D instead. The canvas's viewing transform is left out of the
+// recording, so the operations are in the document's own user space and the display list can fit them to whatever size it's painted at.
+final class DisplayListRenderer extends StaticRenderer {
+
+    private final List<DisplayList.Operation> operations = new ArrayList<>();
+    private RecordingGraphics2D.Unrecordable unrecordable;
+
+    @Override
+    public void repaint(final Shape area) {
+        if (rootGN != null) {
+            final CanvasGraphicsNode canvasGraphicsNode = canvasGraphicsNode(rootGN);
+            if (canvasGraphicsNode != null) {
+                canvasGraphicsNode.setViewingTransform(new AffineTransform());
+            }
+            foldOpacity(rootGN);
+            operations.clear();
+            unrecordable = null;
+            final Graphics2D graphics = new RecordingGraphics2D(operations);
+            graphics.addRenderingHints(renderingHints);
+            try {
+                rootGN.paint(graphics);
+            } catch (RecordingGraphics2D.Unrecordable e) {
+                unrecordable = e;
+            }
+        }
+    }
+
+    // Batik paints anything with opacity through an offscreen image, which can't be recorded. For a shape with only a fill or only a stroke, the
+    // opacity is equivalent to scaling the alpha of its paint, so it's folded in; group opacity, and shapes with both, are still refused.
+    private static void foldOpacity(final GraphicsNode graphicsNode) {
+        if (graphicsNode instanceof CompositeGraphicsNode) {
+            for (final Object child : (CompositeGraphicsNode) graphicsNode) {
+                foldOpacity((GraphicsNode) child);
+            }
+        } else if (graphicsNode instanceof ShapeNode && graphicsNode.getFilter() == null && graphicsNode.getMask() == null && graphicsNode.getComposite() instanceof AlphaComposite) {
+            final ShapeNode shapeNode = (ShapeNode) graphicsNode;
+            final AlphaComposite alphaComposite = (AlphaComposite) shapeNode.getComposite();
+            final List<ShapePainter> shapePainters = paintingShapePainters(shapeNode.getShapePainter());
+            if (alphaComposite.getRule() == AlphaComposite.SRC_OVER && shapePainters.size() == 1) {
+                final ShapePainter shapePainter = shapePainters.get(0);
+                if (shapePainter instanceof FillShapePainter) {
+                    final Paint paint = withAlpha(((FillShapePainter) shapePainter).getPaint(), alphaComposite.getAlpha());
+                    if (paint != null) {
+                        ((FillShapePainter) shapePainter).setPaint(paint);
+                        shapeNode.setComposite(null);
+                    }
+                } else if (shapePainter instanceof StrokeShapePainter) {
+                    final Paint paint = withAlpha(((StrokeShapePainter) shapePainter).getPaint(), alphaComposite.getAlpha());
+                    if (paint != null) {
+                        ((StrokeShapePainter) shapePainter).setPaint(paint);
+                        shapeNode.setComposite(null);
+                    }
+                }
+            }
+        }
+    }
+
+    // Batik gives every shape a stroke painter, with no paint when the stroke is none.
+    private static List<ShapePainter> paintingShapePainters(final ShapePainter shapePainter) {
+        final List<ShapePainter> result = new ArrayList<>();
+        if (shapePainter instanceof CompositeShapePainter) {
+            final CompositeShapePainter compositeShapePainter = (CompositeShapePainter) shapePainter;
+            for (int i = 0; i < compositeShapePainter.getShapePainterCount(); i++) {
+                result.addAll(paintingShapePainters(compositeShapePainter.getShapePainter(i)));
+            }
+        } else if (shapePainter instanceof FillShapePainter) {
+            if (((FillShapePainter) shapePainter).getPaint() != null) {
+                result.add(shapePainter);
+            }
+        } else if (shapePainter instanceof StrokeShapePainter) {
+            if (((StrokeShapePainter) shapePainter).getPaint() != null) {
+                result.add(shapePainter);
+            }
+        } else if (shapePainter != null) {
+            result.add(shapePainter);
+        }
+        return result;
+    }
+
+    private static Paint withAlpha(final Paint paint, final float alpha) {
+        if (paint instanceof Color) {
+            return withAlpha((Color) paint, alpha);
+        } else if (paint instanceof LinearGradientPaint) {
+            final LinearGradientPaint linearGradientPaint = (LinearGradientPaint) paint;
+            return new LinearGradientPaint(
+                    linearGradientPaint.getStartPoint(),
+                    linearGradientPaint.getEndPoint(),
+                    linearGradientPaint.getFractions(),
+                    withAlpha(linearGradientPaint.getColors(), alpha),
+                    linearGradientPaint.getCycleMethod(),
+                    linearGradientPaint.getColorSpace(),
+                    linearGradientPaint.getTransform()
+            );
+        } else if (paint instanceof RadialGradientPaint) {
+            final RadialGradientPaint radialGradientPaint = (RadialGradientPaint) paint;
+            return new RadialGradientPaint(
+                    radialGradientPaint.getCenterPoint(),
+                    radialGradientPaint.getRadius(),
+                    radialGradientPaint.getFocusPoint(),
+                    radialGradientPaint.getFractions(),
+                    withAlpha(radialGradientPaint.getColors(), alpha),
+                    radialGradientPaint.getCycleMethod(),
+                    radialGradientPaint.getColorSpace(),
+                    radialGradientPaint.getTransform()
+            );
+        } else {
+            return null;
+        }
+    }
+
+    private static Color[] withAlpha(final Color[] colours, final float alpha) {
+        final Color[] result = new Color[colours.length];
+        for (int i = 0; i < colours.length; i++) {
+            result[i] = withAlpha(colours[i], alpha);
+        }
+        return result;
+    }
+
+    private static Color withAlpha(final Color colour, final float alpha) {
+        return new Color(colour.getRed(), colour.getGreen(), colour.getBlue(), Math.round(colour.getAlpha() * alpha));
+    }
+
+    DisplayList displayList(final float width, final float height, final String viewBox, final String preserveAspectRatio) throws ImageConversionException {
+        if (unrecordable != null) {
+            throw new ImageConversionException(new TranscoderException(unrecordable));
+        }
+        return DisplayList.displayList(width, height, viewBox, preserveAspectRatio, new ArrayList<>(operations));
+    }
+
+    private static CanvasGraphicsNode canvasGraphicsNode(final GraphicsNode graphicsNode) {
+        if (graphicsNode instanceof CanvasGraphicsNode) {
+            return (CanvasGraphicsNode) graphicsNode;
+        } else if (graphicsNode instanceof CompositeGraphicsNode && !((CompositeGraphicsNode) graphicsNode).isEmpty()) {
+            final Object child = ((CompositeGraphicsNode) graphicsNode).get(0);
+            return child instanceof CanvasGraphicsNode ? (CanvasGraphicsNode) child : null;
+        } else {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.apache.batik.util.SVGConstants.SVG_NAMESPACE_URI;
+
+// Sits between the XML reader and the document factory, dropping the editor metadata, comments and indentation that Batik would otherwise build into the DOM without ever rendering.
+final class EditorMetadataFilter implements ContentHandler, LexicalHandler {
+
+    private static final Set<String> EDITOR_NAMESPACES = new HashSet<>(Arrays.asList(
+            "http://sodipodi.sourceforge.net/DTD/sodipodi-0.dtd",
+            "http://www.inkscape.org/namespaces/inkscape",
+            "http://www.w3.org/1999/02/22-rdf-syntax-ns#",
+            "http://purl.org/dc/elements/1.1/",
+            "http://creativecommons.org/ns#",
+            "http://web.resource.org/cc/",
+            "http://www.bohemiancoding.com/sketch/ns"
+    ));
+
+    // Elements whose whitespace-only text never affects rendering; anything else, such as text, style or script, keeps its whitespace.
+    private static final Set<String> WHITESPACE_INSENSITIVE_ELEMENTS = new HashSet<>(Arrays.asList(
+            "svg", "g", "defs", "symbol", "use", "clipPath", "mask", "pattern", "marker", "linearGradient", "radialGradient", "filter",
+            "path", "rect", "circle", "ellipse", "line", "polyline", "polygon", "image", "foreignObject"
+    ));
+
+    private final SAXSVGDocumentFactory documentFactory;
+    private final Deque<Boolean> whitespaceInsensitive = new ArrayDeque<>();
+    private int skippedDepth;
+
+    EditorMetadataFilter(final SAXSVGDocumentFactory documentFactory) {
+        this.documentFactory = documentFactory;
+    }
+
+    static boolean isEditorNamespace(final String namespaceUri) {
+        return EDITOR_NAMESPACES.contains(namespaceUri) || namespaceUri.startsWith("http://ns.adobe.com/");
+    }
+
+    @Override
+    public void setDocumentLocator(final Locator locator) {
+        documentFactory.setDocumentLocator(locator);
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        whitespaceInsensitive.clear();
+        skippedDepth = 0;
+        documentFactory.startDocument();
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        documentFactory.endDocument();
+    }
+
+    @Override
+    public void startPrefixMapping(final String prefix, final String uri) throws SAXException {
+        documentFactory.startPrefixMapping(prefix, uri);
+    }
+
+    @Override
+    public void endPrefixMapping(final String prefix) throws SAXException {
+        documentFactory.endPrefixMapping(prefix);
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) throws SAXException {
+        if (skippedDepth > 0 || (!whitespaceInsensitive.isEmpty() && (isEditorNamespace(uri) || (SVG_NAMESPACE_URI.equals(uri) && "metadata".equals(localName))))) {
+            skippedDepth++;
+        } else {
+            whitespaceInsensitive.push(SVG_NAMESPACE_URI.equals(uri) && WHITESPACE_INSENSITIVE_ELEMENTS.contains(localName));
+            documentFactory.startElement(uri, localName, qName, withoutEditorAttributes(attributes));
+        }
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+        if (skippedDepth > 0) {
+            skippedDepth--;
+        } else {
+            whitespaceInsensitive.pop();
+            documentFactory.endElement(uri, localName, qName);
+        }
+    }
+
+    @Override
+    public void characters(final char[] ch, final int start, final int length) throws SAXException {
+        if (skippedDepth == 0 && !(Boolean.TRUE.equals(whitespaceInsensitive.peek()) && isWhitespace(ch, start, length))) {
+            documentFactory.characters(ch, start, length);
+        }
+    }
+
+    @Override
+    public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+        if (skippedDepth == 0) {
+            documentFactory.ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    @Override
+    public void processingInstruction(final String target, final String data) throws SAXException {
+        if (skippedDepth == 0) {
+            documentFactory.processingInstruction(target, data);
+        }
+    }
+
+    @Override
+    public void skippedEntity(final String name) throws SAXException {
+        if (skippedDepth == 0) {
+            documentFactory.skippedEntity(name);
+        }
+    }
+
+    @Override
+    public void startDTD(final String name, final String publicId, final String systemId) throws SAXException {
+        documentFactory.startDTD(name, publicId, systemId);
+    }
+
+    @Override
+    public void endDTD() throws SAXException {
+        documentFactory.endDTD();
+    }
+
+    @Override
+    public void startEntity(final String name) throws SAXException {
+        documentFactory.startEntity(name);
+    }
+
+    @Override
+    public void endEntity(final String name) throws SAXException {
+        documentFactory.endEntity(name);
+    }
+
+    @Override
+    public void startCDATA() throws SAXException {
+        if (skippedDepth == 0) {
+            documentFactory.startCDATA();
+        }
+    }
+
+    @Override
+    public void endCDATA() throws SAXException {
+        if (skippedDepth == 0) {
+            documentFactory.endCDATA();
+        }
+    }
+
+    @Override
+    public void comment(final char[] ch, final int start, final int length) {
+    }
+
+    // Namespace declarations are kept, because Batik resolves prefixes from them rather than from the reader.
+    private static Attributes withoutEditorAttributes(final Attributes attributes) {
+        AttributesImpl result = null;
+        for (int i = attributes.getLength() - 1; i >= 0; i--) {
+            if (!attributes.getURI(i).isEmpty() && isEditorNamespace(attributes.getURI(i))) {
+                if (result == null) {
+                    result = new AttributesImpl(attributes);
+                }
+                result.removeAttribute(i);
+            }
+        }
+        return result == null ? attributes : result;
+    }
+
+    private static boolean isWhitespace(final char[] ch, final int start, final int length) {
+        for (int i = start; i < start + length; i++) {
+            if (ch[i] != ' ' && ch[i] != '\t' && ch[i] != '\n' && ch[i] != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
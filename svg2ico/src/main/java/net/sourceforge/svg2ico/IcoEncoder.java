@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package net.sourceforge.svg2ico;
+
+import net.sf.image4j.codec.ico.ICOEncoder;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.Collections.singletonList;
+import static net.sourceforge.svg2ico.IcoFile.icoFile;
+import static net.sourceforge.svg2ico.IcoFile.readIcoFile;
+
+// Encodes uncompressed 32 bit images, which is what the renderers produce by default, a row at a time rather than image4j's pixel at a time.
+// Every other colour depth, and compression, is still left to image4j.
+final class IcoEncoder {
+
+    private static final int BITMAP_INFO_HEADER_SIZE = 40;
+
+    private IcoEncoder() {
+    }
+
+    static void write(final List<BufferedImage> images, final int[] colourDepth, final boolean[] compress, final OutputStream outputStream) throws IOException {
+        final List<IcoEntry> entries = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) {
+            entries.add(icoEntry(images.get(i), colourDepth[i], compress[i]));
+        }
+        icoFile(entries).write(outputStream);
+    }
+
+    static IcoEntry icoEntry(final BufferedImage image, final int colourDepth, final boolean compress) throws IOException {
+        if (!compress && (colourDepth == 32 || colourDepth == -1 && (image.getType() == BufferedImage.TYPE_INT_ARGB || OffHeapRasters.isOffHeap(image)))) {
+            return bitmapIcoEntry(image);
+        }
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        ICOEncoder.write(singletonList(image), new int[]{colourDepth}, new boolean[]{compress}, byteArrayOutputStream);
+        return readIcoFile(byteArrayOutputStream.toByteArray()).entries().get(0);
+    }
+
+    private static IcoEntry bitmapIcoEntry(final BufferedImage image) {
+        final IcoEntry icoEntry = bitmapIcoEntry(image.getWidth(), image.getHeight());
+        writeBitmap(image, icoEntry.imageData(), 0);
+        return icoEntry;
+    }
+
+    // The bitmap is stored bottom up, at twice its height to cover the colours and the transparency mask that follows them, with each mask row padded to four bytes.
+    // The entry's info header is filled in, but its pixels are left for writeBitmap.
+    static IcoEntry bitmapIcoEntry(final int width, final int height) {
+        final byte[] imageData = new byte[BITMAP_INFO_HEADER_SIZE + (width * 4 + maskRowSize(width)) * height];
+        ByteBuffer.wrap(imageData).order(LITTLE_ENDIAN)
+                .putInt(BITMAP_INFO_HEADER_SIZE)
+                .putInt(width)
+                .putInt(height * 2)
+                .putShort((short) 1)
+                .putShort((short) 32);
+        final byte[] directoryEntry = new byte[8];
+        ByteBuffer.wrap(directoryEntry).order(LITTLE_ENDIAN)
+                .put((byte) width)
+                .put((byte) height)
+                .putShort((short) 0)
+                .putShort((short) 1)
+                .putShort((short) 32);
+        return new IcoEntry(directoryEntry, imageData);
+    }
+
+    // Fills in the pixels of a bitmap entry of the image's size whose image data starts at the given offset. Every byte but the mask padding is overwritten.
+    static void writeBitmap(final BufferedImage image, final byte[] bytes, final int imageDataOffset) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int[] pixels = PixelKernels.argbPixels(image);
+        final int colourOffset = imageDataOffset + BITMAP_INFO_HEADER_SIZE;
+        final int maskOffset = colourOffset + width * 4 * height;
+        final int maskRowSize = maskRowSize(width);
+        for (int row = 0; row < height; row++) {
+            final int offset = (height - 1 - row) * width;
+            PixelKernels.bgra(pixels, offset, width, bytes, colourOffset + row * width * 4);
+            PixelKernels.transparencyMask(pixels, offset, width, bytes, maskOffset + row * maskRowSize);
+        }
+    }
+
+    private static int maskRowSize(final int width) {
+        return (width + 31) / 32 * 4;
+    }
+}
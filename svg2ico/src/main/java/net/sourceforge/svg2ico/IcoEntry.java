@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.util.Arrays;
+
+public final class IcoEntry {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private final byte[] directoryEntry;
+    private final byte[] imageData;
+
+    IcoEntry(final byte[] directoryEntry, final byte[] imageData) {
+        this.directoryEntry = directoryEntry;
+        this.imageData = imageData;
+    }
+
+    public int width() {
+        final int width = directoryEntry[0] & 0xff;
+        return width == 0 ? 256 : width;
+    }
+
+    public int height() {
+        final int height = directoryEntry[1] & 0xff;
+        return height == 0 ? 256 : height;
+    }
+
+    public int colourDepth() {
+        final int directoryBitCount = (directoryEntry[6] & 0xff) | (directoryEntry[7] & 0xff) << 8;
+        if (directoryBitCount != 0) {
+            return directoryBitCount;
+        } else if (compressed()) {
+            return pngBitsPerPixel();
+        } else if (imageData.length >= 16) {
+            return (imageData[14] & 0xff) | (imageData[15] & 0xff) << 8;
+        } else {
+            return 0;
+        }
+    }
+
+    public boolean compressed() {
+        return imageData.length >= PNG_SIGNATURE.length && Arrays.equals(PNG_SIGNATURE, Arrays.copyOf(imageData, PNG_SIGNATURE.length));
+    }
+
+    boolean sameImageFormatAs(final IcoEntry that) {
+        return width() == that.width() && height() == that.height() && colourDepth() == that.colourDepth();
+    }
+
+    byte[] directoryEntry() {
+        return directoryEntry;
+    }
+
+    byte[] imageData() {
+        return imageData;
+    }
+
+    private int pngBitsPerPixel() {
+        if (imageData.length < 26) {
+            return 0;
+        }
+        final int bitDepth = imageData[24] & 0xff;
+        switch (imageData[25]) {
+            case 0:
+            case 3:
+                return bitDepth;
+            case 2:
+                return bitDepth * 3;
+            case 4:
+                return bitDepth * 2;
+            case 6:
+                return bitDepth * 4;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IcoEntry{" + width() + " x " + height() + ", " + colourDepth() + " bpp" + (compressed() ? ", compressed" : "") + "}";
+    }
+}
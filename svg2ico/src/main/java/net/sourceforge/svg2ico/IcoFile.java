@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static net.sourceforge.svg2ico.InputStreams.readAllBytes;
+
+public final class IcoFile {
+
+    private static final int HEADER_SIZE = 6;
+    private static final int DIRECTORY_ENTRY_SIZE = 16;
+
+    private final List<IcoEntry> entries;
+
+    private IcoFile(final List<IcoEntry> entries) {
+        this.entries = unmodifiableList(entries);
+    }
+
+    static IcoFile icoFile(final List<IcoEntry> entries) {
+        return new IcoFile(entries);
+    }
+
+    public static IcoFile emptyIcoFile() {
+        return new IcoFile(emptyList());
+    }
+
+    public static IcoFile readIcoFile(final InputStream inputStream) throws IOException {
+        return readIcoFile(readAllBytes(inputStream));
+    }
+
+    public static IcoFile mergeIcoFiles(final IcoFile... icoFiles) {
+        return mergeIcoFiles(asList(icoFiles));
+    }
+
+    public static IcoFile mergeIcoFiles(final List<IcoFile> icoFiles) {
+        IcoFile result = emptyIcoFile();
+        for (final IcoFile icoFile : icoFiles) {
+            for (final IcoEntry entry : icoFile.entries) {
+                result = result.withEntry(entry);
+            }
+        }
+        return result;
+    }
+
+    public List<IcoEntry> entries() {
+        return entries;
+    }
+
+    public IcoFile withEntry(final IcoEntry entry) {
+        final List<IcoEntry> newEntries = new ArrayList<>(entries.size() + 1);
+        boolean replaced = false;
+        for (final IcoEntry existingEntry : entries) {
+            if (existingEntry.sameImageFormatAs(entry)) {
+                if (!replaced) {
+                    newEntries.add(entry);
+                    replaced = true;
+                }
+            } else {
+                newEntries.add(existingEntry);
+            }
+        }
+        if (!replaced) {
+            newEntries.add(entry);
+        }
+        return new IcoFile(newEntries);
+    }
+
+    public IcoFile withImage(final SourceImage sourceImage) throws IOException, ImageConversionException {
+        return withEntry(IcoEncoder.icoEntry(sourceImage.toBufferedImage(), sourceImage.colourDepth(), sourceImage.compress()));
+    }
+
+    public void write(final OutputStream outputStream) throws IOException {
+        outputStream.write(header());
+        for (final IcoEntry entry : entries) {
+            outputStream.write(entry.imageData());
+        }
+    }
+
+    byte[] toByteArray() {
+        final byte[] header = header();
+        final byte[] bytes = Arrays.copyOf(header, imageDataOffset(entries.size()));
+        for (int i = 0; i < entries.size(); i++) {
+            System.arraycopy(entries.get(i).imageData(), 0, bytes, imageDataOffset(i), entries.get(i).imageData().length);
+        }
+        return bytes;
+    }
+
+    // Where the entry's image data starts in the written file; past the last entry, it's the length of the file.
+    int imageDataOffset(final int index) {
+        int offset = HEADER_SIZE + DIRECTORY_ENTRY_SIZE * entries.size();
+        for (int i = 0; i < index; i++) {
+            offset += entries.get(i).imageData().length;
+        }
+        return offset;
+    }
+
+    private byte[] header() {
+        final byte[] header = new byte[HEADER_SIZE + DIRECTORY_ENTRY_SIZE * entries.size()];
+        writeShort(header, 2, 1);
+        writeShort(header, 4, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            final IcoEntry entry = entries.get(i);
+            final int directoryEntryOffset = HEADER_SIZE + DIRECTORY_ENTRY_SIZE * i;
+            System.arraycopy(entry.directoryEntry(), 0, header, directoryEntryOffset, 8);
+            writeInt(header, directoryEntryOffset + 8, entry.imageData().length);
+            writeInt(header, directoryEntryOffset + 12, imageDataOffset(i));
+        }
+        return header;
+    }
+
+    static IcoFile readIcoFile(final byte[] bytes) throws IOException {
+        if (bytes.length < HEADER_SIZE || readShort(bytes, 0) != 0 || readShort(bytes, 2) != 1) {
+            throw new IOException("Not an ICO file");
+        }
+        final int count = readShort(bytes, 4);
+        if (bytes.length < HEADER_SIZE + DIRECTORY_ENTRY_SIZE * count) {
+            throw new IOException("ICO directory truncated: expected " + count + " entries");
+        }
+        final List<IcoEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int directoryEntryOffset = HEADER_SIZE + DIRECTORY_ENTRY_SIZE * i;
+            final long size = readInt(bytes, directoryEntryOffset + 8) & 0xffffffffL;
+            final long offset = readInt(bytes, directoryEntryOffset + 12) & 0xffffffffL;
+            if (offset + size > bytes.length) {
+                throw new IOException("ICO entry " + i + " extends beyond end of file");
+            }
+            entries.add(new IcoEntry(
+                    Arrays.copyOfRange(bytes, directoryEntryOffset, directoryEntryOffset + 8),
+                    Arrays.copyOfRange(bytes, (int) offset, (int) (offset + size))
+            ));
+        }
+        return new IcoFile(entries);
+    }
+
+    private static int readShort(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static int readInt(final byte[] bytes, final int offset) {
+        return readShort(bytes, offset) | readShort(bytes, offset + 2) << 16;
+    }
+
+    private static void writeShort(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void writeInt(final byte[] bytes, final int offset, final int value) {
+        writeShort(bytes, offset, value);
+        writeShort(bytes, offset + 2, value >>> 16);
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+public final class IcoImage {
+
+    private final float width;
+    private final float height;
+    private final int colourDepth;
+    private final boolean compress;
+
+    private IcoImage(final float width, final float height, final int colourDepth, final boolean compress) {
+        this.width = width;
+        this.height = height;
+        this.colourDepth = colourDepth;
+        this.compress = compress;
+    }
+
+    public static IcoImage icoImage(final float width, final float height) {
+        return new IcoImage(width, height, -1, false);
+    }
+
+    public static IcoImage icoImage(final float width, final float height, final int colourDepth) {
+        return new IcoImage(width, height, colourDepth, false);
+    }
+
+    public static IcoImage icoImageToCompress(final float width, final float height) {
+        return new IcoImage(width, height, -1, true);
+    }
+
+    public static IcoImage icoImageToCompress(final float width, final float height, final int colourDepth) {
+        return new IcoImage(width, height, colourDepth, true);
+    }
+
+    float width() {
+        return width;
+    }
+
+    float height() {
+        return height;
+    }
+
+    int colourDepth() {
+        return colourDepth;
+    }
+
+    boolean compress() {
+        return compress;
+    }
+
+}
@@ -12,8 +12,12 @@ package net.sourceforge.svg2ico;
 
 import org.apache.batik.transcoder.TranscoderException;
 
-public final class ImageConversionException extends Exception {
+public class ImageConversionException extends Exception {
     ImageConversionException(TranscoderException e) {
         super(e);
     }
+
+    ImageConversionException(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import net.sourceforge.svg2ico.ConversionAbortedException.Reason;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Shared by every conversion whose render options use it, so however many run at once, conversions only start while their estimated memory fits in what's left.
+// They wait their turn in the order they arrived, so a large one isn't starved by a stream of small ones.
+public final class MemoryBudget {
+
+    private static final long ELEMENT_BYTES = 2048;  // A DOM element, its computed styles and the graphics node built from it.
+    private static final long PATH_SEGMENT_BYTES = 64;
+
+    private static final AtomicLong CREATED = new AtomicLong();
+
+    private final long creationOrder = CREATED.getAndIncrement();
+    private final long bytes;
+    private final long maximumWaitNanos;
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    private long availableBytes;
+
+    private MemoryBudget(final long bytes, final long maximumWaitNanos) {
+        this.bytes = bytes;
+        this.maximumWaitNanos = maximumWaitNanos;
+        this.availableBytes = bytes;
+    }
+
+    // Conversions wait for as long as it takes for enough of the budget to be free.
+    public static MemoryBudget memoryBudget(final long bytes) {
+        return memoryBudget(bytes, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    // Conversions that can't start within the maximum wait are rejected with a ConversionAbortedException; zero rejects them straight away.
+    public static MemoryBudget memoryBudget(final long bytes, final long maximumWait, final TimeUnit timeUnit) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be a positive number of bytes, but was " + bytes);
+        } else if (maximumWait < 0) {
+            throw new IllegalArgumentException("Maximum wait must not be negative, but was " + maximumWait);
+        } else if (timeUnit == null) {
+            throw new IllegalArgumentException("Time unit must not be null");
+        }
+        return new MemoryBudget(bytes, timeUnit.toNanos(maximumWait));
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    public synchronized long availableBytes() {
+        return availableBytes;
+    }
+
+    // Full size rasters for the image and, unless it's rendered in strips, Batik's own copy of it, one for each filter and mask at worst, plus the document itself.
+    // Without a scan of the document, only the rasters are counted.
+    static long estimatedBytes(final SvgScan svgScan, final int width, final int height, final RenderOptions renderOptions, final boolean simpleSvg) {
+        final long rasterBytes = 4L * width * height;
+        if (simpleSvg) {
+            return rasterBytes;
+        }
+        long estimatedBytes = (renderOptions.offHeapRasters() ? 1 : 2) * rasterBytes;
+        if (svgScan != null) {
+            estimatedBytes += (svgScan.filterCount() + svgScan.maskCount()) * rasterBytes + svgScan.elementCount() * ELEMENT_BYTES + svgScan.pathSegmentCount() * PATH_SEGMENT_BYTES;
+        }
+        return estimatedBytes;
+    }
+
+    void acquire(final long requiredBytes) throws ConversionAbortedException {
+        if (requiredBytes > bytes) {
+            throw new ConversionAbortedException(Reason.MEMORY_BUDGET_EXCEEDED);
+        }
+        final Object turn = new Object();
+        final long started = System.nanoTime();
+        synchronized (this) {
+            waiting.addLast(turn);
+            try {
+                while (waiting.peekFirst() != turn || availableBytes < requiredBytes) {
+                    final long remainingNanos = maximumWaitNanos - (System.nanoTime() - started);
+                    if (remainingNanos <= 0) {
+                        throw new ConversionAbortedException(Reason.MEMORY_BUDGET_EXCEEDED);
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+                }
+                availableBytes -= requiredBytes;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConversionAbortedException(Reason.CANCELLED);
+            } finally {
+                waiting.remove(turn);
+                notifyAll();
+            }
+        }
+    }
+
+    // A conversion that needs several budgets takes them in this order, so two conversions never each hold one while waiting for the other's.
+    long creationOrder() {
+        return creationOrder;
+    }
+
+    synchronized void release(final long releasedBytes) {
+        availableBytes += releasedBytes;
+        notifyAll();
+    }
+
+}
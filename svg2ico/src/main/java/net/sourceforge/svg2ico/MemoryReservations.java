@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The memory a conversion needs from each budget, reserved in one go before its first render and held until it has written its outputs, so that every
+// size of a multi-size ICO counts against the budget together. A conversion never waits for a budget while holding part of it, so two conversions can't
+// each hold some of it and wait on the other for the rest.
+final class MemoryReservations {
+
+    private final Map<MemoryBudget, Plan> plans = new IdentityHashMap<>();
+    private final Map<MemoryBudget, Long> reservedBytes = new IdentityHashMap<>();
+
+    // Every image is kept until the outputs are written, but the rest of a render's estimate is only needed while it renders, so the largest of those will do.
+    void plan(final MemoryBudget memoryBudget, final long imageBytes, final long estimatedBytes) {
+        Plan plan = plans.get(memoryBudget);
+        if (plan == null) {
+            plan = new Plan();
+            plans.put(memoryBudget, plan);
+        }
+        plan.imageBytes += imageBytes;
+        plan.workingBytes = Math.max(plan.workingBytes, estimatedBytes - imageBytes);
+    }
+
+    void reserve() throws ConversionAbortedException {
+        final List<MemoryBudget> memoryBudgets = new ArrayList<>(plans.keySet());
+        Collections.sort(memoryBudgets, new Comparator<MemoryBudget>() {
+            @Override
+            public int compare(final MemoryBudget a, final MemoryBudget b) {
+                return Long.compare(a.creationOrder(), b.creationOrder());
+            }
+        });
+        for (final MemoryBudget memoryBudget : memoryBudgets) {
+            final Plan plan = plans.remove(memoryBudget);
+            final long bytes = plan.imageBytes + plan.workingBytes;
+            memoryBudget.acquire(bytes);
+            reservedBytes.put(memoryBudget, bytes);
+        }
+    }
+
+    boolean reserved(final MemoryBudget memoryBudget) {
+        return reservedBytes.containsKey(memoryBudget);
+    }
+
+    void release() {
+        for (final Map.Entry<MemoryBudget, Long> entry : reservedBytes.entrySet()) {
+            entry.getKey().release(entry.getValue());
+        }
+        reservedBytes.clear();
+        plans.clear();
+    }
+
+    private static final class Plan {
+        private long imageBytes;
+        private long workingBytes;
+    }
+}
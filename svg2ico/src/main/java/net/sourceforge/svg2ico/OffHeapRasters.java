@@ -0,0 +1,73 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package net.sourceforge.svg2ico;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+// Straight alpha ARGB images whose pixels live in a direct buffer. Java 2D can read and draw on them, but only slowly, pixel by pixel, so the
+// renderer fills them a strip at a time and the encoders read the buffer itself.
+final class OffHeapRasters {
+
+    private static final int[] ARGB_MASKS = {0x00FF0000, 0x0000FF00, 0x000000FF, 0xFF000000};
+
+    private OffHeapRasters() {
+    }
+
+    static BufferedImage offHeapImage(final int width, final int height) {
+        final IntBuffer pixels = ByteBuffer.allocateDirect(Math.multiplyExact(Math.multiplyExact(width, height), 4)).order(ByteOrder.nativeOrder()).asIntBuffer();
+        // Raster.createWritableRaster insists on a DataBufferInt for this sample model on Java 8, so the raster is built directly.
+        final WritableRaster raster = new WritableRaster(new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, ARGB_MASKS), new IntBufferDataBuffer(pixels), new Point()) {
+        };
+        return new BufferedImage(ColorModel.getRGBdefault(), raster, false, null);
+    }
+
+    static boolean isOffHeap(final BufferedImage image) {
+        return pixels(image) != null;
+    }
+
+    // A view of the image's pixels, row by row, or null if the image isn't an off heap one.
+    static IntBuffer pixels(final BufferedImage image) {
+        final WritableRaster raster = image.getRaster();
+        final DataBuffer dataBuffer = raster.getDataBuffer();
+        if (dataBuffer instanceof IntBufferDataBuffer && raster.getParent() == null && raster.getWidth() * raster.getHeight() == dataBuffer.getSize()) {
+            return ((IntBufferDataBuffer) dataBuffer).pixels.duplicate();
+        }
+        return null;
+    }
+
+    private static final class IntBufferDataBuffer extends DataBuffer {
+        private final IntBuffer pixels;
+
+        IntBufferDataBuffer(final IntBuffer pixels) {
+            super(TYPE_INT, pixels.capacity());
+            this.pixels = pixels;
+        }
+
+        @Override
+        public int getElem(final int bank, final int i) {
+            return pixels.get(i);
+        }
+
+        @Override
+        public void setElem(final int bank, final int i, final int val) {
+            pixels.put(i, val);
+        }
+    }
+}
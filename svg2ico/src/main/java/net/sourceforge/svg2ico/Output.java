@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+
+public abstract class Output {
+
+    private Output() {
+    }
+
+    public static Output icoOutput(final OutputStream outputStream, final IcoImage... icoImages) {
+        return icoOutput(outputStream, asList(icoImages));
+    }
+
+    public static Output icoOutput(final OutputStream outputStream, final List<IcoImage> icoImages) {
+        final List<IcoImage> icoImagesCopy = new ArrayList<>(icoImages);
+        return new Output() {
+            @Override
+            void plan(final Rasters rasters, final URI userStylesheet) {
+                for (final IcoImage icoImage : icoImagesCopy) {
+                    rasters.plan(icoImage.width(), icoImage.height(), userStylesheet);
+                }
+            }
+
+            @Override
+            void write(final Rasters rasters, final URI userStylesheet) throws IOException, ImageConversionException {
+                final List<BufferedImage> bufferedImages = new ArrayList<>(icoImagesCopy.size());
+                final int[] colourDepth = new int[icoImagesCopy.size()];
+                final boolean[] compress = new boolean[icoImagesCopy.size()];
+                int i = 0;
+                for (final IcoImage icoImage : icoImagesCopy) {
+                    bufferedImages.add(rasters.raster(icoImage.width(), icoImage.height(), userStylesheet));
+                    colourDepth[i] = icoImage.colourDepth();
+                    compress[i] = icoImage.compress();
+                    i++;
+                }
+                IcoEncoder.write(bufferedImages, colourDepth, compress, outputStream);
+            }
+        };
+    }
+
+    public static Output pngOutput(final OutputStream outputStream, final float width, final float height) {
+        return new Output() {
+            @Override
+            void plan(final Rasters rasters, final URI userStylesheet) {
+                rasters.plan(width, height, userStylesheet);
+            }
+
+            @Override
+            void write(final Rasters rasters, final URI userStylesheet) throws ImageConversionException {
+                Svg2Png.writePng(outputStream, rasters.raster(width, height, userStylesheet));
+            }
+        };
+    }
+
+    public static Output spriteOutput(final OutputStream outputStream, final float... sizes) {
+        final float[] sizesCopy = sizes.clone();
+        return new Output() {
+            @Override
+            void plan(final Rasters rasters, final URI userStylesheet) {
+                for (final float size : sizesCopy) {
+                    rasters.plan(size, size, userStylesheet);
+                }
+            }
+
+            @Override
+            void write(final Rasters rasters, final URI userStylesheet) throws ImageConversionException {
+                final List<BufferedImage> bufferedImages = new ArrayList<>(sizesCopy.length);
+                int spriteWidth = 0;
+                int spriteHeight = 0;
+                for (final float size : sizesCopy) {
+                    final BufferedImage bufferedImage = rasters.raster(size, size, userStylesheet);
+                    bufferedImages.add(bufferedImage);
+                    spriteWidth += bufferedImage.getWidth();
+                    spriteHeight = Math.max(spriteHeight, bufferedImage.getHeight());
+                }
+                final BufferedImage sprite = new BufferedImage(Math.max(spriteWidth, 1), Math.max(spriteHeight, 1), BufferedImage.TYPE_INT_ARGB);
+                final Graphics2D graphics = sprite.createGraphics();
+                try {
+                    int x = 0;
+                    for (final BufferedImage bufferedImage : bufferedImages) {
+                        graphics.drawImage(bufferedImage, x, 0, null);
+                        x += bufferedImage.getWidth();
+                    }
+                } finally {
+                    graphics.dispose();
+                }
+                Svg2Png.writePng(outputStream, sprite);
+            }
+        };
+    }
+
+    abstract void plan(Rasters rasters, URI userStylesheet);
+
+    abstract void write(Rasters rasters, URI userStylesheet) throws IOException, ImageConversionException;
+
+}
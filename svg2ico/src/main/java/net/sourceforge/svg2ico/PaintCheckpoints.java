@@ -0,0 +1,147 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.ext.awt.image.renderable.AbstractRable;
+import org.apache.batik.ext.awt.image.renderable.Filter;
+import org.apache.batik.ext.awt.image.renderable.PaintRable;
+import org.apache.batik.gvt.CompositeGraphicsNode;
+import org.apache.batik.gvt.GraphicsNode;
+import org.apache.batik.gvt.ShapeNode;
+import org.apache.batik.gvt.ShapePainter;
+
+import java.awt.*;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderContext;
+
+// Hooks the budget's checkpoint into painting a tree, so a render can be abandoned part way through rather than only once Batik has rasterised all of it:
+// before each shape is painted and before each filter is rendered. Batik paints the tree a block of the image at a time, so even a single large blur is
+// checked again for each block.
+final class PaintCheckpoints {
+
+    private PaintCheckpoints() {
+    }
+
+    static void addPaintCheckpoints(final GraphicsNode graphicsNode, final RenderBudget renderBudget) {
+        if (graphicsNode.getFilter() != null) {
+            graphicsNode.setFilter(new CheckpointFilter(graphicsNode.getFilter(), renderBudget));
+        }
+        if (graphicsNode instanceof ShapeNode) {
+            final ShapeNode shapeNode = (ShapeNode) graphicsNode;
+            if (shapeNode.getShapePainter() != null) {
+                shapeNode.setShapePainter(new CheckpointShapePainter(shapeNode.getShapePainter(), renderBudget));
+            }
+        } else if (graphicsNode instanceof CompositeGraphicsNode) {
+            final CompositeGraphicsNode compositeGraphicsNode = (CompositeGraphicsNode) graphicsNode;
+            for (int i = 0; i < compositeGraphicsNode.size(); i++) {
+                addPaintCheckpoints((GraphicsNode) compositeGraphicsNode.get(i), renderBudget);
+            }
+        }
+    }
+
+    private static final class CheckpointShapePainter implements ShapePainter {
+        private final ShapePainter shapePainter;
+        private final RenderBudget renderBudget;
+
+        CheckpointShapePainter(final ShapePainter shapePainter, final RenderBudget renderBudget) {
+            this.shapePainter = shapePainter;
+            this.renderBudget = renderBudget;
+        }
+
+        @Override
+        public void paint(final Graphics2D g2d) {
+            renderBudget.checkpoint();
+            shapePainter.paint(g2d);
+        }
+
+        @Override
+        public Shape getPaintedArea() {
+            return shapePainter.getPaintedArea();
+        }
+
+        @Override
+        public Rectangle2D getPaintedBounds2D() {
+            return shapePainter.getPaintedBounds2D();
+        }
+
+        @Override
+        public boolean inPaintedArea(final Point2D point) {
+            return shapePainter.inPaintedArea(point);
+        }
+
+        @Override
+        public Shape getSensitiveArea() {
+            return shapePainter.getSensitiveArea();
+        }
+
+        @Override
+        public Rectangle2D getSensitiveBounds2D() {
+            return shapePainter.getSensitiveBounds2D();
+        }
+
+        @Override
+        public boolean inSensitiveArea(final Point2D point) {
+            return shapePainter.inSensitiveArea(point);
+        }
+
+        @Override
+        public void setShape(final Shape shape) {
+            shapePainter.setShape(shape);
+        }
+
+        @Override
+        public Shape getShape() {
+            return shapePainter.getShape();
+        }
+    }
+
+    @SuppressWarnings("unchecked")  // Batik's raw Vector getSources() doesn't match RenderableImage's generic one.
+    private static final class CheckpointFilter extends AbstractRable implements PaintRable {
+        private final Filter filter;
+        private final RenderBudget renderBudget;
+
+        CheckpointFilter(final Filter filter, final RenderBudget renderBudget) {
+            super(filter);
+            this.filter = filter;
+            this.renderBudget = renderBudget;
+        }
+
+        @Override
+        public Rectangle2D getBounds2D() {
+            return filter.getBounds2D();
+        }
+
+        @Override
+        public Shape getDependencyRegion(final int srcIndex, final Rectangle2D outputRgn) {
+            return filter.getDependencyRegion(srcIndex, outputRgn);
+        }
+
+        @Override
+        public Shape getDirtyRegion(final int srcIndex, final Rectangle2D inputRgn) {
+            return filter.getDirtyRegion(srcIndex, inputRgn);
+        }
+
+        @Override
+        public RenderedImage createRendering(final RenderContext renderContext) {
+            renderBudget.checkpoint();
+            return filter.createRendering(renderContext);
+        }
+
+        // Filters that can paint themselves straight onto the graphics still do.
+        @Override
+        public boolean paintRable(final Graphics2D g2d) {
+            renderBudget.checkpoint();
+            return filter instanceof PaintRable && ((PaintRable) filter).paintRable(g2d);
+        }
+    }
+}
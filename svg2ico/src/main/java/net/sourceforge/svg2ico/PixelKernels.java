@@ -0,0 +1,103 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package net.sourceforge.svg2ico;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.nio.IntBuffer;
+
+// Whole-row, indexed loops over packed ARGB pixels. The encoding loops are branch free so that the JIT can unroll and vectorise them.
+final class PixelKernels {
+
+    private PixelKernels() {
+    }
+
+    // Reads straight out of the image's own buffer when it is a whole, unshared TYPE_INT_ARGB image, which is what the renderers produce, so callers mustn't write to the result.
+    static int[] argbPixels(final BufferedImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final IntBuffer offHeapPixels = OffHeapRasters.pixels(image);
+        if (offHeapPixels != null) {
+            final int[] pixels = new int[width * height];
+            offHeapPixels.get(pixels);
+            return pixels;
+        }
+        final WritableRaster raster = image.getRaster();
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB && raster.getParent() == null && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0) {
+            final DataBufferInt dataBuffer = (DataBufferInt) raster.getDataBuffer();
+            if (dataBuffer.getNumBanks() == 1 && dataBuffer.getOffset() == 0 && dataBuffer.getSize() == width * height) {
+                return dataBuffer.getData();
+            }
+        }
+        return image.getRGB(0, 0, width, height, null, 0, width);
+    }
+
+    // Branches per pixel: opaque and fully transparent pixels, which are most of a typical icon, skip the division, and alpha 0 would divide by zero.
+    static void unpremultiply(final int[] pixels) {
+        for (int i = 0; i < pixels.length; i++) {
+            final int pixel = pixels[i];
+            final int alpha = pixel >>> 24;
+            if (alpha != 0xFF && alpha != 0) {
+                pixels[i] = (pixel & 0xFF000000) | unpremultiply(pixel >>> 16 & 0xFF, alpha) << 16 | unpremultiply(pixel >>> 8 & 0xFF, alpha) << 8 | unpremultiply(pixel & 0xFF, alpha);
+            }
+        }
+    }
+
+    // Little endian ARGB is BGRA byte order, which is what bitmaps store.
+    static void bgra(final int[] pixels, final int offset, final int width, final byte[] bytes, final int bytesOffset) {
+        for (int x = 0; x < width; x++) {
+            final int pixel = pixels[offset + x];
+            final int index = bytesOffset + x * 4;
+            bytes[index] = (byte) pixel;
+            bytes[index + 1] = (byte) (pixel >>> 8);
+            bytes[index + 2] = (byte) (pixel >>> 16);
+            bytes[index + 3] = (byte) (pixel >>> 24);
+        }
+    }
+
+    static void rgba(final int[] pixels, final int offset, final int width, final byte[] bytes, final int bytesOffset) {
+        for (int x = 0; x < width; x++) {
+            final int pixel = pixels[offset + x];
+            final int index = bytesOffset + x * 4;
+            bytes[index] = (byte) (pixel >>> 16);
+            bytes[index + 1] = (byte) (pixel >>> 8);
+            bytes[index + 2] = (byte) pixel;
+            bytes[index + 3] = (byte) (pixel >>> 24);
+        }
+    }
+
+    // Sets the bit, most significant first, of each fully transparent pixel.
+    static void transparencyMask(final int[] pixels, final int offset, final int width, final byte[] mask, final int maskOffset) {
+        final int wholeBytes = width / 8;
+        for (int i = 0; i < wholeBytes; i++) {
+            final int pixel = offset + i * 8;
+            mask[maskOffset + i] = (byte) (transparent(pixels[pixel]) << 7 | transparent(pixels[pixel + 1]) << 6 | transparent(pixels[pixel + 2]) << 5 | transparent(pixels[pixel + 3]) << 4
+                    | transparent(pixels[pixel + 4]) << 3 | transparent(pixels[pixel + 5]) << 2 | transparent(pixels[pixel + 6]) << 1 | transparent(pixels[pixel + 7]));
+        }
+        if (wholeBytes * 8 < width) {
+            int bits = 0;
+            for (int x = wholeBytes * 8; x < width; x++) {
+                bits |= transparent(pixels[offset + x]) << (7 - x % 8);
+            }
+            mask[maskOffset + wholeBytes] = (byte) bits;
+        }
+    }
+
+    private static int transparent(final int pixel) {
+        return ((pixel >>> 24) - 1) >>> 31;
+    }
+
+    private static int unpremultiply(final int premultipliedComponent, final int alpha) {
+        return Math.min(0xFF, (premultipliedComponent * 0xFF + alpha / 2) / alpha);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package net.sourceforge.svg2ico;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// Writes 8 bit RGBA PNGs a row at a time from a buffer of ARGB pixels, where Batik's encoder would first copy the whole image onto the heap.
+// Each row gets whichever filter leaves the smallest sum of absolute differences, and the compression level matches Batik's.
+final class PngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int FILTER_TYPES = 5;
+    private static final int IDAT_CHUNK_SIZE = 1 << 15;
+
+    private PngEncoder() {
+    }
+
+    static void write(final OutputStream outputStream, final int width, final int height, final IntBuffer pixels) throws IOException {
+        outputStream.write(SIGNATURE);
+        writeChunk(outputStream, "IHDR", ByteBuffer.allocate(13).putInt(width).putInt(height).put((byte) 8).put((byte) 6).put((byte) 0).put((byte) 0).put((byte) 0).array(), 13);
+        final IdatOutputStream idatOutputStream = new IdatOutputStream(outputStream);
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            final DeflaterOutputStream deflaterOutputStream = new DeflaterOutputStream(idatOutputStream, deflater, IDAT_CHUNK_SIZE);
+            final int rowSize = width * BYTES_PER_PIXEL;
+            final int[] argbRow = new int[width];
+            byte[] row = new byte[rowSize];
+            byte[] previousRow = new byte[rowSize];
+            final byte[][] filteredRows = new byte[FILTER_TYPES][rowSize + 1];
+            for (int y = 0; y < height; y++) {
+                pixels.position(y * width);
+                pixels.get(argbRow);
+                PixelKernels.rgba(argbRow, 0, width, row, 0);
+                int bestFilterType = 0;
+                long bestScore = Long.MAX_VALUE;
+                for (int filterType = 0; filterType < FILTER_TYPES; filterType++) {
+                    final long score = filter(filterType, row, previousRow, filteredRows[filterType]);
+                    if (score < bestScore) {
+                        bestScore = score;
+                        bestFilterType = filterType;
+                    }
+                }
+                deflaterOutputStream.write(filteredRows[bestFilterType]);
+                final byte[] swap = previousRow;
+                previousRow = row;
+                row = swap;
+            }
+            deflaterOutputStream.finish();
+            idatOutputStream.flushChunk();
+        } finally {
+            deflater.end();
+        }
+        writeChunk(outputStream, "IEND", new byte[0], 0);
+    }
+
+    private static long filter(final int filterType, final byte[] row, final byte[] previousRow, final byte[] filteredRow) {
+        filteredRow[0] = (byte) filterType;
+        long score = 0;
+        for (int i = 0; i < row.length; i++) {
+            final int current = row[i] & 0xFF;
+            final int left = i < BYTES_PER_PIXEL ? 0 : row[i - BYTES_PER_PIXEL] & 0xFF;
+            final int up = previousRow[i] & 0xFF;
+            final int upLeft = i < BYTES_PER_PIXEL ? 0 : previousRow[i - BYTES_PER_PIXEL] & 0xFF;
+            final int predicted;
+            switch (filterType) {
+                case 1:
+                    predicted = left;
+                    break;
+                case 2:
+                    predicted = up;
+                    break;
+                case 3:
+                    predicted = (left + up) >>> 1;
+                    break;
+                case 4:
+                    predicted = paeth(left, up, upLeft);
+                    break;
+                default:
+                    predicted = 0;
+            }
+            final byte filtered = (byte) (current - predicted);
+            filteredRow[i + 1] = filtered;
+            score += Math.abs(filtered);
+        }
+        return score;
+    }
+
+    private static int paeth(final int left, final int up, final int upLeft) {
+        final int estimate = left + up - upLeft;
+        final int leftDistance = Math.abs(estimate - left);
+        final int upDistance = Math.abs(estimate - up);
+        final int upLeftDistance = Math.abs(estimate - upLeft);
+        if (leftDistance <= upDistance && leftDistance <= upLeftDistance) {
+            return left;
+        } else if (upDistance <= upLeftDistance) {
+            return up;
+        } else {
+            return upLeft;
+        }
+    }
+
+    private static void writeChunk(final OutputStream outputStream, final String type, final byte[] data, final int length) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final CRC32 crc32 = new CRC32();
+        crc32.update(typeBytes);
+        crc32.update(data, 0, length);
+        outputStream.write(ByteBuffer.allocate(4).putInt(length).array());
+        outputStream.write(typeBytes);
+        outputStream.write(data, 0, length);
+        outputStream.write(ByteBuffer.allocate(4).putInt((int) crc32.getValue()).array());
+    }
+
+    private static final class IdatOutputStream extends OutputStream {
+        private final OutputStream outputStream;
+        private final byte[] chunk = new byte[IDAT_CHUNK_SIZE];
+        private int length = 0;
+
+        IdatOutputStream(final OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            int written = 0;
+            while (written < len) {
+                final int count = Math.min(len - written, chunk.length - length);
+                System.arraycopy(b, off + written, chunk, length, count);
+                length += count;
+                written += count;
+                if (length == chunk.length) {
+                    flushChunk();
+                }
+            }
+        }
+
+        void flushChunk() throws IOException {
+            if (length > 0) {
+                writeChunk(outputStream, "IDAT", chunk, length);
+                length = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.awt.image.BufferedImage;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+final class Rasters {
+
+    private final SvgDocument svgDocument;
+    private final RenderOptions renderOptions;
+    private final Map<Key, BufferedImage> rasters = new HashMap<>();
+    private final Set<Key> planned = new HashSet<>();
+    private final MemoryReservations memoryReservations;
+
+    Rasters(final SvgDocument svgDocument, final RenderOptions renderOptions) {
+        this(svgDocument, renderOptions, new MemoryReservations());
+    }
+
+    // Conversions of several documents share their reservations, so they're all reserved together.
+    Rasters(final SvgDocument svgDocument, final RenderOptions renderOptions, final MemoryReservations memoryReservations) {
+        this.svgDocument = svgDocument;
+        this.renderOptions = renderOptions;
+        this.memoryReservations = memoryReservations;
+    }
+
+    // Every raster a conversion will ask for is planned before any is rendered, so their memory can be reserved up front.
+    void plan(final float width, final float height, final URI userStylesheet) {
+        plan(width, height, userStylesheet, renderOptions);
+    }
+
+    void plan(final float width, final float height, final URI userStylesheet, final RenderOptions renderOptions) {
+        if (planned.add(new Key(width, height, userStylesheet, renderOptions))) {
+            svgDocument.plan(width, height, userStylesheet, renderOptions, memoryReservations);
+        }
+    }
+
+    void reserve() throws ConversionAbortedException {
+        memoryReservations.reserve();
+    }
+
+    BufferedImage raster(final float width, final float height, final URI userStylesheet) throws ImageConversionException {
+        return raster(width, height, userStylesheet, renderOptions);
+    }
+
+    BufferedImage raster(final float width, final float height, final URI userStylesheet, final RenderOptions renderOptions) throws ImageConversionException {
+        final Key key = new Key(width, height, userStylesheet, renderOptions);
+        BufferedImage raster = rasters.get(key);
+        if (raster == null) {
+            raster = svgDocument.render(width, height, userStylesheet, renderOptions, memoryReservations);
+            rasters.put(key, raster);
+        }
+        return raster;
+    }
+
+    // The rasters hold their share of the memory budget for as long as they're kept here.
+    void release() {
+        rasters.clear();
+        planned.clear();
+        memoryReservations.release();
+    }
+
+    private static final class Key {
+        private final float width;
+        private final float height;
+        private final URI userStylesheet;
+        private final RenderOptions renderOptions;
+
+        Key(final float width, final float height, final URI userStylesheet, final RenderOptions renderOptions) {
+            this.width = width;
+            this.height = height;
+            this.userStylesheet = userStylesheet;
+            this.renderOptions = renderOptions;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            } else if (o == null || getClass() != o.getClass()) {
+                return false;
+            } else {
+                final Key that = (Key) o;
+                return Float.compare(that.width, width) == 0 && Float.compare(that.height, height) == 0 && Objects.equals(userStylesheet, that.userStylesheet) && renderOptions.equals(that.renderOptions);
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height, userStylesheet, renderOptions);
+        }
+    }
+}
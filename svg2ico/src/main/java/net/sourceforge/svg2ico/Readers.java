@@ -0,0 +1,31 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.io.IOException;
+import java.io.Reader;
+
+final class Readers {
+
+    private Readers() {
+    }
+
+    static String readAllCharacters(final Reader reader) throws IOException {
+        final StringBuilder stringBuilder = new StringBuilder();
+        final char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            stringBuilder.append(buffer, 0, read);
+        }
+        return stringBuilder.toString();
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.ext.awt.MultipleGradientPaint.ColorSpaceEnum;
+import org.apache.batik.ext.awt.MultipleGradientPaint.CycleMethodEnum;
+import org.apache.batik.ext.awt.RenderingHintsKeyExt;
+import org.apache.batik.ext.awt.g2d.AbstractGraphics2D;
+import org.apache.batik.ext.awt.g2d.GraphicContext;
+
+import java.awt.*;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.BufferedImageOp;
+import java.awt.image.ImageObserver;
+import java.awt.image.RenderedImage;
+import java.awt.image.renderable.RenderableImage;
+import java.text.AttributedCharacterIterator;
+import java.util.List;
+
+// Records what Batik paints as display list operations. Only shapes filled or stroked with colours and gradients can be recorded; anything Batik
+// has to rasterise first, such as images, filters, masks, patterns and group opacity, is refused.
+final class RecordingGraphics2D extends AbstractGraphics2D {
+
+    private static final BufferedImage REFERENCE_IMAGE = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+    private final List<DisplayList.Operation> operations;
+
+    // Batik checks where it's painting before drawing anything through an offscreen image. It treats graphics marked as printing as having no raster
+    // behind them, so it hands the image to drawRenderedImage to be refused instead of warning and looking for a destination image.
+    RecordingGraphics2D(final List<DisplayList.Operation> operations) {
+        super(true);
+        this.gc = new GraphicContext();
+        this.gc.setRenderingHint(RenderingHintsKeyExt.KEY_TRANSCODING, RenderingHintsKeyExt.VALUE_TRANSCODING_PRINTING);
+        this.operations = operations;
+    }
+
+    private RecordingGraphics2D(final RecordingGraphics2D recordingGraphics2D) {
+        super(recordingGraphics2D);
+        this.operations = recordingGraphics2D.operations;
+    }
+
+    @Override
+    public Graphics create() {
+        return new RecordingGraphics2D(this);
+    }
+
+    @Override
+    public void fill(final Shape shape) {
+        record(shape, null);
+    }
+
+    @Override
+    public void draw(final Shape shape) {
+        final Stroke stroke = getStroke();
+        if (stroke instanceof BasicStroke) {
+            record(shape, (BasicStroke) stroke);
+        } else {
+            record(stroke.createStrokedShape(shape), null);
+        }
+    }
+
+    @Override
+    public void drawString(final String string, final float x, final float y) {
+        fill(getFont().createGlyphVector(getFontRenderContext(), string).getOutline(x, y));
+    }
+
+    @Override
+    public void drawString(final AttributedCharacterIterator iterator, final float x, final float y) {
+        fill(new TextLayout(iterator, getFontRenderContext()).getOutline(AffineTransform.getTranslateInstance(x, y)));
+    }
+
+    @Override
+    public boolean drawImage(final Image image, final int x, final int y, final ImageObserver observer) {
+        throw unsupported("images");
+    }
+
+    @Override
+    public boolean drawImage(final Image image, final int x, final int y, final int width, final int height, final ImageObserver observer) {
+        throw unsupported("images");
+    }
+
+    @Override
+    public void drawImage(final BufferedImage image, final BufferedImageOp op, final int x, final int y) {
+        throw unsupported("images");
+    }
+
+    @Override
+    public void drawRenderedImage(final RenderedImage image, final AffineTransform transform) {
+        throw unsupported("images, filters, masks and group opacity");
+    }
+
+    @Override
+    public void drawRenderableImage(final RenderableImage image, final AffineTransform transform) {
+        throw unsupported("images, filters, masks and group opacity");
+    }
+
+    @Override
+    public void setXORMode(final Color colour) {
+        throw unsupported("XOR mode");
+    }
+
+    @Override
+    public void copyArea(final int x, final int y, final int width, final int height, final int dx, final int dy) {
+        throw unsupported("copying areas");
+    }
+
+    @Override
+    public GraphicsConfiguration getDeviceConfiguration() {
+        final Graphics2D graphics = REFERENCE_IMAGE.createGraphics();
+        try {
+            return graphics.getDeviceConfiguration();
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    @Override
+    public FontMetrics getFontMetrics(final Font font) {
+        final Graphics2D graphics = REFERENCE_IMAGE.createGraphics();
+        try {
+            return graphics.getFontMetrics(font);
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    @Override
+    public void dispose() {
+    }
+
+    private void record(final Shape shape, final BasicStroke stroke) {
+        final Composite composite = getComposite();
+        if (!(composite instanceof AlphaComposite) || ((AlphaComposite) composite).getRule() != AlphaComposite.SRC_OVER) {
+            throw unsupported("composites other than source over");
+        }
+        final AffineTransform transform = getTransform();
+        final Shape clip = getClip();
+        operations.add(new DisplayList.Operation(
+                new Path2D.Float(shape),
+                stroke,
+                paint(getPaint()),
+                ((AlphaComposite) composite).getAlpha(),
+                transform,
+                clip == null ? null : new Path2D.Float(clip, transform)
+        ));
+    }
+
+    private static Paint paint(final Paint paint) {
+        if (paint instanceof Color) {
+            return paint;
+        } else if (paint instanceof org.apache.batik.ext.awt.LinearGradientPaint) {
+            final org.apache.batik.ext.awt.LinearGradientPaint linearGradientPaint = (org.apache.batik.ext.awt.LinearGradientPaint) paint;
+            return new LinearGradientPaint(
+                    linearGradientPaint.getStartPoint(),
+                    linearGradientPaint.getEndPoint(),
+                    linearGradientPaint.getFractions(),
+                    linearGradientPaint.getColors(),
+                    cycleMethod(linearGradientPaint.getCycleMethod()),
+                    colorSpaceType(linearGradientPaint.getColorSpace()),
+                    linearGradientPaint.getTransform()
+            );
+        } else if (paint instanceof org.apache.batik.ext.awt.RadialGradientPaint) {
+            final org.apache.batik.ext.awt.RadialGradientPaint radialGradientPaint = (org.apache.batik.ext.awt.RadialGradientPaint) paint;
+            return new RadialGradientPaint(
+                    radialGradientPaint.getCenterPoint(),
+                    radialGradientPaint.getRadius(),
+                    radialGradientPaint.getFocusPoint(),
+                    radialGradientPaint.getFractions(),
+                    radialGradientPaint.getColors(),
+                    cycleMethod(radialGradientPaint.getCycleMethod()),
+                    colorSpaceType(radialGradientPaint.getColorSpace()),
+                    radialGradientPaint.getTransform()
+            );
+        } else {
+            throw unsupported(paint == null ? "missing paints" : paint.getClass().getSimpleName() + " paints");
+        }
+    }
+
+    private static MultipleGradientPaint.CycleMethod cycleMethod(final CycleMethodEnum cycleMethod) {
+        if (cycleMethod == org.apache.batik.ext.awt.MultipleGradientPaint.REFLECT) {
+            return MultipleGradientPaint.CycleMethod.REFLECT;
+        } else if (cycleMethod == org.apache.batik.ext.awt.MultipleGradientPaint.REPEAT) {
+            return MultipleGradientPaint.CycleMethod.REPEAT;
+        } else {
+            return MultipleGradientPaint.CycleMethod.NO_CYCLE;
+        }
+    }
+
+    private static MultipleGradientPaint.ColorSpaceType colorSpaceType(final ColorSpaceEnum colorSpace) {
+        return colorSpace == org.apache.batik.ext.awt.MultipleGradientPaint.LINEAR_RGB ? MultipleGradientPaint.ColorSpaceType.LINEAR_RGB : MultipleGradientPaint.ColorSpaceType.SRGB;
+    }
+
+    private static Unrecordable unsupported(final String feature) {
+        return new Unrecordable("Display lists can't record " + feature);
+    }
+
+    // Thrown from inside Batik's painting to abandon the recording; DisplayListRenderer catches it and refuses the document.
+    static final class Unrecordable extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Unrecordable(final String message) {
+            super(message);
+        }
+    }
+}
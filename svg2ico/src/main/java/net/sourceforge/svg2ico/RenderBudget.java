@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import net.sourceforge.svg2ico.ConversionAbortedException.Reason;
+import org.apache.batik.transcoder.TranscoderException;
+
+// Checked at points throughout parsing, building and rasterising a document, so a conversion stops soon after it's cancelled or exceeds one of its limits.
+// The checks throw an unchecked exception, so it can escape Batik's code, which only declares its own exceptions, and is turned back into a checked one at the edge.
+final class RenderBudget {
+
+    private final long started;
+    private final long timeLimitNanos;
+    private final long pixelLimit;
+    private final int elementLimit;
+    private int elements = 0;
+
+    private RenderBudget(final long started, final long timeLimitNanos, final long pixelLimit, final int elementLimit) {
+        this.started = started;
+        this.timeLimitNanos = timeLimitNanos;
+        this.pixelLimit = pixelLimit;
+        this.elementLimit = elementLimit;
+    }
+
+    // The clock starts when the document's conversion started, so the time limit covers parsing and every render of it together.
+    static RenderBudget renderBudget(final RenderOptions renderOptions, final long started) {
+        return new RenderBudget(started, renderOptions.timeLimitNanos(), renderOptions.pixelLimit(), renderOptions.elementLimit());
+    }
+
+    void checkpoint() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new BudgetExceeded(Reason.CANCELLED);
+        } else if (timeLimitNanos > 0 && System.nanoTime() - started > timeLimitNanos) {
+            throw new BudgetExceeded(Reason.TIME_LIMIT_EXCEEDED);
+        }
+    }
+
+    void countElement() {
+        if (elementLimit > 0 && ++elements > elementLimit) {
+            throw new BudgetExceeded(Reason.ELEMENT_LIMIT_EXCEEDED);
+        }
+        checkpoint();
+    }
+
+    void checkPixels(final long pixels) {
+        if (pixelLimit > 0 && pixels > pixelLimit) {
+            throw new BudgetExceeded(Reason.PIXEL_LIMIT_EXCEEDED);
+        }
+        checkpoint();
+    }
+
+    // Batik wraps exceptions in its own, sometimes several deep, so the cause chain is searched for one thrown by a checkpoint.
+    static ConversionAbortedException conversionAbortedException(final Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = nextCause(cause)) {
+            if (cause instanceof BudgetExceeded) {
+                return new ConversionAbortedException(((BudgetExceeded) cause).reason);
+            }
+        }
+        return null;
+    }
+
+    // Batik's transcoder exception keeps what it wraps to itself rather than as its cause.
+    private static Throwable nextCause(final Throwable throwable) {
+        return throwable instanceof TranscoderException ? ((TranscoderException) throwable).getException() : throwable.getCause();
+    }
+
+    static final class BudgetExceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final Reason reason;
+
+        BudgetExceeded(final Reason reason) {
+            super(reason.name(), null, false, false);
+            this.reason = reason;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+public final class RenderOptions {
+
+    private static final RenderOptions DEFAULT_RENDER_OPTIONS = new RenderOptions(null, false, false, 0, false, RenderingQuality.QUALITY, false, false, 0, 0, 0, null);
+
+    private final ResourceResolver resourceResolver;
+    private final boolean staticOnly;
+    private final boolean stripEditorMetadata;
+    private final float levelOfDetailThreshold;
+    private final boolean simpleSvgRenderer;
+    private final RenderingQuality renderingQuality;
+    private final boolean premultipliedAlpha;
+    private final boolean offHeapRasters;
+    private final long timeLimitNanos;
+    private final long pixelLimit;
+    private final int elementLimit;
+    private final MemoryBudget memoryBudget;
+
+    private RenderOptions(final ResourceResolver resourceResolver, final boolean staticOnly, final boolean stripEditorMetadata, final float levelOfDetailThreshold, final boolean simpleSvgRenderer, final RenderingQuality renderingQuality, final boolean premultipliedAlpha, final boolean offHeapRasters, final long timeLimitNanos, final long pixelLimit, final int elementLimit, final MemoryBudget memoryBudget) {
+        this.resourceResolver = resourceResolver;
+        this.staticOnly = staticOnly;
+        this.stripEditorMetadata = stripEditorMetadata;
+        this.levelOfDetailThreshold = levelOfDetailThreshold;
+        this.simpleSvgRenderer = simpleSvgRenderer;
+        this.renderingQuality = renderingQuality;
+        this.premultipliedAlpha = premultipliedAlpha;
+        this.offHeapRasters = offHeapRasters;
+        this.timeLimitNanos = timeLimitNanos;
+        this.pixelLimit = pixelLimit;
+        this.elementLimit = elementLimit;
+        this.memoryBudget = memoryBudget;
+    }
+
+    public static RenderOptions renderOptions() {
+        return DEFAULT_RENDER_OPTIONS;
+    }
+
+    public RenderOptions withResourceResolver(final ResourceResolver resourceResolver) {
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+    public RenderOptions withStaticOnly(final boolean staticOnly) {
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+    // Drops Inkscape, Illustrator and other editor metadata, comments and indentation while parsing, so they never reach the DOM.
+    public RenderOptions withStripEditorMetadata(final boolean stripEditorMetadata) {
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+    // Skips painting anything whose bounds in the output are smaller than the threshold, in pixels, in both directions, and anything outside the output entirely.
+    // Zero, the default, paints everything.
+    public RenderOptions withLevelOfDetailThreshold(final float levelOfDetailThreshold) {
+        if (!(levelOfDetailThreshold >= 0)) {
+            throw new IllegalArgumentException("Level of detail threshold must be a non-negative number of pixels, but was " + levelOfDetailThreshold);
+        }
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+    // Renders documents that only use paths, rects, circles and ellipses in groups, filled with solid colours or linear gradients, without parsing them with Batik.
+    // Anything else, and any rendering with a user stylesheet, still goes through Batik.
+    public RenderOptions withSimpleSvgRenderer(final boolean simpleSvgRenderer) {
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+    public RenderOptions withRenderingQuality(final RenderingQuality renderingQuality) {
+        if (renderingQuality == null) {
+            throw new IllegalArgumentException("Rendering quality must not be null");
+        }
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+    // Has Batik draw into premultiplied alpha rasters, which Java 2D blends without converting each pixel, and converts the result to straight alpha once at the end.
+    // Translucent edges can come out a unit or so different from the default, because premultiplying rounds away some precision.
+    public RenderOptions withPremultipliedAlpha(final boolean premultipliedAlpha) {
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+    // Renders into images whose pixels are in direct memory, a strip at a time, so that large renders neither take up the heap nor, under G1, need humongous regions.
+    // PNGs are encoded straight from that memory. Java 2D flattens curves strip by strip, so antialiased curved edges can differ very slightly from a render in one piece.
+    // Documents the simple SVG renderer handles are still rendered on the heap.
+    public RenderOptions withOffHeapRasters(final boolean offHeapRasters) {
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+    // Abandons a conversion, with a ConversionAbortedException, once it has taken longer than this, timed from when it started parsing the document.
+    // Painting checks it before each shape and each tile of a filter's output, so even a single slow render stops part way. Zero, the default, means no limit.
+    public RenderOptions withTimeLimit(final long timeLimit, final TimeUnit timeUnit) {
+        if (timeLimit < 0) {
+            throw new IllegalArgumentException("Time limit must not be negative, but was " + timeLimit);
+        } else if (timeUnit == null) {
+            throw new IllegalArgumentException("Time unit must not be null");
+        }
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeUnit.toNanos(timeLimit), pixelLimit, elementLimit, memoryBudget);
+    }
+
+    // Abandons a conversion before it renders more than this many pixels in total, across every size rendered from the document. Zero, the default, means no limit.
+    public RenderOptions withPixelLimit(final long pixelLimit) {
+        if (pixelLimit < 0) {
+            throw new IllegalArgumentException("Pixel limit must not be negative, but was " + pixelLimit);
+        }
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+    // Abandons a conversion once the document has more than this many elements, or once a render builds more than this many, counting each copy a use element makes.
+    // Documents the simple SVG renderer handles are never that large, and aren't counted. Zero, the default, means no limit.
+    public RenderOptions withElementLimit(final int elementLimit) {
+        if (elementLimit < 0) {
+            throw new IllegalArgumentException("Element limit must not be negative, but was " + elementLimit);
+        }
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+    // Has each conversion wait until the budget has room for the memory its renders are estimated to need, from their sizes and a scan of the document, and holds
+    // it until the conversion has written its outputs. The same budget can be shared by any number of conversions.
+    // Null, the default, renders straight away.
+    public RenderOptions withMemoryBudget(final MemoryBudget memoryBudget) {
+        return new RenderOptions(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+    ResourceResolver resourceResolver() {
+        return resourceResolver;
+    }
+
+    boolean staticOnly() {
+        return staticOnly;
+    }
+
+    boolean stripEditorMetadata() {
+        return stripEditorMetadata;
+    }
+
+    float levelOfDetailThreshold() {
+        return levelOfDetailThreshold;
+    }
+
+    boolean simpleSvgRenderer() {
+        return simpleSvgRenderer;
+    }
+
+    RenderingQuality renderingQuality() {
+        return renderingQuality;
+    }
+
+    boolean premultipliedAlpha() {
+        return premultipliedAlpha;
+    }
+
+    boolean offHeapRasters() {
+        return offHeapRasters;
+    }
+
+    long timeLimitNanos() {
+        return timeLimitNanos;
+    }
+
+    long pixelLimit() {
+        return pixelLimit;
+    }
+
+    int elementLimit() {
+        return elementLimit;
+    }
+
+    MemoryBudget memoryBudget() {
+        return memoryBudget;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        } else if (o == null || getClass() != o.getClass()) {
+            return false;
+        } else {
+            final RenderOptions that = (RenderOptions) o;
+            return Objects.equals(resourceResolver, that.resourceResolver) && staticOnly == that.staticOnly && stripEditorMetadata == that.stripEditorMetadata && Float.compare(levelOfDetailThreshold, that.levelOfDetailThreshold) == 0 && simpleSvgRenderer == that.simpleSvgRenderer && renderingQuality == that.renderingQuality && premultipliedAlpha == that.premultipliedAlpha && offHeapRasters == that.offHeapRasters && timeLimitNanos == that.timeLimitNanos && pixelLimit == that.pixelLimit && elementLimit == that.elementLimit && Objects.equals(memoryBudget, that.memoryBudget);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(resourceResolver, staticOnly, stripEditorMetadata, levelOfDetailThreshold, simpleSvgRenderer, renderingQuality, premultipliedAlpha, offHeapRasters, timeLimitNanos, pixelLimit, elementLimit, memoryBudget);
+    }
+
+}
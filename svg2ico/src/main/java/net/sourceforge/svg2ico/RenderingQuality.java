@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package net.sourceforge.svg2ico;
+
+import java.awt.*;
+
+import static java.awt.RenderingHints.KEY_ALPHA_INTERPOLATION;
+import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.KEY_COLOR_RENDERING;
+import static java.awt.RenderingHints.KEY_DITHERING;
+import static java.awt.RenderingHints.KEY_FRACTIONALMETRICS;
+import static java.awt.RenderingHints.KEY_INTERPOLATION;
+import static java.awt.RenderingHints.KEY_RENDERING;
+import static java.awt.RenderingHints.KEY_STROKE_CONTROL;
+import static java.awt.RenderingHints.KEY_TEXT_ANTIALIASING;
+import static java.awt.RenderingHints.VALUE_ALPHA_INTERPOLATION_DEFAULT;
+import static java.awt.RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY;
+import static java.awt.RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED;
+import static java.awt.RenderingHints.VALUE_ANTIALIAS_OFF;
+import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+import static java.awt.RenderingHints.VALUE_COLOR_RENDER_DEFAULT;
+import static java.awt.RenderingHints.VALUE_COLOR_RENDER_QUALITY;
+import static java.awt.RenderingHints.VALUE_COLOR_RENDER_SPEED;
+import static java.awt.RenderingHints.VALUE_DITHER_DISABLE;
+import static java.awt.RenderingHints.VALUE_FRACTIONALMETRICS_OFF;
+import static java.awt.RenderingHints.VALUE_FRACTIONALMETRICS_ON;
+import static java.awt.RenderingHints.VALUE_INTERPOLATION_BICUBIC;
+import static java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+import static java.awt.RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+import static java.awt.RenderingHints.VALUE_RENDER_DEFAULT;
+import static java.awt.RenderingHints.VALUE_RENDER_QUALITY;
+import static java.awt.RenderingHints.VALUE_RENDER_SPEED;
+import static java.awt.RenderingHints.VALUE_STROKE_NORMALIZE;
+import static java.awt.RenderingHints.VALUE_STROKE_PURE;
+import static java.awt.RenderingHints.VALUE_TEXT_ANTIALIAS_OFF;
+
+// QUALITY is what svg2ico has always used. BALANCED renders shapes identically, but uses bilinear rather than bicubic interpolation and Java2D's default
+// colour and alpha handling, which mostly makes a difference to documents with embedded images. DRAFT turns antialiasing off as well.
+public enum RenderingQuality {
+    DRAFT(VALUE_ALPHA_INTERPOLATION_SPEED, VALUE_INTERPOLATION_NEAREST_NEIGHBOR, VALUE_ANTIALIAS_OFF, VALUE_COLOR_RENDER_SPEED, VALUE_RENDER_SPEED, VALUE_STROKE_NORMALIZE, VALUE_FRACTIONALMETRICS_OFF),
+    BALANCED(VALUE_ALPHA_INTERPOLATION_DEFAULT, VALUE_INTERPOLATION_BILINEAR, VALUE_ANTIALIAS_ON, VALUE_COLOR_RENDER_DEFAULT, VALUE_RENDER_DEFAULT, VALUE_STROKE_PURE, VALUE_FRACTIONALMETRICS_ON),
+    QUALITY(VALUE_ALPHA_INTERPOLATION_QUALITY, VALUE_INTERPOLATION_BICUBIC, VALUE_ANTIALIAS_ON, VALUE_COLOR_RENDER_QUALITY, VALUE_RENDER_QUALITY, VALUE_STROKE_PURE, VALUE_FRACTIONALMETRICS_ON);
+
+    private final Object alphaInterpolation;
+    private final Object interpolation;
+    private final Object antialiasing;
+    private final Object colourRendering;
+    private final Object rendering;
+    private final Object strokeControl;
+    private final Object fractionalMetrics;
+
+    RenderingQuality(final Object alphaInterpolation, final Object interpolation, final Object antialiasing, final Object colourRendering, final Object rendering, final Object strokeControl, final Object fractionalMetrics) {
+        this.alphaInterpolation = alphaInterpolation;
+        this.interpolation = interpolation;
+        this.antialiasing = antialiasing;
+        this.colourRendering = colourRendering;
+        this.rendering = rendering;
+        this.strokeControl = strokeControl;
+        this.fractionalMetrics = fractionalMetrics;
+    }
+
+    RenderingHints renderingHints() {
+        final RenderingHints renderingHints = new RenderingHints(KEY_ALPHA_INTERPOLATION, alphaInterpolation);
+        renderingHints.put(KEY_INTERPOLATION, interpolation);
+        renderingHints.put(KEY_ANTIALIASING, antialiasing);
+        renderingHints.put(KEY_COLOR_RENDERING, colourRendering);
+        renderingHints.put(KEY_DITHERING, VALUE_DITHER_DISABLE);
+        renderingHints.put(KEY_RENDERING, rendering);
+        renderingHints.put(KEY_STROKE_CONTROL, strokeControl);
+        renderingHints.put(KEY_FRACTIONALMETRICS, fractionalMetrics);
+        renderingHints.put(KEY_TEXT_ANTIALIASING, VALUE_TEXT_ANTIALIAS_OFF);
+        return renderingHints;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.ext.awt.image.renderable.Filter;
+
+import java.awt.*;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+public abstract class ResourceResolver {
+
+    // Resolved content, and the images and fonts decoded from it, are kept for as long as the resolver is, so reusing a resolver across conversions avoids repeating the I/O and decoding.
+    private final BoundedCache<URI, byte[]> contents = new BoundedCache<>(256);
+    private final BoundedCache<String, Filter> images = new BoundedCache<>(64);
+    private final BoundedCache<String, Font> fonts = new BoundedCache<>(32);
+
+    protected ResourceResolver() {
+    }
+
+    public static ResourceResolver directoryResourceResolver(final URI baseUri, final File directory) {
+        final URI normalisedBaseUri = baseUri.normalize();
+        return new ResourceResolver() {
+            @Override
+            protected byte[] resolve(final URI uri) throws IOException {
+                final URI relativeUri = normalisedBaseUri.relativize(uri.normalize());
+                if (relativeUri.isAbsolute() || relativeUri.getPath() == null || relativeUri.getPath().startsWith("..")) {
+                    return null;
+                }
+                final File file = new File(directory, relativeUri.getPath());
+                if (!file.getCanonicalPath().startsWith(directory.getCanonicalPath() + File.separator)) {
+                    throw new FileNotFoundException("Resource [" + uri + "] resolves outside [" + directory + "]");
+                }
+                return Files.readAllBytes(file.toPath());
+            }
+        };
+    }
+
+    public static ResourceResolver inMemoryResourceResolver(final Map<URI, byte[]> resources) {
+        final Map<URI, byte[]> resourcesCopy = new HashMap<>();
+        for (final Map.Entry<URI, byte[]> resource : resources.entrySet()) {
+            resourcesCopy.put(resource.getKey().normalize(), resource.getValue().clone());
+        }
+        return new ResourceResolver() {
+            @Override
+            protected byte[] resolve(final URI uri) {
+                return resourcesCopy.get(uri.normalize());
+            }
+        };
+    }
+
+    // Returns the content of the resource at the given URI, or null to leave Batik to load the URI itself.
+    protected abstract byte[] resolve(URI uri) throws IOException;
+
+    final byte[] content(final String uri) throws IOException {
+        try {
+            return content(new URI(uri));
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+
+    // A fragment only picks out part of a resource, so it's resolved and cached without one; Batik checks a reference with its fragment before loading it without.
+    final byte[] content(final URI uri) throws IOException {
+        final URI resourceUri = uri.getRawFragment() == null ? uri : URI.create(uri.toString().substring(0, uri.toString().indexOf('#')));
+        byte[] content = contents.get(resourceUri);
+        if (content == null) {
+            content = resolve(resourceUri);
+            if (content != null) {
+                contents.put(resourceUri, content);
+            }
+        }
+        return content;
+    }
+
+    final BoundedCache<String, Filter> images() {
+        return images;
+    }
+
+    final BoundedCache<String, Font> fonts() {
+        return fonts;
+    }
+
+}
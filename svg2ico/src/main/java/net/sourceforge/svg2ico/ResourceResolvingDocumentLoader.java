@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.bridge.DocumentLoader;
+import org.apache.batik.bridge.UserAgent;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+final class ResourceResolvingDocumentLoader extends DocumentLoader {
+
+    private final ResourceResolver resourceResolver;
+
+    ResourceResolvingDocumentLoader(final UserAgent userAgent, final ResourceResolver resourceResolver) {
+        super(userAgent);
+        this.resourceResolver = resourceResolver;
+    }
+
+    @Override
+    public Document loadDocument(final String uri) throws IOException {
+        final Document document = checkCache(uri);
+        if (document != null) {
+            return document;
+        }
+        final byte[] content = resourceResolver.content(uri);
+        return content == null ? super.loadDocument(uri) : loadDocument(uri, new ByteArrayInputStream(content));
+    }
+
+}
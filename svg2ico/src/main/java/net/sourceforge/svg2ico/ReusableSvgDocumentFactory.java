@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.anim.dom.SAXSVGDocumentFactory;
+import org.apache.batik.dom.util.SAXIOException;
+import org.w3c.dom.Document;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+// Batik's document factory creates and configures a new XML reader for every document it parses; this one keeps its reader for the next document.
+final class ReusableSvgDocumentFactory extends SAXSVGDocumentFactory {
+
+    private XMLReader xmlReader;
+    private EditorMetadataFilter editorMetadataFilter;
+    private boolean stripEditorMetadata;
+    private RenderBudget renderBudget;
+
+    ReusableSvgDocumentFactory(final String parserClassName) {
+        super(parserClassName);
+    }
+
+    void setStripEditorMetadata(final boolean stripEditorMetadata) {
+        this.stripEditorMetadata = stripEditorMetadata;
+    }
+
+    void setRenderBudget(final RenderBudget renderBudget) {
+        this.renderBudget = renderBudget;
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String rawName, final Attributes attributes) throws SAXException {
+        renderBudget.countElement();
+        super.startElement(uri, localName, rawName, attributes);
+    }
+
+    @Override
+    protected Document createDocument(final InputSource inputSource) throws IOException {
+        try {
+            if (xmlReader == null) {
+                xmlReader = createXmlReader();
+            }
+            if (stripEditorMetadata) {
+                if (editorMetadataFilter == null) {
+                    editorMetadataFilter = new EditorMetadataFilter(this);
+                }
+                setHandlers(editorMetadataFilter, editorMetadataFilter);
+            } else {
+                setHandlers(this, this);
+            }
+            // Batik reads the document's XML version and standalone declaration from the parser, so the kept reader stands in as the parser while it parses.
+            parser = xmlReader;
+            parser.parse(inputSource);
+        } catch (SAXException e) {
+            final Exception exception = e.getException();
+            if (exception instanceof InterruptedIOException) {
+                throw (InterruptedIOException) exception;
+            }
+            throw new SAXIOException(e);
+        } finally {
+            parser = null;
+        }
+        final Document result = document;
+        currentNode = null;
+        document = null;
+        doctype = null;
+        locator = null;
+        return result;
+    }
+
+    @SuppressWarnings("deprecation")
+    private XMLReader createXmlReader() throws SAXException, IOException {
+        final XMLReader result;
+        if (parserClassName != null) {
+            result = XMLReaderFactory.createXMLReader(parserClassName);
+        } else {
+            try {
+                result = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
+            } catch (ParserConfigurationException e) {
+                throw new IOException("Could not create SAXParser: " + e.getMessage(), e);
+            }
+        }
+        result.setDTDHandler(this);
+        result.setEntityResolver(this);
+        result.setErrorHandler(errorHandler == null ? this : errorHandler);
+        result.setFeature("http://xml.org/sax/features/namespaces", true);
+        result.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+        result.setFeature("http://xml.org/sax/features/validation", isValidating);
+        result.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        result.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        result.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        try {
+            // Caps entity expansion, so a document full of nested internal entities can't exhaust memory. Internal entities stay available rather than being
+            // refused outright, because some editors, Illustrator among them, declare namespaces as entities in the internal subset.
+            result.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        } catch (SAXNotRecognizedException | SAXNotSupportedException e) {
+            // Not every parser supports secure processing; those that don't are left as they are.
+        }
+        return result;
+    }
+
+    private void setHandlers(final ContentHandler contentHandler, final LexicalHandler lexicalHandler) throws SAXException {
+        xmlReader.setContentHandler(contentHandler);
+        xmlReader.setProperty("http://xml.org/sax/properties/lexical-handler", lexicalHandler);
+    }
+
+}
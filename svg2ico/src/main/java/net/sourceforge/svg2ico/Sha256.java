@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+final class Sha256 {
+
+    private Sha256() {
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every Java platform", e);
+        }
+    }
+
+    static byte[] sha256(final byte[] content) {
+        return sha256().digest(content);
+    }
+
+    static String sha256Hex(final String content) {
+        return sha256Hex(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String sha256Hex(final byte[] content) {
+        return hex(sha256(content));
+    }
+
+    static String hex(final byte[] digest) {
+        final StringBuilder hex = new StringBuilder(digest.length * 2);
+        for (final byte b : digest) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+}
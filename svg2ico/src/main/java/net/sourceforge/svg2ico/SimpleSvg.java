@@ -0,0 +1,828 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import net.sourceforge.svg2ico.DisplayList.Operation;
+import org.apache.batik.ext.awt.LinearGradientPaint;
+import org.apache.batik.ext.awt.MultipleGradientPaint;
+import org.apache.batik.ext.awt.MultipleGradientPaint.CycleMethodEnum;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+import static net.sourceforge.svg2ico.EditorMetadataFilter.isEditorNamespace;
+import static net.sourceforge.svg2ico.XmlStreams.xmlStreamReader;
+import static org.apache.batik.util.SVGConstants.SVG_NAMESPACE_URI;
+
+// Builds display lists for the subset of SVG most icons use - paths, rects, circles and ellipses in groups with transforms, filled with solid colours
+// or linear gradients - straight from a streaming parse, so they can be rendered without Batik's DOM. Anything outside the subset, including any stroke,
+// makes it give up and return null, leaving the document to Batik; so does malformed XML, so Batik reports the error.
+final class SimpleSvg {
+
+    private static final Set<String> SKIPPED_ELEMENTS = new HashSet<>(asList("title", "desc", "metadata"));
+    private static final Set<String> COMMON_ATTRIBUTES = new HashSet<>(asList("id", "class", "style"));
+    private static final Set<String> PROPERTIES = new HashSet<>(asList(
+            "fill", "fill-opacity", "fill-rule", "opacity", "display", "stop-color", "stop-opacity",
+            "stroke", "stroke-width", "stroke-opacity", "stroke-linecap", "stroke-linejoin", "stroke-miterlimit", "stroke-dasharray", "stroke-dashoffset"
+    ));
+    private static final Map<String, Set<String>> ELEMENT_ATTRIBUTES = new HashMap<>();
+    private static final Map<String, Color> COLOUR_KEYWORDS = new HashMap<>();
+
+    static {
+        ELEMENT_ATTRIBUTES.put("svg", new HashSet<>(asList("width", "height", "viewBox", "preserveAspectRatio", "version", "baseProfile", "x", "y")));
+        ELEMENT_ATTRIBUTES.put("g", new HashSet<>(asList("transform")));
+        ELEMENT_ATTRIBUTES.put("defs", new HashSet<>(asList("transform")));
+        ELEMENT_ATTRIBUTES.put("linearGradient", new HashSet<>(asList("x1", "y1", "x2", "y2", "gradientUnits", "gradientTransform", "spreadMethod")));
+        ELEMENT_ATTRIBUTES.put("stop", new HashSet<>(asList("offset")));
+        ELEMENT_ATTRIBUTES.put("path", new HashSet<>(asList("transform", "d")));
+        ELEMENT_ATTRIBUTES.put("rect", new HashSet<>(asList("transform", "x", "y", "width", "height", "rx", "ry")));
+        ELEMENT_ATTRIBUTES.put("circle", new HashSet<>(asList("transform", "cx", "cy", "r")));
+        ELEMENT_ATTRIBUTES.put("ellipse", new HashSet<>(asList("transform", "cx", "cy", "rx", "ry")));
+        COLOUR_KEYWORDS.put("black", new Color(0x000000));
+        COLOUR_KEYWORDS.put("silver", new Color(0xc0c0c0));
+        COLOUR_KEYWORDS.put("gray", new Color(0x808080));
+        COLOUR_KEYWORDS.put("grey", new Color(0x808080));
+        COLOUR_KEYWORDS.put("white", new Color(0xffffff));
+        COLOUR_KEYWORDS.put("maroon", new Color(0x800000));
+        COLOUR_KEYWORDS.put("red", new Color(0xff0000));
+        COLOUR_KEYWORDS.put("purple", new Color(0x800080));
+        COLOUR_KEYWORDS.put("fuchsia", new Color(0xff00ff));
+        COLOUR_KEYWORDS.put("magenta", new Color(0xff00ff));
+        COLOUR_KEYWORDS.put("green", new Color(0x008000));
+        COLOUR_KEYWORDS.put("lime", new Color(0x00ff00));
+        COLOUR_KEYWORDS.put("olive", new Color(0x808000));
+        COLOUR_KEYWORDS.put("yellow", new Color(0xffff00));
+        COLOUR_KEYWORDS.put("navy", new Color(0x000080));
+        COLOUR_KEYWORDS.put("blue", new Color(0x0000ff));
+        COLOUR_KEYWORDS.put("teal", new Color(0x008080));
+        COLOUR_KEYWORDS.put("aqua", new Color(0x00ffff));
+        COLOUR_KEYWORDS.put("cyan", new Color(0x00ffff));
+        COLOUR_KEYWORDS.put("orange", new Color(0xffa500));
+    }
+
+    private final Map<String, LinearGradient> linearGradients = new HashMap<>();
+    private final List<Fill> fills = new ArrayList<>();
+    private final Deque<Style> styles = new ArrayDeque<>();
+    private final Deque<AffineTransform> transforms = new ArrayDeque<>();
+    private float width;
+    private float height;
+    private String viewBox;
+    private String preserveAspectRatio;
+    private LinearGradient linearGradient;
+    private int definitionDepth;
+
+    private SimpleSvg() {
+    }
+
+    static DisplayList simpleSvg(final InputStream inputStream) {
+        try {
+            return new SimpleSvg().displayList(xmlStreamReader(inputStream));
+        } catch (XMLStreamException | UnsupportedSvgException e) {
+            return null;
+        }
+    }
+
+    static DisplayList simpleSvg(final Reader reader) {
+        try {
+            return new SimpleSvg().displayList(xmlStreamReader(reader));
+        } catch (XMLStreamException | UnsupportedSvgException e) {
+            return null;
+        }
+    }
+
+    private DisplayList displayList(final XMLStreamReader xmlStreamReader) throws XMLStreamException, UnsupportedSvgException {
+        try {
+            while (xmlStreamReader.hasNext()) {
+                switch (xmlStreamReader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (isEditorNamespace(xmlStreamReader.getNamespaceURI()) || (SVG_NAMESPACE_URI.equals(xmlStreamReader.getNamespaceURI()) && SKIPPED_ELEMENTS.contains(xmlStreamReader.getLocalName()))) {
+                            skipElement(xmlStreamReader);
+                        } else {
+                            startElement(xmlStreamReader);
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        endElement(xmlStreamReader.getLocalName());
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        if (!xmlStreamReader.isWhiteSpace() && !xmlStreamReader.getText().trim().isEmpty()) {
+                            throw new UnsupportedSvgException();
+                        }
+                        break;
+                    case XMLStreamConstants.ENTITY_REFERENCE:
+                        throw new UnsupportedSvgException();
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            xmlStreamReader.close();
+        }
+        if (viewBox == null) {
+            throw new UnsupportedSvgException();
+        }
+        final Shape clip = DisplayList.viewBox(viewBox) == null ? new Rectangle2D.Float(0, 0, width, height) : viewBoxRectangle(DisplayList.viewBox(viewBox));
+        final List<Operation> operations = new ArrayList<>();
+        for (final Fill fill : fills) {
+            final Paint paint = fill.paint(linearGradients);
+            if (paint != null) {
+                operations.add(new Operation(fill.shape, null, paint, fill.alpha, fill.transform, clip));
+            }
+        }
+        return DisplayList.displayList(width, height, viewBox, preserveAspectRatio, operations);
+    }
+
+    private void startElement(final XMLStreamReader xmlStreamReader) throws XMLStreamException, UnsupportedSvgException {
+        final String name = xmlStreamReader.getLocalName();
+        final Set<String> elementAttributes = ELEMENT_ATTRIBUTES.get(name);
+        if (!SVG_NAMESPACE_URI.equals(xmlStreamReader.getNamespaceURI()) || elementAttributes == null || (styles.isEmpty() != "svg".equals(name))) {
+            throw new UnsupportedSvgException();
+        }
+        final Map<String, String> attributes = new HashMap<>();
+        final Map<String, String> properties = new HashMap<>();
+        for (int i = 0; i < xmlStreamReader.getAttributeCount(); i++) {
+            final String namespace = xmlStreamReader.getAttributeNamespace(i);
+            final String attributeName = xmlStreamReader.getAttributeLocalName(i);
+            if (namespace == null || namespace.isEmpty()) {
+                if (PROPERTIES.contains(attributeName)) {
+                    properties.put(attributeName, xmlStreamReader.getAttributeValue(i).trim());
+                } else if (elementAttributes.contains(attributeName) || COMMON_ATTRIBUTES.contains(attributeName)) {
+                    attributes.put(attributeName, xmlStreamReader.getAttributeValue(i));
+                } else {
+                    throw new UnsupportedSvgException();
+                }
+            } else if (!isEditorNamespace(namespace) && !"http://www.w3.org/XML/1998/namespace".equals(namespace)) {
+                throw new UnsupportedSvgException();
+            }
+        }
+        if (attributes.containsKey("style")) {
+            for (final String declaration : attributes.get("style").split(";")) {
+                if (!declaration.trim().isEmpty()) {
+                    final int colon = declaration.indexOf(':');
+                    final String property = colon < 0 ? "" : declaration.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                    if (!PROPERTIES.contains(property) || declaration.contains("!")) {
+                        throw new UnsupportedSvgException();
+                    }
+                    properties.put(property, declaration.substring(colon + 1).trim());
+                }
+            }
+        }
+        final Style style = new Style(styles.isEmpty() ? null : styles.peek(), properties);
+        final AffineTransform transform = new AffineTransform(transforms.isEmpty() ? new AffineTransform() : transforms.peek());
+        if (attributes.containsKey("transform")) {
+            transform.concatenate(transform(attributes.get("transform")));
+        }
+        styles.push(style);
+        transforms.push(transform);
+        if ("none".equals(properties.get("display"))) {
+            styles.pop();
+            transforms.pop();
+            skipElement(xmlStreamReader);
+            return;
+        }
+        // Group opacity needs the group composited on its own, which is left to Batik.
+        if (style.opacity() < 1 && ("svg".equals(name) || "g".equals(name))) {
+            throw new UnsupportedSvgException();
+        }
+        switch (name) {
+            case "svg":
+                width = length(attributes.get("width"));
+                height = length(attributes.get("height"));
+                viewBox = attributes.containsKey("viewBox") ? attributes.get("viewBox") : "";
+                preserveAspectRatio = attributes.containsKey("preserveAspectRatio") ? attributes.get("preserveAspectRatio") : "";
+                if (!(width > 0 && height > 0) || (!viewBox.trim().isEmpty() && DisplayList.viewBox(viewBox) == null) || preserveAspectRatio.contains("defer")) {
+                    throw new UnsupportedSvgException();
+                }
+                break;
+            case "defs":
+                definitionDepth++;
+                break;
+            case "linearGradient":
+                if (linearGradient != null || !attributes.containsKey("id")) {
+                    throw new UnsupportedSvgException();
+                }
+                linearGradient = new LinearGradient(attributes);
+                linearGradients.put(attributes.get("id"), linearGradient);
+                break;
+            case "stop":
+                if (linearGradient == null) {
+                    throw new UnsupportedSvgException();
+                }
+                linearGradient.addStop(attributes.containsKey("offset") ? fraction(attributes.get("offset")) : 0, style.stopColour());
+                break;
+            case "path":
+                fill(shape(attributes.containsKey("d") ? attributes.get("d") : "", style.windingRule()), style, transform);
+                break;
+            case "rect":
+                fill(rectangle(attributes), style, transform);
+                break;
+            case "circle":
+                final float radius = optionalLength(attributes.get("r"));
+                fill(ellipse(optionalLength(attributes.get("cx")), optionalLength(attributes.get("cy")), radius, radius), style, transform);
+                break;
+            case "ellipse":
+                fill(ellipse(optionalLength(attributes.get("cx")), optionalLength(attributes.get("cy")), optionalLength(attributes.get("rx")), optionalLength(attributes.get("ry"))), style, transform);
+                break;
+            default:
+                break;
+        }
+        if (linearGradient != null && !"linearGradient".equals(name) && !"stop".equals(name)) {
+            throw new UnsupportedSvgException();
+        }
+    }
+
+    private void endElement(final String name) {
+        styles.pop();
+        transforms.pop();
+        if ("defs".equals(name)) {
+            definitionDepth--;
+        } else if ("linearGradient".equals(name)) {
+            linearGradient = null;
+        }
+    }
+
+    private void fill(final Shape shape, final Style style, final AffineTransform transform) throws UnsupportedSvgException {
+        if (style.stroked()) {
+            throw new UnsupportedSvgException();
+        }
+        if (shape != null && definitionDepth == 0) {
+            final Fill fill = style.fill(shape, transform);
+            if (fill != null) {
+                fills.add(fill);
+            }
+        }
+    }
+
+    private static void skipElement(final XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = xmlStreamReader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static Shape rectangle(final Map<String, String> attributes) throws UnsupportedSvgException {
+        final float x = optionalLength(attributes.get("x"));
+        final float y = optionalLength(attributes.get("y"));
+        final float width = optionalLength(attributes.get("width"));
+        final float height = optionalLength(attributes.get("height"));
+        float rx = attributes.containsKey("rx") ? length(attributes.get("rx")) : -1;
+        float ry = attributes.containsKey("ry") ? length(attributes.get("ry")) : -1;
+        if (width < 0 || height < 0 || (rx < 0 && attributes.containsKey("rx")) || (ry < 0 && attributes.containsKey("ry"))) {
+            throw new UnsupportedSvgException();
+        } else if (width == 0 || height == 0) {
+            return null;
+        }
+        rx = rx < 0 ? Math.max(ry, 0) : rx;
+        ry = ry < 0 ? rx : ry;
+        rx = Math.min(rx, width / 2);
+        ry = Math.min(ry, height / 2);
+        return rx == 0 || ry == 0 ? new Rectangle2D.Float(x, y, width, height) : new RoundRectangle2D.Float(x, y, width, height, 2 * rx, 2 * ry);
+    }
+
+    private static Shape ellipse(final float cx, final float cy, final float rx, final float ry) throws UnsupportedSvgException {
+        if (rx < 0 || ry < 0) {
+            throw new UnsupportedSvgException();
+        }
+        return rx == 0 || ry == 0 ? null : new Ellipse2D.Float(cx - rx, cy - ry, 2 * rx, 2 * ry);
+    }
+
+    // Handles the whole path data grammar, including the implicit line segments after a move and the smooth curves' reflected control points.
+    static Shape shape(final String pathData, final int windingRule) throws UnsupportedSvgException {
+        final Numbers numbers = new Numbers(pathData);
+        final Path2D.Float path = new Path2D.Float(windingRule);
+        double x = 0, y = 0, startX = 0, startY = 0, controlX = 0, controlY = 0;
+        char previousCommand = ' ';
+        char command = ' ';
+        while (!numbers.atEnd()) {
+            if (Character.isLetter(numbers.peek())) {
+                command = numbers.command();
+            } else if (command == ' ' || command == 'z' || command == 'Z') {
+                throw new UnsupportedSvgException();
+            } else if (command == 'M') {
+                command = 'L';
+            } else if (command == 'm') {
+                command = 'l';
+            }
+            final boolean relative = Character.isLowerCase(command);
+            final double originX = relative ? x : 0;
+            final double originY = relative ? y : 0;
+            if (previousCommand == ' ' && command != 'M' && command != 'm') {
+                throw new UnsupportedSvgException();
+            }
+            switch (Character.toUpperCase(command)) {
+                case 'M':
+                    x = originX + numbers.number();
+                    y = originY + numbers.number();
+                    path.moveTo(x, y);
+                    startX = x;
+                    startY = y;
+                    break;
+                case 'L':
+                    x = originX + numbers.number();
+                    y = originY + numbers.number();
+                    path.lineTo(x, y);
+                    break;
+                case 'H':
+                    x = originX + numbers.number();
+                    path.lineTo(x, y);
+                    break;
+                case 'V':
+                    y = originY + numbers.number();
+                    path.lineTo(x, y);
+                    break;
+                case 'C':
+                case 'S': {
+                    final boolean smooth = Character.toUpperCase(command) == 'S';
+                    final boolean reflect = "CcSs".indexOf(previousCommand) >= 0;
+                    final double x1 = smooth ? (reflect ? 2 * x - controlX : x) : originX + numbers.number();
+                    final double y1 = smooth ? (reflect ? 2 * y - controlY : y) : originY + numbers.number();
+                    controlX = originX + numbers.number();
+                    controlY = originY + numbers.number();
+                    x = originX + numbers.number();
+                    y = originY + numbers.number();
+                    path.curveTo(x1, y1, controlX, controlY, x, y);
+                    break;
+                }
+                case 'Q':
+                case 'T': {
+                    final boolean smooth = Character.toUpperCase(command) == 'T';
+                    final boolean reflect = "QqTt".indexOf(previousCommand) >= 0;
+                    controlX = smooth ? (reflect ? 2 * x - controlX : x) : originX + numbers.number();
+                    controlY = smooth ? (reflect ? 2 * y - controlY : y) : originY + numbers.number();
+                    x = originX + numbers.number();
+                    y = originY + numbers.number();
+                    path.quadTo(controlX, controlY, x, y);
+                    break;
+                }
+                case 'A': {
+                    final double rx = numbers.number();
+                    final double ry = numbers.number();
+                    final double angle = numbers.number();
+                    final boolean largeArc = numbers.flag();
+                    final boolean sweep = numbers.flag();
+                    final double endX = originX + numbers.number();
+                    final double endY = originY + numbers.number();
+                    arcTo(path, x, y, rx, ry, angle, largeArc, sweep, endX, endY);
+                    x = endX;
+                    y = endY;
+                    break;
+                }
+                case 'Z':
+                    path.closePath();
+                    x = startX;
+                    y = startY;
+                    break;
+                default:
+                    throw new UnsupportedSvgException();
+            }
+            previousCommand = command;
+        }
+        return previousCommand == ' ' ? null : path;
+    }
+
+    // The endpoint to centre parameterisation conversion from the SVG implementation notes, section F.6.5.
+    private static void arcTo(final Path2D path, final double x0, final double y0, final double radiusX, final double radiusY, final double angle, final boolean largeArc, final boolean sweep, final double x, final double y) {
+        if (x0 == x && y0 == y) {
+            return;
+        } else if (radiusX == 0 || radiusY == 0) {
+            path.lineTo(x, y);
+            return;
+        }
+        double rx = Math.abs(radiusX);
+        double ry = Math.abs(radiusY);
+        final double phi = Math.toRadians(angle % 360);
+        final double cos = Math.cos(phi);
+        final double sin = Math.sin(phi);
+        final double dx = (x0 - x) / 2;
+        final double dy = (y0 - y) / 2;
+        final double x1 = cos * dx + sin * dy;
+        final double y1 = -sin * dx + cos * dy;
+        final double lambda = x1 * x1 / (rx * rx) + y1 * y1 / (ry * ry);
+        if (lambda > 1) {
+            rx *= Math.sqrt(lambda);
+            ry *= Math.sqrt(lambda);
+        }
+        final double numerator = rx * rx * ry * ry - rx * rx * y1 * y1 - ry * ry * x1 * x1;
+        final double coefficient = (largeArc == sweep ? -1 : 1) * Math.sqrt(Math.max(0, numerator / (rx * rx * y1 * y1 + ry * ry * x1 * x1)));
+        final double centreX1 = coefficient * rx * y1 / ry;
+        final double centreY1 = -coefficient * ry * x1 / rx;
+        final double centreX = cos * centreX1 - sin * centreY1 + (x0 + x) / 2;
+        final double centreY = sin * centreX1 + cos * centreY1 + (y0 + y) / 2;
+        final double ux = (x1 - centreX1) / rx;
+        final double uy = (y1 - centreY1) / ry;
+        final double vx = (-x1 - centreX1) / rx;
+        final double vy = (-y1 - centreY1) / ry;
+        final double start = Math.atan2(uy, ux);
+        double extent = Math.atan2(ux * vy - uy * vx, ux * vx + uy * vy);
+        if (!sweep && extent > 0) {
+            extent -= 2 * Math.PI;
+        } else if (sweep && extent < 0) {
+            extent += 2 * Math.PI;
+        }
+        // Arc2D measures angles anticlockwise on screen, where SVG's run clockwise.
+        final Arc2D arc = new Arc2D.Double(centreX - rx, centreY - ry, 2 * rx, 2 * ry, -Math.toDegrees(start), -Math.toDegrees(extent), Arc2D.OPEN);
+        path.append(AffineTransform.getRotateInstance(phi, centreX, centreY).createTransformedShape(arc).getPathIterator(null), true);
+        path.lineTo(x, y);
+    }
+
+    static AffineTransform transform(final String transformList) throws UnsupportedSvgException {
+        final AffineTransform transform = new AffineTransform();
+        final Numbers numbers = new Numbers(transformList);
+        while (!numbers.atEnd()) {
+            final String function = numbers.function();
+            final List<Double> arguments = new ArrayList<>();
+            while (!numbers.closeParenthesis()) {
+                arguments.add(numbers.number());
+            }
+            final int count = arguments.size();
+            if ("matrix".equals(function) && count == 6) {
+                transform.concatenate(new AffineTransform(arguments.get(0), arguments.get(1), arguments.get(2), arguments.get(3), arguments.get(4), arguments.get(5)));
+            } else if ("translate".equals(function) && (count == 1 || count == 2)) {
+                transform.translate(arguments.get(0), count == 2 ? arguments.get(1) : 0);
+            } else if ("scale".equals(function) && (count == 1 || count == 2)) {
+                transform.scale(arguments.get(0), count == 2 ? arguments.get(1) : arguments.get(0));
+            } else if ("rotate".equals(function) && (count == 1 || count == 3)) {
+                transform.rotate(Math.toRadians(arguments.get(0)), count == 3 ? arguments.get(1) : 0, count == 3 ? arguments.get(2) : 0);
+            } else if ("skewX".equals(function) && count == 1) {
+                transform.shear(Math.tan(Math.toRadians(arguments.get(0))), 0);
+            } else if ("skewY".equals(function) && count == 1) {
+                transform.shear(0, Math.tan(Math.toRadians(arguments.get(0))));
+            } else {
+                throw new UnsupportedSvgException();
+            }
+        }
+        return transform;
+    }
+
+    static Color colour(final String value) throws UnsupportedSvgException {
+        final String colour = value.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (colour.matches("#[0-9a-f]{6}")) {
+                return new Color(Integer.parseInt(colour.substring(1), 16));
+            } else if (colour.matches("#[0-9a-f]{3}")) {
+                return new Color(Integer.parseInt(colour.substring(1, 2), 16) * 17, Integer.parseInt(colour.substring(2, 3), 16) * 17, Integer.parseInt(colour.substring(3, 4), 16) * 17);
+            } else if (colour.startsWith("rgb(") && colour.endsWith(")")) {
+                final String[] components = colour.substring(4, colour.length() - 1).split(",");
+                if (components.length != 3) {
+                    throw new UnsupportedSvgException();
+                }
+                return new Color(colourComponent(components[0]), colourComponent(components[1]), colourComponent(components[2]));
+            }
+        } catch (NumberFormatException e) {
+            throw new UnsupportedSvgException();
+        }
+        final Color keyword = COLOUR_KEYWORDS.get(colour);
+        if (keyword == null) {
+            throw new UnsupportedSvgException();
+        }
+        return keyword;
+    }
+
+    private static int colourComponent(final String value) {
+        final String component = value.trim();
+        final float number = component.endsWith("%") ? Float.parseFloat(component.substring(0, component.length() - 1)) * 255 / 100 : Integer.parseInt(component);
+        return Math.round(Math.max(0, Math.min(255, number)));
+    }
+
+    private static float length(final String value) throws UnsupportedSvgException {
+        if (value == null) {
+            throw new UnsupportedSvgException();
+        }
+        final String length = value.trim().endsWith("px") ? value.trim().substring(0, value.trim().length() - 2) : value;
+        final Numbers numbers = new Numbers(length);
+        final float result = (float) numbers.number();
+        if (!numbers.atEnd()) {
+            throw new UnsupportedSvgException();
+        }
+        return result;
+    }
+
+    private static float optionalLength(final String value) throws UnsupportedSvgException {
+        return value == null ? 0 : length(value);
+    }
+
+    private static float fraction(final String value) throws UnsupportedSvgException {
+        final String fraction = value.trim();
+        return fraction.endsWith("%") ? length(fraction.substring(0, fraction.length() - 1)) / 100 : length(fraction);
+    }
+
+    private static float opacity(final String value) throws UnsupportedSvgException {
+        return Math.max(0, Math.min(1, length(value)));
+    }
+
+    private static Rectangle2D viewBoxRectangle(final float[] viewBox) {
+        return new Rectangle2D.Float(viewBox[0], viewBox[1], viewBox[2], viewBox[3]);
+    }
+
+    private static final class Style {
+        private final String fill;
+        private final float fillOpacity;
+        private final int windingRule;
+        private final boolean stroked;
+        private final float opacity;
+        private final Color stopColour;
+
+        // Inherits the fill properties and stroke from its parent; opacity and the stop properties aren't inherited.
+        Style(final Style parent, final Map<String, String> properties) throws UnsupportedSvgException {
+            fill = value(properties, "fill", parent == null ? "black" : parent.fill);
+            final String fillOpacity = value(properties, "fill-opacity", null);
+            this.fillOpacity = fillOpacity == null ? (parent == null ? 1 : parent.fillOpacity) : SimpleSvg.opacity(fillOpacity);
+            final String fillRule = value(properties, "fill-rule", parent == null || parent.windingRule == Path2D.WIND_NON_ZERO ? "nonzero" : "evenodd");
+            if (!"nonzero".equals(fillRule) && !"evenodd".equals(fillRule)) {
+                throw new UnsupportedSvgException();
+            }
+            windingRule = "nonzero".equals(fillRule) ? Path2D.WIND_NON_ZERO : Path2D.WIND_EVEN_ODD;
+            final String stroke = value(properties, "stroke", null);
+            stroked = stroke == null ? parent != null && parent.stroked : !"none".equals(stroke);
+            final String opacity = value(properties, "opacity", null);
+            this.opacity = opacity == null ? 1 : SimpleSvg.opacity(opacity);
+            final float stopOpacity = properties.containsKey("stop-opacity") ? SimpleSvg.opacity(properties.get("stop-opacity")) : 1;
+            final Color colour = colour(properties.containsKey("stop-color") ? properties.get("stop-color") : "black");
+            stopColour = new Color(colour.getRed(), colour.getGreen(), colour.getBlue(), Math.round(stopOpacity * 255));
+        }
+
+        private static String value(final Map<String, String> properties, final String property, final String inherited) {
+            final String value = properties.get(property);
+            return value == null || "inherit".equals(value) ? inherited : value;
+        }
+
+        int windingRule() {
+            return windingRule;
+        }
+
+        float opacity() {
+            return opacity;
+        }
+
+        boolean stroked() {
+            return stroked;
+        }
+
+        Color stopColour() {
+            return stopColour;
+        }
+
+        // On a shape that's only filled, opacity is the same as scaling the fill's alpha.
+        Fill fill(final Shape shape, final AffineTransform transform) throws UnsupportedSvgException {
+            if ("none".equals(fill)) {
+                return null;
+            } else if (fill.startsWith("url(#") && fill.endsWith(")")) {
+                return new Fill(shape, transform, null, fill.substring(5, fill.length() - 1).trim(), fillOpacity * opacity);
+            } else {
+                return new Fill(shape, transform, colour(fill), null, fillOpacity * opacity);
+            }
+        }
+    }
+
+    private static final class Fill {
+        private final Shape shape;
+        private final AffineTransform transform;
+        private final Color colour;
+        private final String gradientId;
+        private final float alpha;
+
+        Fill(final Shape shape, final AffineTransform transform, final Color colour, final String gradientId, final float alpha) {
+            this.shape = shape;
+            this.transform = transform;
+            this.colour = colour;
+            this.gradientId = gradientId;
+            this.alpha = alpha;
+        }
+
+        // Gradients can be referenced before they're defined, so they're only looked up once the whole document has been read.
+        Paint paint(final Map<String, LinearGradient> linearGradients) throws UnsupportedSvgException {
+            if (colour != null) {
+                return colour;
+            }
+            final LinearGradient linearGradient = linearGradients.get(gradientId);
+            if (linearGradient == null) {
+                throw new UnsupportedSvgException();
+            }
+            return linearGradient.paint(shape.getBounds2D());
+        }
+    }
+
+    private static final class LinearGradient {
+        private final String x1;
+        private final String y1;
+        private final String x2;
+        private final String y2;
+        private final boolean userSpaceOnUse;
+        private final AffineTransform gradientTransform;
+        private final CycleMethodEnum cycleMethod;
+        private final List<Float> offsets = new ArrayList<>();
+        private final List<Color> colours = new ArrayList<>();
+
+        LinearGradient(final Map<String, String> attributes) throws UnsupportedSvgException {
+            x1 = attributes.containsKey("x1") ? attributes.get("x1") : "0%";
+            y1 = attributes.containsKey("y1") ? attributes.get("y1") : "0%";
+            x2 = attributes.containsKey("x2") ? attributes.get("x2") : "100%";
+            y2 = attributes.containsKey("y2") ? attributes.get("y2") : "0%";
+            final String gradientUnits = attributes.containsKey("gradientUnits") ? attributes.get("gradientUnits").trim() : "objectBoundingBox";
+            if (!"objectBoundingBox".equals(gradientUnits) && !"userSpaceOnUse".equals(gradientUnits)) {
+                throw new UnsupportedSvgException();
+            }
+            userSpaceOnUse = "userSpaceOnUse".equals(gradientUnits);
+            gradientTransform = attributes.containsKey("gradientTransform") ? transform(attributes.get("gradientTransform")) : new AffineTransform();
+            final String spreadMethod = attributes.containsKey("spreadMethod") ? attributes.get("spreadMethod").trim() : "pad";
+            if ("pad".equals(spreadMethod)) {
+                cycleMethod = MultipleGradientPaint.NO_CYCLE;
+            } else if ("reflect".equals(spreadMethod)) {
+                cycleMethod = MultipleGradientPaint.REFLECT;
+            } else if ("repeat".equals(spreadMethod)) {
+                cycleMethod = MultipleGradientPaint.REPEAT;
+            } else {
+                throw new UnsupportedSvgException();
+            }
+        }
+
+        // Stops at the same offset make a hard edge, which gradient paints can't represent, so they're left to Batik.
+        void addStop(final float offset, final Color colour) throws UnsupportedSvgException {
+            final float clampedOffset = Math.max(offsets.isEmpty() ? 0 : offsets.get(offsets.size() - 1), Math.max(0, Math.min(1, offset)));
+            if (!offsets.isEmpty() && clampedOffset <= offsets.get(offsets.size() - 1)) {
+                throw new UnsupportedSvgException();
+            }
+            offsets.add(clampedOffset);
+            colours.add(colour);
+        }
+
+        // Batik's own gradient paint rather than java.awt's, whose pixels differ slightly from it and from one Java version to the next.
+        Paint paint(final Rectangle2D bounds) throws UnsupportedSvgException {
+            if (colours.isEmpty()) {
+                return null;
+            } else if (colours.size() == 1) {
+                return colours.get(0);
+            }
+            final AffineTransform transform = new AffineTransform();
+            if (!userSpaceOnUse) {
+                if (bounds.getWidth() == 0 || bounds.getHeight() == 0) {
+                    return null;
+                }
+                transform.translate(bounds.getX(), bounds.getY());
+                transform.scale(bounds.getWidth(), bounds.getHeight());
+            }
+            transform.concatenate(gradientTransform);
+            final Point2D start = new Point2D.Float(coordinate(x1), coordinate(y1));
+            final Point2D end = new Point2D.Float(coordinate(x2), coordinate(y2));
+            if (start.equals(end)) {
+                return colours.get(colours.size() - 1);
+            }
+            final float[] fractions = new float[offsets.size()];
+            for (int i = 0; i < fractions.length; i++) {
+                fractions[i] = offsets.get(i);
+            }
+            return new LinearGradientPaint(start, end, fractions, colours.toArray(new Color[0]), cycleMethod, MultipleGradientPaint.SRGB, transform);
+        }
+
+        // Percentages in user space would be relative to the viewport, which is left to Batik.
+        private float coordinate(final String value) throws UnsupportedSvgException {
+            if (value.trim().endsWith("%") && userSpaceOnUse) {
+                throw new UnsupportedSvgException();
+            }
+            return fraction(value);
+        }
+    }
+
+    private static final class Numbers {
+        private final String text;
+        private int index;
+
+        Numbers(final String text) {
+            this.text = text;
+        }
+
+        boolean atEnd() {
+            skipSeparators();
+            return index >= text.length();
+        }
+
+        char peek() {
+            return text.charAt(index);
+        }
+
+        char command() {
+            return text.charAt(index++);
+        }
+
+        String function() throws UnsupportedSvgException {
+            skipSeparators();
+            final int start = index;
+            while (index < text.length() && Character.isLetter(text.charAt(index))) {
+                index++;
+            }
+            final String function = text.substring(start, index);
+            while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+                index++;
+            }
+            if (function.isEmpty() || index >= text.length() || text.charAt(index) != '(') {
+                throw new UnsupportedSvgException();
+            }
+            index++;
+            return function;
+        }
+
+        boolean closeParenthesis() throws UnsupportedSvgException {
+            skipSeparators();
+            if (index >= text.length()) {
+                throw new UnsupportedSvgException();
+            } else if (text.charAt(index) == ')') {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        boolean flag() throws UnsupportedSvgException {
+            skipSeparators();
+            if (index < text.length() && (text.charAt(index) == '0' || text.charAt(index) == '1')) {
+                return text.charAt(index++) == '1';
+            }
+            throw new UnsupportedSvgException();
+        }
+
+        double number() throws UnsupportedSvgException {
+            skipSeparators();
+            final int start = index;
+            if (index < text.length() && (text.charAt(index) == '+' || text.charAt(index) == '-')) {
+                index++;
+            }
+            final int digitsStart = index;
+            skipDigits();
+            if (index < text.length() && text.charAt(index) == '.') {
+                index++;
+                skipDigits();
+            }
+            if (index == digitsStart || (index == digitsStart + 1 && text.charAt(digitsStart) == '.')) {
+                throw new UnsupportedSvgException();
+            }
+            if (index < text.length() && (text.charAt(index) == 'e' || text.charAt(index) == 'E')) {
+                index++;
+                if (index < text.length() && (text.charAt(index) == '+' || text.charAt(index) == '-')) {
+                    index++;
+                }
+                final int exponentStart = index;
+                skipDigits();
+                if (index == exponentStart) {
+                    throw new UnsupportedSvgException();
+                }
+            }
+            return Double.parseDouble(text.substring(start, index));
+        }
+
+        private void skipDigits() {
+            while (index < text.length() && text.charAt(index) >= '0' && text.charAt(index) <= '9') {
+                index++;
+            }
+        }
+
+        private void skipSeparators() {
+            while (index < text.length() && (Character.isWhitespace(text.charAt(index)) || text.charAt(index) == ',')) {
+                index++;
+            }
+        }
+    }
+
+    // Thrown wherever the document strays outside the subset; it never escapes this class, so it doesn't need a stack trace.
+    private static final class UnsupportedSvgException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedSvgException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -10,429 +10,216 @@
 
 package net.sourceforge.svg2ico;
 
-import org.apache.batik.css.parser.Parser;
-import org.apache.batik.gvt.renderer.ImageRenderer;
-import org.apache.batik.transcoder.TranscoderException;
-import org.apache.batik.transcoder.TranscoderInput;
-import org.apache.batik.transcoder.TranscoderOutput;
-import org.apache.batik.transcoder.image.ImageTranscoder;
-import org.apache.batik.transcoder.image.PNGTranscoder;
-
-import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.FileNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringReader;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
-import static java.lang.Boolean.TRUE;
-import static org.apache.batik.util.XMLResourceDescriptor.setCSSParserClassName;
+import static net.sourceforge.svg2ico.InputStreams.readAllBytes;
+import static net.sourceforge.svg2ico.Readers.readAllCharacters;
+import static net.sourceforge.svg2ico.SvgDocument.svgDocument;
 
 public abstract class SourceImage {
 
-    private SourceImage() {
+    private final float width;
+    private final float height;
+    private final int colourDepth;
+    private final boolean compress;
+    private final URI userStylesheet;
+    private final RenderOptions renderOptions;
+
+    private SourceImage(final float width, final float height, final int colourDepth, final boolean compress, final URI userStylesheet, final RenderOptions renderOptions) {
+        this.width = width;
+        this.height = height;
+        this.colourDepth = colourDepth;
+        this.compress = compress;
+        this.userStylesheet = userStylesheet;
+        this.renderOptions = renderOptions;
     }
 
     public static SourceImage sourceImage(final InputStream inputStream, final float width, final float height) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return false;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(inputStream), width, height);
-            }
-
-            @Override
-            int colourDepth() {
-                return -1;
-            }
-        };
+        return new InputStreamSourceImage(inputStream, width, height, -1, false, null, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImage(final Reader reader, final float width, final float height) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return false;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(reader), width, height);
-            }
-
-            @Override
-            int colourDepth() {
-                return -1;
-            }
-        };
+        return new ReaderSourceImage(reader, width, height, -1, false, null, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImage(final InputStream inputStream, final float width, final float height, final URI userStylesheet) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return false;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(inputStream), width, height, userStylesheet);
-            }
-
-            @Override
-            int colourDepth() {
-                return -1;
-            }
-        };
+        return new InputStreamSourceImage(inputStream, width, height, -1, false, userStylesheet, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImage(final Reader reader, final float width, final float height, final URI userStylesheet) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return false;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(reader), width, height, userStylesheet);
-            }
-
-            @Override
-            int colourDepth() {
-                return -1;
-            }
-        };
+        return new ReaderSourceImage(reader, width, height, -1, false, userStylesheet, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImage(final InputStream inputStream, final float width, final float height, final int colourDepth) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return false;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(inputStream), width, height);
-            }
-
-            @Override
-            int colourDepth() {
-                return colourDepth;
-            }
-        };
+        return new InputStreamSourceImage(inputStream, width, height, colourDepth, false, null, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImage(final Reader reader, final float width, final float height, final int colourDepth) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return false;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(reader), width, height);
-            }
-
-            @Override
-            int colourDepth() {
-                return colourDepth;
-            }
-        };
+        return new ReaderSourceImage(reader, width, height, colourDepth, false, null, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImage(final InputStream inputStream, final float width, final float height, final int colourDepth, final URI userStylesheet) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return false;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(inputStream), width, height, userStylesheet);
-            }
-
-            @Override
-            int colourDepth() {
-                return colourDepth;
-            }
-        };
+        return new InputStreamSourceImage(inputStream, width, height, colourDepth, false, userStylesheet, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImage(final Reader reader, final float width, final float height, final int colourDepth, final URI userStylesheet) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return false;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(reader), width, height, userStylesheet);
-            }
-
-            @Override
-            int colourDepth() {
-                return colourDepth;
-            }
-        };
+        return new ReaderSourceImage(reader, width, height, colourDepth, false, userStylesheet, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImageToCompress(final InputStream inputStream, final float width, final float height) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return true;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(inputStream), width, height);
-            }
-
-            @Override
-            int colourDepth() {
-                return -1;
-            }
-        };
+        return new InputStreamSourceImage(inputStream, width, height, -1, true, null, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImageToCompress(final Reader reader, final float width, final float height) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return true;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(reader), width, height);
-            }
-
-            @Override
-            int colourDepth() {
-                return -1;
-            }
-        };
+        return new ReaderSourceImage(reader, width, height, -1, true, null, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImageToCompress(final InputStream inputStream, final float width, final float height, final URI userStylesheet) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return true;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(inputStream), width, height, userStylesheet);
-            }
-
-            @Override
-            int colourDepth() {
-                return -1;
-            }
-        };
+        return new InputStreamSourceImage(inputStream, width, height, -1, true, userStylesheet, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImageToCompress(final Reader reader, final float width, final float height, final URI userStylesheet) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return true;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(reader), width, height, userStylesheet);
-            }
-
-            @Override
-            int colourDepth() {
-                return -1;
-            }
-        };
+        return new ReaderSourceImage(reader, width, height, -1, true, userStylesheet, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImageToCompress(final InputStream inputStream, final float width, final float height, final int colourDepth) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return true;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(inputStream), width, height);
-            }
-
-            @Override
-            int colourDepth() {
-                return colourDepth;
-            }
-        };
+        return new InputStreamSourceImage(inputStream, width, height, colourDepth, true, null, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImageToCompress(final Reader reader, final float width, final float height, final int colourDepth) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return true;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(reader), width, height);
-            }
-
-            @Override
-            int colourDepth() {
-                return colourDepth;
-            }
-        };
+        return new ReaderSourceImage(reader, width, height, colourDepth, true, null, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImageToCompress(final InputStream inputStream, final float width, final float height, final int colourDepth, final URI userStylesheet) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return true;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(inputStream), width, height, userStylesheet);
-            }
-
-            @Override
-            int colourDepth() {
-                return colourDepth;
-            }
-        };
+        return new InputStreamSourceImage(inputStream, width, height, colourDepth, true, userStylesheet, RenderOptions.renderOptions());
     }
 
     public static SourceImage sourceImageToCompress(final Reader reader, final float width, final float height, final int colourDepth, final URI userStylesheet) {
-        return new SourceImage() {
-            @Override
-            boolean compress() {
-                return false;
-            }
-
-            @Override
-            BufferedImage toBufferedImage() throws ImageConversionException {
-                return SourceImage.loadBufferedImage(new TranscoderInput(reader), width, height, userStylesheet);
-            }
-
-            @Override
-            int colourDepth() {
-                return colourDepth;
-            }
-        };
+        return new ReaderSourceImage(reader, width, height, colourDepth, true, userStylesheet, RenderOptions.renderOptions());
     }
 
-    abstract BufferedImage toBufferedImage() throws FileNotFoundException, ImageConversionException;
-
-    abstract int colourDepth();
+    BufferedImage toBufferedImage() throws ImageConversionException {
+        return toSvgDocument().render(width, height, userStylesheet, renderOptions);
+    }
 
-    abstract boolean compress();
+    public abstract SourceImage withRenderOptions(RenderOptions renderOptions);
 
-    private static BufferedImage loadBufferedImage(TranscoderInput transcoderInput, final float width, final float height) throws ImageConversionException {
-        setCSSParserClassName(Parser.class.getCanonicalName());  // To help ShadowJar; if this isn't specified, Batik looks up the fully qualified class name in an XML file.
-        return loadImage(transcoderInput, width, height);
+    // Reads each source into memory, so the images can be rendered without blocking on I/O. Images that shared a source share its copy.
+    static List<SourceImage> buffered(final List<SourceImage> sourceImages) throws IOException {
+        final Map<Object, Object> bufferedSources = new IdentityHashMap<>();
+        final List<SourceImage> bufferedSourceImages = new ArrayList<>(sourceImages.size());
+        for (final SourceImage sourceImage : sourceImages) {
+            bufferedSourceImages.add(sourceImage.buffered(bufferedSources));
+        }
+        return bufferedSourceImages;
     }
 
-    private static BufferedImage loadBufferedImage(TranscoderInput transcoderInput, final float width, final float height, final URI userStylesheet) throws ImageConversionException {
-        setCSSParserClassName(Parser.class.getCanonicalName());  // To help ShadowJar; if this isn't specified, Batik looks up the fully qualified class name in an XML file.
-        return loadImage(transcoderInput, width, height, userStylesheet);
-    }
+    abstract SourceImage buffered(Map<Object, Object> bufferedSources) throws IOException;
 
-    private static BufferedImage loadImage(TranscoderInput transcoderInput, final float width, final float height) throws ImageConversionException {
-        BufferedImageTranscoder imageTranscoder = new BufferedImageTranscoder();
+    // SourceImages that share an input stream or reader render from a single parse of it.
+    abstract Object source();
 
-        imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_WIDTH, width);
-        imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_HEIGHT, height);
+    abstract SvgDocument toSvgDocument() throws ImageConversionException;
 
-        return loadImage(transcoderInput, imageTranscoder);
+    float width() {
+        return width;
     }
 
-    private static BufferedImage loadImage(TranscoderInput transcoderInput, final float width, final float height, final URI userStylesheet) throws ImageConversionException {
-        BufferedImageTranscoder imageTranscoder = new BufferedImageTranscoder();
+    float height() {
+        return height;
+    }
 
-        imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_WIDTH, width);
-        imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_HEIGHT, height);
-        imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_USER_STYLESHEET_URI, userStylesheet.toASCIIString());
-        imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_ALLOW_EXTERNAL_RESOURCES, TRUE);
+    URI userStylesheet() {
+        return userStylesheet;
+    }
 
-        return loadImage(transcoderInput, imageTranscoder);
+    int colourDepth() {
+        return colourDepth;
     }
 
-    private static BufferedImage loadImage(TranscoderInput transcoderInput, BufferedImageTranscoder imageTranscoder) throws ImageConversionException {
-        try {
-            imageTranscoder.transcode(transcoderInput, null);
-        } catch (TranscoderException e) {
-            throw new ImageConversionException(e);
-        }
+    boolean compress() {
+        return compress;
+    }
 
-        return imageTranscoder.getBufferedImage();
+    RenderOptions renderOptions() {
+        return renderOptions;
     }
 
-    private static final class BufferedImageTranscoder extends ImageTranscoder {
-        private BufferedImage img = null;
+    private static final class InputStreamSourceImage extends SourceImage {
+        private final InputStream inputStream;
 
-        @Override
-        public BufferedImage createImage(int w, int h) {
-            return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        InputStreamSourceImage(final InputStream inputStream, final float width, final float height, final int colourDepth, final boolean compress, final URI userStylesheet, final RenderOptions renderOptions) {
+            super(width, height, colourDepth, compress, userStylesheet, renderOptions);
+            this.inputStream = inputStream;
         }
 
         @Override
-        public void writeImage(BufferedImage img, TranscoderOutput output) {
-            this.img = img;
+        public SourceImage withRenderOptions(final RenderOptions renderOptions) {
+            return new InputStreamSourceImage(inputStream, width(), height(), colourDepth(), compress(), userStylesheet(), renderOptions);
         }
 
-        BufferedImage getBufferedImage() {
-            return img;
+        @Override
+        SourceImage buffered(final Map<Object, Object> bufferedSources) throws IOException {
+            InputStream bufferedInputStream = (InputStream) bufferedSources.get(inputStream);
+            if (bufferedInputStream == null) {
+                bufferedInputStream = new ByteArrayInputStream(readAllBytes(inputStream));
+                bufferedSources.put(inputStream, bufferedInputStream);
+            }
+            return new InputStreamSourceImage(bufferedInputStream, width(), height(), colourDepth(), compress(), userStylesheet(), renderOptions());
         }
 
         @Override
-        protected ImageRenderer createRenderer() {
-            ImageRenderer r = super.createRenderer();
-
-            RenderingHints rh = r.getRenderingHints();
-
-            rh.add(new RenderingHints(RenderingHints.KEY_ALPHA_INTERPOLATION,
-                    RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY));
-            rh.add(new RenderingHints(RenderingHints.KEY_INTERPOLATION,
-                    RenderingHints.VALUE_INTERPOLATION_BICUBIC));
+        Object source() {
+            return inputStream;
+        }
 
-            rh.add(new RenderingHints(RenderingHints.KEY_ANTIALIASING,
-                    RenderingHints.VALUE_ANTIALIAS_ON));
+        @Override
+        SvgDocument toSvgDocument() throws ImageConversionException {
+            return svgDocument(inputStream, renderOptions());
+        }
+    }
 
-            rh.add(new RenderingHints(RenderingHints.KEY_COLOR_RENDERING,
-                    RenderingHints.VALUE_COLOR_RENDER_QUALITY));
-            rh.add(new RenderingHints(RenderingHints.KEY_DITHERING,
-                    RenderingHints.VALUE_DITHER_DISABLE));
+    private static final class ReaderSourceImage extends SourceImage {
+        private final Reader reader;
 
-            rh.add(new RenderingHints(RenderingHints.KEY_RENDERING,
-                    RenderingHints.VALUE_RENDER_QUALITY));
+        ReaderSourceImage(final Reader reader, final float width, final float height, final int colourDepth, final boolean compress, final URI userStylesheet, final RenderOptions renderOptions) {
+            super(width, height, colourDepth, compress, userStylesheet, renderOptions);
+            this.reader = reader;
+        }
 
-            rh.add(new RenderingHints(RenderingHints.KEY_STROKE_CONTROL,
-                    RenderingHints.VALUE_STROKE_PURE));
+        @Override
+        public SourceImage withRenderOptions(final RenderOptions renderOptions) {
+            return new ReaderSourceImage(reader, width(), height(), colourDepth(), compress(), userStylesheet(), renderOptions);
+        }
 
-            rh.add(new RenderingHints(RenderingHints.KEY_FRACTIONALMETRICS,
-                    RenderingHints.VALUE_FRACTIONALMETRICS_ON));
-            rh.add(new RenderingHints(RenderingHints.KEY_TEXT_ANTIALIASING,
-                    RenderingHints.VALUE_TEXT_ANTIALIAS_OFF));
+        @Override
+        SourceImage buffered(final Map<Object, Object> bufferedSources) throws IOException {
+            Reader bufferedReader = (Reader) bufferedSources.get(reader);
+            if (bufferedReader == null) {
+                bufferedReader = new StringReader(readAllCharacters(reader));
+                bufferedSources.put(reader, bufferedReader);
+            }
+            return new ReaderSourceImage(bufferedReader, width(), height(), colourDepth(), compress(), userStylesheet(), renderOptions());
+        }
 
-            r.setRenderingHints(rh);
+        @Override
+        Object source() {
+            return reader;
+        }
 
-            return r;
+        @Override
+        SvgDocument toSvgDocument() throws ImageConversionException {
+            return svgDocument(reader, renderOptions());
         }
     }
 
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.css.engine.StyleSheet;
+import org.apache.batik.util.ParsedURL;
+import org.w3c.css.sac.InputSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static net.sourceforge.svg2ico.InputStreams.readAllBytes;
+import static net.sourceforge.svg2ico.Sha256.sha256;
+
+final class StylesheetCache {
+
+    private static final BoundedCache<Key, CachedStylesheet> CACHED_STYLESHEETS = new BoundedCache<>(64);
+
+    private StylesheetCache() {
+    }
+
+    // The parsed stylesheet refers to the CSS engine's property indexes, so it can only be shared between engines of the same type.
+    static StyleSheet styleSheet(final URI userStylesheet, final CSSEngine cssEngine) throws IOException {
+        final Key key = new Key(userStylesheet, cssEngine.getClass());
+        final File file = "file".equalsIgnoreCase(userStylesheet.getScheme()) ? new File(userStylesheet) : null;
+        final long lastModified = file == null ? 0 : file.lastModified();
+        final long length = file == null ? 0 : file.length();
+        final CachedStylesheet cachedStylesheet = CACHED_STYLESHEETS.get(key);
+        if (cachedStylesheet != null && file != null && lastModified != 0 && cachedStylesheet.lastModified == lastModified && cachedStylesheet.length == length) {
+            return cachedStylesheet.styleSheet;
+        }
+        final byte[] content = read(userStylesheet);
+        final byte[] contentHash = sha256(content);
+        if (cachedStylesheet != null && Arrays.equals(cachedStylesheet.contentHash, contentHash)) {
+            CACHED_STYLESHEETS.put(key, new CachedStylesheet(lastModified, length, contentHash, cachedStylesheet.styleSheet));
+            return cachedStylesheet.styleSheet;
+        }
+        final InputSource inputSource = new InputSource();
+        inputSource.setByteStream(new ByteArrayInputStream(content));
+        final StyleSheet styleSheet = cssEngine.parseStyleSheet(inputSource, new ParsedURL(userStylesheet.toASCIIString()), "all");
+        CACHED_STYLESHEETS.put(key, new CachedStylesheet(lastModified, length, contentHash, styleSheet));
+        return styleSheet;
+    }
+
+    private static byte[] read(final URI uri) throws IOException {
+        try (InputStream inputStream = uri.toURL().openStream()) {
+            return readAllBytes(inputStream);
+        }
+    }
+
+    private static final class Key {
+        private final URI userStylesheet;
+        private final Class<?> cssEngineClass;
+
+        Key(final URI userStylesheet, final Class<?> cssEngineClass) {
+            this.userStylesheet = userStylesheet;
+            this.cssEngineClass = cssEngineClass;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            } else if (o == null || getClass() != o.getClass()) {
+                return false;
+            } else {
+                final Key that = (Key) o;
+                return userStylesheet.equals(that.userStylesheet) && cssEngineClass.equals(that.cssEngineClass);
+            }
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userStylesheet, cssEngineClass);
+        }
+    }
+
+    private static final class CachedStylesheet {
+        private final long lastModified;
+        private final long length;
+        private final byte[] contentHash;
+        private final StyleSheet styleSheet;
+
+        CachedStylesheet(final long lastModified, final long length, final byte[] contentHash, final StyleSheet styleSheet) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.contentHash = contentHash;
+            this.styleSheet = styleSheet;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+
+public final class StylesheetVariant {
+
+    private final URI userStylesheet;
+    private final List<Output> outputs;
+
+    private StylesheetVariant(final URI userStylesheet, final List<Output> outputs) {
+        this.userStylesheet = userStylesheet;
+        this.outputs = outputs;
+    }
+
+    public static StylesheetVariant stylesheetVariant(final URI userStylesheet, final Output... outputs) {
+        return stylesheetVariant(userStylesheet, asList(outputs));
+    }
+
+    public static StylesheetVariant stylesheetVariant(final URI userStylesheet, final List<Output> outputs) {
+        return new StylesheetVariant(userStylesheet, new ArrayList<>(outputs));
+    }
+
+    void plan(final Rasters rasters) {
+        for (final Output output : outputs) {
+            output.plan(rasters, userStylesheet);
+        }
+    }
+
+    void write(final Rasters rasters) throws IOException, ImageConversionException {
+        for (final Output output : outputs) {
+            output.write(rasters, userStylesheet);
+        }
+    }
+
+}
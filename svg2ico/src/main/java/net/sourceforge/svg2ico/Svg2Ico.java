@@ -10,8 +10,6 @@
 
 package net.sourceforge.svg2ico;
 
-import net.sf.image4j.codec.ico.ICOEncoder;
-
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
@@ -19,7 +17,9 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.Arrays.asList;
 import static net.sourceforge.svg2ico.SourceImage.sourceImage;
@@ -102,14 +102,31 @@ public final class Svg2Ico {
         final List<BufferedImage> bufferedImages = new ArrayList<>(sourceImages.size());
         int[] colourDepth = new int[sourceImages.size()];
         boolean[] compress = new boolean[sourceImages.size()];
-        int i = 0;
-        for (final SourceImage sourceImage : sourceImages) {
-            bufferedImages.add(sourceImage.toBufferedImage());
-            colourDepth[i] = sourceImage.colourDepth();
-            compress[i] = sourceImage.compress();
-            i++;
+        final Map<Object, Rasters> rastersBySource = new IdentityHashMap<>();
+        final List<Rasters> sourceRasters = new ArrayList<>(sourceImages.size());
+        final MemoryReservations memoryReservations = new MemoryReservations();
+        try {
+            for (final SourceImage sourceImage : sourceImages) {
+                Rasters rasters = rastersBySource.get(sourceImage.source());
+                if (rasters == null) {
+                    rasters = new Rasters(sourceImage.toSvgDocument(), sourceImage.renderOptions(), memoryReservations);
+                    rastersBySource.put(sourceImage.source(), rasters);
+                }
+                rasters.plan(sourceImage.width(), sourceImage.height(), sourceImage.userStylesheet(), sourceImage.renderOptions());
+                sourceRasters.add(rasters);
+            }
+            memoryReservations.reserve();
+            int i = 0;
+            for (final SourceImage sourceImage : sourceImages) {
+                bufferedImages.add(sourceRasters.get(i).raster(sourceImage.width(), sourceImage.height(), sourceImage.userStylesheet(), sourceImage.renderOptions()));
+                colourDepth[i] = sourceImage.colourDepth();
+                compress[i] = sourceImage.compress();
+                i++;
+            }
+            IcoEncoder.write(bufferedImages, colourDepth, compress, outputStream);
+        } finally {
+            memoryReservations.release();
         }
-        ICOEncoder.write(bufferedImages, colourDepth, compress, outputStream);
     }
 
 }
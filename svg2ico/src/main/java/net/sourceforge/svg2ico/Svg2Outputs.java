@@ -0,0 +1,152 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URI;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.SvgDocument.svgDocument;
+
+public final class Svg2Outputs {
+
+    private Svg2Outputs() {
+    }
+
+    public static void svgToOutputs(final InputStream inputStream, final Output... outputs) throws IOException, ImageConversionException {
+        svgToOutputs(inputStream, asList(outputs));
+    }
+
+    public static void svgToOutputs(final InputStream inputStream, final List<Output> outputs) throws IOException, ImageConversionException {
+        svgToOutputs(inputStream, renderOptions(), outputs);
+    }
+
+    public static void svgToOutputs(final Reader reader, final Output... outputs) throws IOException, ImageConversionException {
+        svgToOutputs(reader, asList(outputs));
+    }
+
+    public static void svgToOutputs(final Reader reader, final List<Output> outputs) throws IOException, ImageConversionException {
+        svgToOutputs(reader, renderOptions(), outputs);
+    }
+
+    public static void svgToOutputs(final InputStream inputStream, final URI userStylesheet, final Output... outputs) throws IOException, ImageConversionException {
+        svgToOutputs(inputStream, userStylesheet, asList(outputs));
+    }
+
+    public static void svgToOutputs(final InputStream inputStream, final URI userStylesheet, final List<Output> outputs) throws IOException, ImageConversionException {
+        svgToOutputs(inputStream, userStylesheet, renderOptions(), outputs);
+    }
+
+    public static void svgToOutputs(final Reader reader, final URI userStylesheet, final Output... outputs) throws IOException, ImageConversionException {
+        svgToOutputs(reader, userStylesheet, asList(outputs));
+    }
+
+    public static void svgToOutputs(final Reader reader, final URI userStylesheet, final List<Output> outputs) throws IOException, ImageConversionException {
+        svgToOutputs(reader, userStylesheet, renderOptions(), outputs);
+    }
+
+    public static void svgToOutputs(final InputStream inputStream, final RenderOptions renderOptions, final Output... outputs) throws IOException, ImageConversionException {
+        svgToOutputs(inputStream, renderOptions, asList(outputs));
+    }
+
+    public static void svgToOutputs(final InputStream inputStream, final RenderOptions renderOptions, final List<Output> outputs) throws IOException, ImageConversionException {
+        svgToOutputs(new Rasters(svgDocument(inputStream, renderOptions), renderOptions), null, outputs);
+    }
+
+    public static void svgToOutputs(final Reader reader, final RenderOptions renderOptions, final Output... outputs) throws IOException, ImageConversionException {
+        svgToOutputs(reader, renderOptions, asList(outputs));
+    }
+
+    public static void svgToOutputs(final Reader reader, final RenderOptions renderOptions, final List<Output> outputs) throws IOException, ImageConversionException {
+        svgToOutputs(new Rasters(svgDocument(reader, renderOptions), renderOptions), null, outputs);
+    }
+
+    public static void svgToOutputs(final InputStream inputStream, final URI userStylesheet, final RenderOptions renderOptions, final Output... outputs) throws IOException, ImageConversionException {
+        svgToOutputs(inputStream, userStylesheet, renderOptions, asList(outputs));
+    }
+
+    public static void svgToOutputs(final InputStream inputStream, final URI userStylesheet, final RenderOptions renderOptions, final List<Output> outputs) throws IOException, ImageConversionException {
+        svgToOutputs(new Rasters(svgDocument(inputStream, renderOptions), renderOptions), userStylesheet, outputs);
+    }
+
+    public static void svgToOutputs(final Reader reader, final URI userStylesheet, final RenderOptions renderOptions, final Output... outputs) throws IOException, ImageConversionException {
+        svgToOutputs(reader, userStylesheet, renderOptions, asList(outputs));
+    }
+
+    public static void svgToOutputs(final Reader reader, final URI userStylesheet, final RenderOptions renderOptions, final List<Output> outputs) throws IOException, ImageConversionException {
+        svgToOutputs(new Rasters(svgDocument(reader, renderOptions), renderOptions), userStylesheet, outputs);
+    }
+
+    public static void svgToStylesheetVariants(final InputStream inputStream, final StylesheetVariant... stylesheetVariants) throws IOException, ImageConversionException {
+        svgToStylesheetVariants(inputStream, asList(stylesheetVariants));
+    }
+
+    public static void svgToStylesheetVariants(final InputStream inputStream, final List<StylesheetVariant> stylesheetVariants) throws IOException, ImageConversionException {
+        svgToStylesheetVariants(inputStream, renderOptions(), stylesheetVariants);
+    }
+
+    public static void svgToStylesheetVariants(final Reader reader, final StylesheetVariant... stylesheetVariants) throws IOException, ImageConversionException {
+        svgToStylesheetVariants(reader, asList(stylesheetVariants));
+    }
+
+    public static void svgToStylesheetVariants(final Reader reader, final List<StylesheetVariant> stylesheetVariants) throws IOException, ImageConversionException {
+        svgToStylesheetVariants(reader, renderOptions(), stylesheetVariants);
+    }
+
+    public static void svgToStylesheetVariants(final InputStream inputStream, final RenderOptions renderOptions, final StylesheetVariant... stylesheetVariants) throws IOException, ImageConversionException {
+        svgToStylesheetVariants(inputStream, renderOptions, asList(stylesheetVariants));
+    }
+
+    public static void svgToStylesheetVariants(final InputStream inputStream, final RenderOptions renderOptions, final List<StylesheetVariant> stylesheetVariants) throws IOException, ImageConversionException {
+        svgToStylesheetVariants(new Rasters(svgDocument(inputStream, renderOptions), renderOptions), stylesheetVariants);
+    }
+
+    public static void svgToStylesheetVariants(final Reader reader, final RenderOptions renderOptions, final StylesheetVariant... stylesheetVariants) throws IOException, ImageConversionException {
+        svgToStylesheetVariants(reader, renderOptions, asList(stylesheetVariants));
+    }
+
+    public static void svgToStylesheetVariants(final Reader reader, final RenderOptions renderOptions, final List<StylesheetVariant> stylesheetVariants) throws IOException, ImageConversionException {
+        svgToStylesheetVariants(new Rasters(svgDocument(reader, renderOptions), renderOptions), stylesheetVariants);
+    }
+
+    private static void svgToStylesheetVariants(final Rasters rasters, final List<StylesheetVariant> stylesheetVariants) throws IOException, ImageConversionException {
+        try {
+            for (final StylesheetVariant stylesheetVariant : stylesheetVariants) {
+                stylesheetVariant.plan(rasters);
+            }
+            rasters.reserve();
+            for (final StylesheetVariant stylesheetVariant : stylesheetVariants) {
+                stylesheetVariant.write(rasters);
+            }
+        } finally {
+            rasters.release();
+        }
+    }
+
+    private static void svgToOutputs(final Rasters rasters, final URI userStylesheet, final List<Output> outputs) throws IOException, ImageConversionException {
+        try {
+            for (final Output output : outputs) {
+                output.plan(rasters, userStylesheet);
+            }
+            rasters.reserve();
+            for (final Output output : outputs) {
+                output.write(rasters, userStylesheet);
+            }
+        } finally {
+            rasters.release();
+        }
+    }
+
+}
@@ -17,6 +17,7 @@ import org.apache.batik.transcoder.image.PNGTranscoder;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.net.URI;
+import java.nio.IntBuffer;
 
 import static net.sourceforge.svg2ico.SourceImage.sourceImage;
 
@@ -67,11 +68,23 @@ public final class Svg2Png {
     }
 
     public static void svgToPng(final OutputStream outputStream, final SourceImage sourceImage) throws IOException, ImageConversionException {
-        final BufferedImage bufferedImage = sourceImage.toBufferedImage();
-        try {
-            new PNGTranscoder().writeImage(bufferedImage, new TranscoderOutput(outputStream));
-        } catch (TranscoderException e) {
-            throw new ImageConversionException(e);
+        writePng(outputStream, sourceImage.toBufferedImage());
+    }
+
+    static void writePng(final OutputStream outputStream, final BufferedImage bufferedImage) throws ImageConversionException {
+        final IntBuffer offHeapPixels = OffHeapRasters.pixels(bufferedImage);
+        if (offHeapPixels != null) {
+            try {
+                PngEncoder.write(outputStream, bufferedImage.getWidth(), bufferedImage.getHeight(), offHeapPixels);
+            } catch (IOException e) {
+                throw new ImageConversionException(new TranscoderException(e));
+            }
+        } else {
+            try {
+                new PNGTranscoder().writeImage(bufferedImage, new TranscoderOutput(outputStream));
+            } catch (TranscoderException e) {
+                throw new ImageConversionException(e);
+            }
         }
     }
 
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import net.sourceforge.svg2ico.RenderBudget.BudgetExceeded;
+import org.apache.batik.anim.dom.SVGOMDocument;
+import org.apache.batik.css.engine.CSSEngine;
+import org.apache.batik.css.parser.Parser;
+import org.apache.batik.transcoder.TranscoderException;
+import org.apache.batik.transcoder.TranscoderInput;
+import org.apache.batik.transcoder.image.PNGTranscoder;
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+import static net.sourceforge.svg2ico.InputStreams.readAllBytes;
+import static net.sourceforge.svg2ico.MemoryBudget.estimatedBytes;
+import static net.sourceforge.svg2ico.Readers.readAllCharacters;
+import static net.sourceforge.svg2ico.RenderBudget.conversionAbortedException;
+import static net.sourceforge.svg2ico.RenderBudget.renderBudget;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.SimpleSvg.simpleSvg;
+import static net.sourceforge.svg2ico.SvgScan.svgScan;
+import static org.apache.batik.util.SVGConstants.SVG_NAMESPACE_URI;
+import static org.apache.batik.util.SVGConstants.SVG_PRESERVE_ASPECT_RATIO_ATTRIBUTE;
+import static org.apache.batik.util.SVGConstants.SVG_SVG_TAG;
+import static org.apache.batik.util.SVGConstants.SVG_VIEW_BOX_ATTRIBUTE;
+import static org.apache.batik.util.XMLResourceDescriptor.setCSSParserClassName;
+
+final class SvgDocument {
+
+    private static final int MAXIMUM_POOLED_DOCUMENT_FACTORIES = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private static final Deque<ReusableSvgDocumentFactory> DOCUMENT_FACTORIES = new ArrayDeque<>();
+
+    private final DisplayList simpleSvg;
+    private final DocumentParser documentParser;
+    private final SvgScan svgScan;
+    private final long started;
+    private SVGOMDocument document;
+    private long renderedPixels = 0;
+
+    private SvgDocument(final SVGOMDocument document, final SvgScan svgScan, final long started) {
+        this.simpleSvg = null;
+        this.documentParser = null;
+        this.svgScan = svgScan;
+        this.started = started;
+        this.document = document;
+    }
+
+    // A document simple enough to render without Batik is only parsed by Batik if it's rendered in some way the simple renderer can't.
+    private SvgDocument(final DisplayList simpleSvg, final DocumentParser documentParser, final SvgScan svgScan, final long started) {
+        this.simpleSvg = simpleSvg;
+        this.documentParser = documentParser;
+        this.svgScan = svgScan;
+        this.started = started;
+    }
+
+    static SvgDocument svgDocument(final InputStream inputStream, final RenderOptions renderOptions) throws ImageConversionException {
+        final long started = System.nanoTime();
+        if (!renderOptions.simpleSvgRenderer() && renderOptions.memoryBudget() == null) {
+            return new SvgDocument(parse(inputStream, renderOptions, started), null, started);
+        }
+        final byte[] content;
+        try {
+            content = readAllBytes(inputStream);
+        } catch (IOException e) {
+            throw new ImageConversionException(new TranscoderException(e));
+        }
+        final SvgScan svgScan = renderOptions.memoryBudget() == null ? null : svgScan(new ByteArrayInputStream(content));
+        final DisplayList simpleSvg = renderOptions.simpleSvgRenderer() ? simpleSvg(new ByteArrayInputStream(content)) : null;
+        if (simpleSvg == null) {
+            return new SvgDocument(parse(new ByteArrayInputStream(content), renderOptions, started), svgScan, started);
+        }
+        return new SvgDocument(simpleSvg, new DocumentParser() {
+            @Override
+            SVGOMDocument parse() throws ImageConversionException {
+                return SvgDocument.parse(new ByteArrayInputStream(content), renderOptions, started);
+            }
+        }, svgScan, started);
+    }
+
+    static SvgDocument svgDocument(final Reader reader, final RenderOptions renderOptions) throws ImageConversionException {
+        final long started = System.nanoTime();
+        if (!renderOptions.simpleSvgRenderer() && renderOptions.memoryBudget() == null) {
+            return new SvgDocument(parse(reader, renderOptions, started), null, started);
+        }
+        final String content;
+        try {
+            content = readAllCharacters(reader);
+        } catch (IOException e) {
+            throw new ImageConversionException(new TranscoderException(e));
+        }
+        final SvgScan svgScan = renderOptions.memoryBudget() == null ? null : svgScan(new StringReader(content));
+        final DisplayList simpleSvg = renderOptions.simpleSvgRenderer() ? simpleSvg(new StringReader(content)) : null;
+        if (simpleSvg == null) {
+            return new SvgDocument(parse(new StringReader(content), renderOptions, started), svgScan, started);
+        }
+        return new SvgDocument(simpleSvg, new DocumentParser() {
+            @Override
+            SVGOMDocument parse() throws ImageConversionException {
+                return SvgDocument.parse(new StringReader(content), renderOptions, started);
+            }
+        }, svgScan, started);
+    }
+
+    private static SVGOMDocument parse(final InputStream inputStream, final RenderOptions renderOptions, final long started) throws ImageConversionException {
+        setCSSParserClassName(Parser.class.getCanonicalName());  // To help ShadowJar; if this isn't specified, Batik looks up the fully qualified class name in an XML file.
+        final ReusableSvgDocumentFactory documentFactory = borrowDocumentFactory();
+        documentFactory.setStripEditorMetadata(renderOptions.stripEditorMetadata());
+        documentFactory.setRenderBudget(renderBudget(renderOptions, started));
+        try {
+            final SVGOMDocument document = (SVGOMDocument) documentFactory.createDocument(SVG_NAMESPACE_URI, SVG_SVG_TAG, null, inputStream);
+            returnDocumentFactory(documentFactory);
+            return document;
+        } catch (IOException | DOMException | BudgetExceeded e) {
+            throw imageConversionException(e);
+        }
+    }
+
+    private static SVGOMDocument parse(final Reader reader, final RenderOptions renderOptions, final long started) throws ImageConversionException {
+        setCSSParserClassName(Parser.class.getCanonicalName());  // To help ShadowJar; if this isn't specified, Batik looks up the fully qualified class name in an XML file.
+        final ReusableSvgDocumentFactory documentFactory = borrowDocumentFactory();
+        documentFactory.setStripEditorMetadata(renderOptions.stripEditorMetadata());
+        documentFactory.setRenderBudget(renderBudget(renderOptions, started));
+        try {
+            final SVGOMDocument document = (SVGOMDocument) documentFactory.createDocument(SVG_NAMESPACE_URI, SVG_SVG_TAG, null, reader);
+            returnDocumentFactory(documentFactory);
+            return document;
+        } catch (IOException | DOMException | BudgetExceeded e) {
+            throw imageConversionException(e);
+        }
+    }
+
+    BufferedImage render(final float width, final float height) throws ImageConversionException {
+        return render(width, height, null, renderOptions());
+    }
+
+    synchronized BufferedImage render(final float width, final float height, final URI userStylesheet, final RenderOptions renderOptions) throws ImageConversionException {
+        return render(width, height, userStylesheet, renderOptions, null);
+    }
+
+    // Adds what a render will need from the memory budget to a conversion's reservations, before they're reserved.
+    void plan(final float width, final float height, final URI userStylesheet, final RenderOptions renderOptions, final MemoryReservations memoryReservations) {
+        final MemoryBudget memoryBudget = renderOptions.memoryBudget();
+        if (memoryBudget != null) {
+            final int imageWidth = (int) (width + 0.5);
+            final int imageHeight = (int) (height + 0.5);
+            memoryReservations.plan(memoryBudget, 4L * imageWidth * imageHeight, estimatedBytes(svgScan, imageWidth, imageHeight, renderOptions, rendersSimpleSvg(userStylesheet, renderOptions)));
+        }
+    }
+
+    // A render that was planned into reservations runs within them; anything else takes its share of the memory budget only while it renders.
+    synchronized BufferedImage render(final float width, final float height, final URI userStylesheet, final RenderOptions renderOptions, final MemoryReservations memoryReservations) throws ImageConversionException {
+        final int imageWidth = (int) (width + 0.5);  // Rounded the way Batik's transcoder rounds the image size.
+        final int imageHeight = (int) (height + 0.5);
+        final RenderBudget renderBudget = renderBudget(renderOptions, started);
+        try {
+            renderBudget.checkPixels(renderedPixels + (long) imageWidth * imageHeight);
+        } catch (BudgetExceeded e) {
+            throw imageConversionException(e);
+        }
+        renderedPixels += (long) imageWidth * imageHeight;
+        final boolean rendersSimpleSvg = rendersSimpleSvg(userStylesheet, renderOptions);
+        final MemoryBudget memoryBudget = renderOptions.memoryBudget();
+        if (memoryBudget == null || memoryReservations != null && memoryReservations.reserved(memoryBudget)) {
+            return render(width, height, userStylesheet, renderOptions, renderBudget, rendersSimpleSvg);
+        }
+        final long estimatedBytes = estimatedBytes(svgScan, imageWidth, imageHeight, renderOptions, rendersSimpleSvg);
+        memoryBudget.acquire(estimatedBytes);
+        try {
+            return render(width, height, userStylesheet, renderOptions, renderBudget, rendersSimpleSvg);
+        } finally {
+            memoryBudget.release(estimatedBytes);
+        }
+    }
+
+    private boolean rendersSimpleSvg(final URI userStylesheet, final RenderOptions renderOptions) {
+        return simpleSvg != null && userStylesheet == null && renderOptions.simpleSvgRenderer();
+    }
+
+    private BufferedImage render(final float width, final float height, final URI userStylesheet, final RenderOptions renderOptions, final RenderBudget renderBudget, final boolean rendersSimpleSvg) throws ImageConversionException {
+        if (rendersSimpleSvg) {
+            return simpleSvg.toBufferedImage((int) (width + 0.5), (int) (height + 0.5), renderOptions.renderingQuality());
+        }
+        final BufferedImageTranscoder imageTranscoder = new BufferedImageTranscoder(userStylesheet, renderOptions, renderBudget);
+        imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_WIDTH, width);
+        imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_HEIGHT, height);
+        transcode(imageTranscoder, userStylesheet, renderOptions);
+        return imageTranscoder.getBufferedImage();
+    }
+
+    // Recorded at the document's own size; the display list scales it to whatever size it's painted at.
+    synchronized DisplayList displayList(final URI userStylesheet, final RenderOptions renderOptions) throws ImageConversionException {
+        if (simpleSvg != null && userStylesheet == null && renderOptions.simpleSvgRenderer()) {
+            return simpleSvg;
+        }
+        final DisplayListRenderer displayListRenderer = new DisplayListRenderer();
+        final BufferedImageTranscoder imageTranscoder = new BufferedImageTranscoder(userStylesheet, renderOptions, renderBudget(renderOptions, started), displayListRenderer);
+        transcode(imageTranscoder, userStylesheet, renderOptions);
+        final Element rootElement = document().getRootElement();
+        return displayListRenderer.displayList(
+                imageTranscoder.imageWidth(),
+                imageTranscoder.imageHeight(),
+                rootElement.getAttributeNS(null, SVG_VIEW_BOX_ATTRIBUTE),
+                rootElement.getAttributeNS(null, SVG_PRESERVE_ASPECT_RATIO_ATTRIBUTE)
+        );
+    }
+
+    private void transcode(final BufferedImageTranscoder imageTranscoder, final URI userStylesheet, final RenderOptions renderOptions) throws ImageConversionException {
+        resetCascade();
+        if (userStylesheet != null) {
+            imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_ALLOW_EXTERNAL_RESOURCES, TRUE);
+        }
+        if (renderOptions.staticOnly()) {
+            imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_EXECUTE_ONLOAD, FALSE);
+            imageTranscoder.addTranscodingHint(PNGTranscoder.KEY_ALLOWED_SCRIPT_TYPES, "");
+        }
+        try {
+            imageTranscoder.transcode(new TranscoderInput(document()), null);
+        } catch (TranscoderException | BudgetExceeded e) {
+            throw imageConversionException(e);
+        }
+    }
+
+    private static ImageConversionException imageConversionException(final Exception e) {
+        final ConversionAbortedException conversionAbortedException = conversionAbortedException(e);
+        if (conversionAbortedException != null) {
+            return conversionAbortedException;
+        }
+        return new ImageConversionException(e instanceof TranscoderException ? (TranscoderException) e : new TranscoderException(e));
+    }
+
+    private SVGOMDocument document() throws ImageConversionException {
+        if (document == null) {
+            document = documentParser.parse();
+        }
+        return document;
+    }
+
+    // Batik leaves the CSS engine, and the styles it computed, attached to the document after transcoding, so they have to be discarded before the document can be rendered again.
+    private void resetCascade() throws ImageConversionException {
+        final CSSEngine cssEngine = document().getCSSEngine();
+        if (cssEngine != null) {
+            cssEngine.dispose();
+            document().setCSSEngine(null);
+        }
+    }
+
+    // A factory is only returned to the pool once it has parsed a document successfully, so one left in an unknown state by a failure is never reused.
+    private static ReusableSvgDocumentFactory borrowDocumentFactory() {
+        final ReusableSvgDocumentFactory documentFactory;
+        synchronized (DOCUMENT_FACTORIES) {
+            documentFactory = DOCUMENT_FACTORIES.pollFirst();
+        }
+        return documentFactory == null ? new ReusableSvgDocumentFactory(XMLResourceDescriptor.getXMLParserClassName()) : documentFactory;
+    }
+
+    private static void returnDocumentFactory(final ReusableSvgDocumentFactory documentFactory) {
+        synchronized (DOCUMENT_FACTORIES) {
+            if (DOCUMENT_FACTORIES.size() < MAXIMUM_POOLED_DOCUMENT_FACTORIES) {
+                DOCUMENT_FACTORIES.addFirst(documentFactory);
+            }
+        }
+    }
+
+    private abstract static class DocumentParser {
+        abstract SVGOMDocument parse() throws ImageConversionException;
+    }
+
+}
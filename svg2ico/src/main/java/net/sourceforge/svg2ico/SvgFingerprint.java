@@ -0,0 +1,360 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.transcoder.TranscoderException;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static javax.xml.XMLConstants.XML_NS_URI;
+import static net.sourceforge.svg2ico.EditorMetadataFilter.isEditorNamespace;
+import static net.sourceforge.svg2ico.Sha256.hex;
+import static net.sourceforge.svg2ico.Sha256.sha256;
+import static net.sourceforge.svg2ico.XmlStreams.xmlStreamReader;
+import static org.apache.batik.util.SVGConstants.SVG_NAMESPACE_URI;
+
+// A SHA-256 of the document's canonical form, so re-exports that differ only in attribute order, whitespace, number formatting, comments, editor metadata or
+// element IDs share a fingerprint.
+public final class SvgFingerprint {
+
+    // Only url(#id) and an href of #id refer to an element; anywhere else, "#fff" is a colour, not a reference to an element with that id.
+    private static final Pattern URL_REFERENCE = Pattern.compile("(url\\(\\s*['\"]?#)([A-Za-z_][-A-Za-z0-9_]*)");
+    private static final Pattern HREF_REFERENCE = Pattern.compile("#([A-Za-z_][-A-Za-z0-9_]*)");
+    private static final Set<String> NUMERIC_ATTRIBUTES = new HashSet<>(Arrays.asList(
+            "d", "points", "x", "y", "x1", "y1", "x2", "y2", "cx", "cy", "r", "rx", "ry", "fx", "fy", "dx", "dy", "width", "height", "viewBox",
+            "transform", "gradientTransform", "patternTransform", "offset", "opacity", "fill-opacity", "stroke-opacity", "stop-opacity",
+            "stroke-width", "stroke-miterlimit", "stroke-dasharray", "stroke-dashoffset", "font-size", "stdDeviation"
+    ));
+
+    private SvgFingerprint() {
+    }
+
+    public static String svgFingerprint(final InputStream inputStream) throws ImageConversionException {
+        try {
+            return svgFingerprint(xmlStreamReader(inputStream));
+        } catch (XMLStreamException e) {
+            throw new ImageConversionException(new TranscoderException(e));
+        }
+    }
+
+    public static String svgFingerprint(final Reader reader) throws ImageConversionException {
+        try {
+            return svgFingerprint(xmlStreamReader(reader));
+        } catch (XMLStreamException e) {
+            throw new ImageConversionException(new TranscoderException(e));
+        }
+    }
+
+    // IDs can be referenced before they are defined, so the document is read into a list of canonical events before any of it is hashed.
+    private static String svgFingerprint(final XMLStreamReader xmlStreamReader) throws XMLStreamException {
+        final List<String[]> events = new ArrayList<>();
+        final List<String> definedIds = new ArrayList<>();
+        final Set<String> referencedIds = new HashSet<>();
+        try {
+            final Deque<Boolean> preserveSpace = new ArrayDeque<>();
+            final StringBuilder text = new StringBuilder();
+            int skippedDepth = 0;
+            int textDepth = 0;
+            while (xmlStreamReader.hasNext()) {
+                switch (xmlStreamReader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (skippedDepth > 0 || isSkipped(xmlStreamReader.getNamespaceURI(), xmlStreamReader.getLocalName())) {
+                            skippedDepth++;
+                        } else {
+                            flushText(events, text, referencedIds, Boolean.TRUE.equals(preserveSpace.peek()), textDepth > 0);
+                            if (textDepth > 0 || (SVG_NAMESPACE_URI.equals(xmlStreamReader.getNamespaceURI()) && "text".equals(xmlStreamReader.getLocalName()))) {
+                                textDepth++;
+                            }
+                            final String space = xmlStreamReader.getAttributeValue(XML_NS_URI, "space");
+                            preserveSpace.push(space == null ? Boolean.TRUE.equals(preserveSpace.peek()) : "preserve".equals(space));
+                            events.add(startElement(xmlStreamReader, definedIds, referencedIds));
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (skippedDepth > 0) {
+                            skippedDepth--;
+                        } else {
+                            flushText(events, text, referencedIds, preserveSpace.pop(), textDepth > 0);
+                            if (textDepth > 0) {
+                                textDepth--;
+                            }
+                            events.add(new String[]{"/"});
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (skippedDepth == 0) {
+                            text.append(xmlStreamReader.getText());
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            xmlStreamReader.close();
+        }
+        final Map<String, String> canonicalIds = new HashMap<>();
+        for (final String definedId : definedIds) {
+            if (referencedIds.contains(definedId) && !canonicalIds.containsKey(definedId)) {
+                canonicalIds.put(definedId, "i" + canonicalIds.size());
+            }
+        }
+        final MessageDigest messageDigest = sha256();
+        for (final String[] event : events) {
+            final List<String> canonicalEvent = new ArrayList<>(event.length);
+            canonicalEvent.add(event[0]);
+            if ("<".equals(event[0])) {
+                canonicalEvent.add(event[1]);
+                for (int i = 2; i < event.length; i += 2) {
+                    if ("id".equals(event[i])) {
+                        final String canonicalId = canonicalIds.get(event[i + 1]);
+                        if (canonicalId != null) {
+                            canonicalEvent.add(event[i]);
+                            canonicalEvent.add(canonicalId);
+                        }
+                    } else {
+                        canonicalEvent.add(event[i]);
+                        canonicalEvent.add(withCanonicalIdReferences(event[i + 1], isHref(event[i]), canonicalIds));
+                    }
+                }
+            } else if ("t".equals(event[0])) {
+                canonicalEvent.add(withCanonicalIdReferences(event[1], false, canonicalIds));
+            }
+            update(messageDigest, Integer.toString(canonicalEvent.size()));
+            for (final String part : canonicalEvent) {
+                update(messageDigest, part);
+            }
+        }
+        return hex(messageDigest.digest());
+    }
+
+    private static boolean isSkipped(final String namespaceUri, final String localName) {
+        return (namespaceUri != null && isEditorNamespace(namespaceUri)) || (SVG_NAMESPACE_URI.equals(namespaceUri) && "metadata".equals(localName));
+    }
+
+    // A start element is its name followed by its attributes' names and values, sorted by name; unused ids are only dropped once every reference is known.
+    private static String[] startElement(final XMLStreamReader xmlStreamReader, final List<String> definedIds, final Set<String> referencedIds) {
+        final Map<String, String> attributes = new TreeMap<>();
+        for (int i = 0; i < xmlStreamReader.getAttributeCount(); i++) {
+            final String namespaceUri = xmlStreamReader.getAttributeNamespace(i);
+            final String localName = xmlStreamReader.getAttributeLocalName(i);
+            final String value = xmlStreamReader.getAttributeValue(i);
+            if (namespaceUri == null || namespaceUri.isEmpty()) {
+                if ("id".equals(localName)) {
+                    definedIds.add(value.trim());
+                    attributes.put(localName, value.trim());
+                } else {
+                    attributes.put(localName, canonicalValue(localName, value, referencedIds));
+                }
+            } else if (!isEditorNamespace(namespaceUri)) {
+                attributes.put("{" + namespaceUri + "}" + localName, canonicalValue(localName, value, referencedIds));
+            }
+        }
+        final String[] event = new String[2 + 2 * attributes.size()];
+        event[0] = "<";
+        event[1] = "{" + (xmlStreamReader.getNamespaceURI() == null ? "" : xmlStreamReader.getNamespaceURI()) + "}" + xmlStreamReader.getLocalName();
+        int i = 2;
+        for (final Map.Entry<String, String> attribute : attributes.entrySet()) {
+            event[i++] = attribute.getKey();
+            event[i++] = attribute.getValue();
+        }
+        return event;
+    }
+
+    // Inside a text element, whitespace at either end of a chunk of text can separate it from its neighbour's words, so it is kept rather than trimmed.
+    private static void flushText(final List<String[]> events, final StringBuilder text, final Set<String> referencedIds, final boolean preserveSpace, final boolean inText) {
+        if (text.length() > 0) {
+            final String canonicalText = preserveSpace ? text.toString() : inText ? collapseTextWhitespace(text) : collapseWhitespace(text);
+            if (!canonicalText.isEmpty()) {
+                addReferences(canonicalText, false, referencedIds);
+                events.add(new String[]{"t", canonicalText});
+            }
+            text.setLength(0);
+        }
+    }
+
+    private static String canonicalValue(final String localName, final String value, final Set<String> referencedIds) {
+        final String canonicalValue = NUMERIC_ATTRIBUTES.contains(localName) ? canonicalNumbers(value) : collapseWhitespace(value);
+        addReferences(canonicalValue, isHref(localName), referencedIds);
+        return canonicalValue;
+    }
+
+    // Both href and xlink:href, which are named by their local name while reading and by their qualified name while hashing.
+    private static boolean isHref(final String name) {
+        return "href".equals(name) || name.endsWith("}href");
+    }
+
+    private static void addReferences(final String value, final boolean href, final Set<String> referencedIds) {
+        if (href) {
+            final Matcher matcher = HREF_REFERENCE.matcher(value);
+            if (matcher.matches()) {
+                referencedIds.add(matcher.group(1));
+            }
+        }
+        final Matcher matcher = URL_REFERENCE.matcher(value);
+        while (matcher.find()) {
+            referencedIds.add(matcher.group(2));
+        }
+    }
+
+    private static String withCanonicalIdReferences(final String value, final boolean href, final Map<String, String> canonicalIds) {
+        if (value.indexOf('#') == -1) {
+            return value;
+        }
+        if (href) {
+            final Matcher matcher = HREF_REFERENCE.matcher(value);
+            if (matcher.matches()) {
+                final String canonicalId = canonicalIds.get(matcher.group(1));
+                return canonicalId == null ? value : "#" + canonicalId;
+            }
+        }
+        final Matcher matcher = URL_REFERENCE.matcher(value);
+        final StringBuffer result = new StringBuffer(value.length());
+        while (matcher.find()) {
+            final String canonicalId = canonicalIds.get(matcher.group(2));
+            matcher.appendReplacement(result, Matcher.quoteReplacement(canonicalId == null ? matcher.group() : matcher.group(1) + canonicalId));
+        }
+        return matcher.appendTail(result).toString();
+    }
+
+    private static String collapseWhitespace(final CharSequence value) {
+        final StringBuilder result = new StringBuilder(value.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+                pendingSpace = result.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    result.append(' ');
+                    pendingSpace = false;
+                }
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    // Follows SVG's default handling of text: newlines are removed, tabs become spaces and runs of spaces become one.
+    private static String collapseTextWhitespace(final CharSequence value) {
+        final StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == ' ' || c == '\t') {
+                if (result.length() == 0 || result.charAt(result.length() - 1) != ' ') {
+                    result.append(' ');
+                }
+            } else if (c != '\n' && c != '\r') {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    // Rewrites every number in its shortest exact form and keeps a separator only where one number directly follows another, so "M 1.50,2" and "M1.5 2" match.
+    private static String canonicalNumbers(final String value) {
+        final StringBuilder result = new StringBuilder(value.length());
+        boolean previousWasNumber = false;
+        int i = 0;
+        while (i < value.length()) {
+            final char c = value.charAt(i);
+            final int end = numberEnd(value, i);
+            if (end > i) {
+                if (previousWasNumber) {
+                    result.append(' ');
+                }
+                result.append(canonicalNumber(value.substring(i, end)));
+                previousWasNumber = true;
+                i = end;
+            } else {
+                if (c != ' ' && c != '\t' && c != '\n' && c != '\r' && c != ',') {
+                    result.append(c);
+                    previousWasNumber = false;
+                }
+                i++;
+            }
+        }
+        return result.toString();
+    }
+
+    private static String canonicalNumber(final String number) {
+        try {
+            final BigDecimal bigDecimal = new BigDecimal(number);
+            return bigDecimal.signum() == 0 ? "0" : bigDecimal.stripTrailingZeros().toString();
+        } catch (NumberFormatException e) {
+            return number;  // An exponent too large for BigDecimal; no renderer could draw it anyway.
+        }
+    }
+
+    private static int numberEnd(final String value, final int start) {
+        int i = start;
+        if (i < value.length() && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        while (i < value.length() && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+            i++;
+            digits++;
+        }
+        if (i < value.length() && value.charAt(i) == '.') {
+            int fractionEnd = i + 1;
+            while (fractionEnd < value.length() && value.charAt(fractionEnd) >= '0' && value.charAt(fractionEnd) <= '9') {
+                fractionEnd++;
+                digits++;
+            }
+            i = fractionEnd;
+        }
+        if (digits == 0) {
+            return start;
+        }
+        if (i < value.length() && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            int exponentEnd = i + 1;
+            if (exponentEnd < value.length() && (value.charAt(exponentEnd) == '-' || value.charAt(exponentEnd) == '+')) {
+                exponentEnd++;
+            }
+            final int exponentDigitsStart = exponentEnd;
+            while (exponentEnd < value.length() && value.charAt(exponentEnd) >= '0' && value.charAt(exponentEnd) <= '9') {
+                exponentEnd++;
+            }
+            if (exponentEnd > exponentDigitsStart) {
+                i = exponentEnd;
+            }
+        }
+        return i;
+    }
+
+    private static void update(final MessageDigest messageDigest, final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        messageDigest.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+        messageDigest.update(bytes);
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.transcoder.TranscoderException;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static net.sourceforge.svg2ico.XmlStreams.xmlStreamReader;
+import static org.apache.batik.util.SVGConstants.SVG_NAMESPACE_URI;
+import static org.apache.batik.util.SVGConstants.SVG_SVG_TAG;
+
+public final class SvgScan {
+
+    private final float width;
+    private final float height;
+    private final float[] viewBox;
+    private final int elementCount;
+    private final int pathSegmentCount;
+    private final int filterCount;
+    private final int maskCount;
+
+    private SvgScan(final float width, final float height, final float[] viewBox, final int elementCount, final int pathSegmentCount, final int filterCount, final int maskCount) {
+        this.width = width;
+        this.height = height;
+        this.viewBox = viewBox;
+        this.elementCount = elementCount;
+        this.pathSegmentCount = pathSegmentCount;
+        this.filterCount = filterCount;
+        this.maskCount = maskCount;
+    }
+
+    public static SvgScan svgScan(final InputStream inputStream) throws ImageConversionException {
+        try {
+            return svgScan(xmlStreamReader(inputStream));
+        } catch (XMLStreamException e) {
+            throw new ImageConversionException(new TranscoderException(e));
+        }
+    }
+
+    public static SvgScan svgScan(final Reader reader) throws ImageConversionException {
+        try {
+            return svgScan(xmlStreamReader(reader));
+        } catch (XMLStreamException e) {
+            throw new ImageConversionException(new TranscoderException(e));
+        }
+    }
+
+    // Width and height in pixels, falling back to the view box when they are absent or relative; NaN when neither gives a size.
+    public float width() {
+        return width;
+    }
+
+    public float height() {
+        return height;
+    }
+
+    public float[] viewBox() {
+        return viewBox == null ? null : viewBox.clone();
+    }
+
+    public int elementCount() {
+        return elementCount;
+    }
+
+    public int pathSegmentCount() {
+        return pathSegmentCount;
+    }
+
+    public int filterCount() {
+        return filterCount;
+    }
+
+    public int maskCount() {
+        return maskCount;
+    }
+
+    private static SvgScan svgScan(final XMLStreamReader xmlStreamReader) throws ImageConversionException, XMLStreamException {
+        try {
+            String widthAttribute = null;
+            String heightAttribute = null;
+            float[] viewBox = null;
+            int elementCount = 0;
+            int pathSegmentCount = 0;
+            int filterCount = 0;
+            int maskCount = 0;
+            while (xmlStreamReader.hasNext()) {
+                if (xmlStreamReader.next() == XMLStreamConstants.START_ELEMENT) {
+                    final String localName = xmlStreamReader.getLocalName();
+                    if (elementCount++ == 0) {
+                        if (!SVG_SVG_TAG.equals(localName) || !SVG_NAMESPACE_URI.equals(xmlStreamReader.getNamespaceURI())) {
+                            throw new ImageConversionException(new TranscoderException("Root element is not an SVG svg element: " + xmlStreamReader.getName()));
+                        }
+                        widthAttribute = xmlStreamReader.getAttributeValue(null, "width");
+                        heightAttribute = xmlStreamReader.getAttributeValue(null, "height");
+                        viewBox = viewBox(xmlStreamReader.getAttributeValue(null, "viewBox"));
+                    }
+                    if ("path".equals(localName)) {
+                        pathSegmentCount += pathSegmentCount(xmlStreamReader.getAttributeValue(null, "d"));
+                    } else if ("polyline".equals(localName) || "polygon".equals(localName)) {
+                        pathSegmentCount += numbers(xmlStreamReader.getAttributeValue(null, "points")).length / 2;
+                    }
+                    final String style = xmlStreamReader.getAttributeValue(null, "style");
+                    if (uses(xmlStreamReader.getAttributeValue(null, "filter")) || declares(style, "filter")) {
+                        filterCount++;
+                    }
+                    if (uses(xmlStreamReader.getAttributeValue(null, "mask")) || declares(style, "mask")) {
+                        maskCount++;
+                    }
+                }
+            }
+            if (elementCount == 0) {
+                throw new ImageConversionException(new TranscoderException("Document has no root element"));
+            }
+            return new SvgScan(
+                    size(widthAttribute, viewBox == null ? Float.NaN : viewBox[2]),
+                    size(heightAttribute, viewBox == null ? Float.NaN : viewBox[3]),
+                    viewBox,
+                    elementCount,
+                    pathSegmentCount,
+                    filterCount,
+                    maskCount
+            );
+        } finally {
+            xmlStreamReader.close();
+        }
+    }
+
+    private static boolean uses(final String reference) {
+        return reference != null && !reference.trim().isEmpty() && !"none".equals(reference.trim());
+    }
+
+    private static boolean declares(final String style, final String property) {
+        if (style != null) {
+            for (final String declaration : style.split(";")) {
+                final int colon = declaration.indexOf(':');
+                if (colon != -1 && property.equals(declaration.substring(0, colon).trim().toLowerCase(Locale.ROOT)) && uses(declaration.substring(colon + 1))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static float[] viewBox(final String viewBox) {
+        final float[] numbers = numbers(viewBox);
+        return numbers.length == 4 && numbers[2] >= 0 && numbers[3] >= 0 ? numbers : null;
+    }
+
+    private static float size(final String length, final float viewBoxSize) {
+        if (length == null) {
+            return viewBoxSize;
+        }
+        final String trimmed = length.trim().toLowerCase(Locale.ROOT);
+        for (final Unit unit : Unit.values()) {
+            if (trimmed.endsWith(unit.suffix)) {
+                final float[] numbers = numbers(trimmed.substring(0, trimmed.length() - unit.suffix.length()));
+                return numbers.length == 1 ? numbers[0] * unit.pixelsPerUnit : viewBoxSize;
+            }
+        }
+        final float[] numbers = numbers(trimmed);
+        return numbers.length == 1 ? numbers[0] : viewBoxSize;
+    }
+
+    // Counts each command, including the implicit repeats of a command whose letter is followed by more than one set of coordinates.
+    private static int pathSegmentCount(final String pathData) {
+        if (pathData == null) {
+            return 0;
+        }
+        int pathSegmentCount = 0;
+        int commandStart = -1;
+        for (int i = 0; i <= pathData.length(); i++) {
+            if (i == pathData.length() || isPathCommand(pathData.charAt(i))) {
+                if (commandStart != -1) {
+                    final int coordinatesPerSegment = coordinatesPerSegment(pathData.charAt(commandStart));
+                    final int coordinates = numbers(pathData.substring(commandStart + 1, i)).length;
+                    pathSegmentCount += coordinatesPerSegment == 0 ? 1 : Math.max(1, coordinates / coordinatesPerSegment);
+                }
+                commandStart = i;
+            }
+        }
+        return pathSegmentCount;
+    }
+
+    private static boolean isPathCommand(final char character) {
+        return "MmZzLlHhVvCcSsQqTtAa".indexOf(character) != -1;
+    }
+
+    private static int coordinatesPerSegment(final char command) {
+        switch (Character.toLowerCase(command)) {
+            case 'z':
+                return 0;
+            case 'h':
+            case 'v':
+                return 1;
+            case 'm':
+            case 'l':
+            case 't':
+                return 2;
+            case 's':
+            case 'q':
+                return 4;
+            case 'c':
+                return 6;
+            case 'a':
+                return 7;
+            default:
+                throw new IllegalArgumentException("Not a path command: " + command);
+        }
+    }
+
+    // Splits a list of SVG numbers, which may be separated by whitespace, commas, or nothing at all where a sign or second decimal point makes the boundary unambiguous.
+    private static float[] numbers(final String list) {
+        if (list == null) {
+            return new float[0];
+        }
+        float[] numbers = new float[8];
+        int count = 0;
+        int i = 0;
+        while (i < list.length()) {
+            final char character = list.charAt(i);
+            if (Character.isWhitespace(character) || character == ',') {
+                i++;
+            } else {
+                final int start = i;
+                boolean seenDecimalPoint = false;
+                boolean seenExponent = false;
+                if (list.charAt(i) == '-' || list.charAt(i) == '+') {
+                    i++;
+                }
+                while (i < list.length()) {
+                    final char c = list.charAt(i);
+                    if (c >= '0' && c <= '9') {
+                        i++;
+                    } else if (c == '.' && !seenDecimalPoint && !seenExponent) {
+                        seenDecimalPoint = true;
+                        i++;
+                    } else if ((c == 'e' || c == 'E') && !seenExponent && i > start) {
+                        seenExponent = true;
+                        i++;
+                        if (i < list.length() && (list.charAt(i) == '-' || list.charAt(i) == '+')) {
+                            i++;
+                        }
+                    } else {
+                        break;
+                    }
+                }
+                if (i == start) {
+                    return new float[0];
+                }
+                try {
+                    if (count == numbers.length) {
+                        numbers = Arrays.copyOf(numbers, count * 2);
+                    }
+                    numbers[count++] = Float.parseFloat(list.substring(start, i));
+                } catch (NumberFormatException e) {
+                    return new float[0];
+                }
+            }
+        }
+        return Arrays.copyOf(numbers, count);
+    }
+
+    // Batik's default resolution of 96 pixels per inch.
+    private enum Unit {
+        PX("px", 1), IN("in", 96), CM("cm", 96 / 2.54f), MM("mm", 96 / 25.4f), PT("pt", 96 / 72f), PC("pc", 16);
+
+        private final String suffix;
+        private final float pixelsPerUnit;
+
+        Unit(final String suffix, final float pixelsPerUnit) {
+            this.suffix = suffix;
+            this.pixelsPerUnit = pixelsPerUnit;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SvgScan{" + width + " x " + height + ", " + elementCount + " elements, " + pathSegmentCount + " path segments, " + filterCount + " filters, " + maskCount + " masks}";
+    }
+}
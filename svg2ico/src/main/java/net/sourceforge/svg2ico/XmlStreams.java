@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.io.Reader;
+
+import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+
+final class XmlStreams {
+
+    private static final String IGNORE_EXTERNAL_DTD = "http://java.sun.com/xml/stream/properties/ignore-external-dtd";
+    private static final XMLInputFactory XML_INPUT_FACTORY = xmlInputFactory();
+
+    private XmlStreams() {
+    }
+
+    static XMLStreamReader xmlStreamReader(final InputStream inputStream) throws XMLStreamException {
+        return XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+    }
+
+    static XMLStreamReader xmlStreamReader(final Reader reader) throws XMLStreamException {
+        return XML_INPUT_FACTORY.createXMLStreamReader(reader);
+    }
+
+    // The document type's internal subset is still processed, because editors commonly declare namespace entities there, but nothing external is ever fetched.
+    private static XMLInputFactory xmlInputFactory() {
+        final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, TRUE);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_VALIDATING, FALSE);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, FALSE);
+        try {
+            xmlInputFactory.setProperty(IGNORE_EXTERNAL_DTD, TRUE);
+            xmlInputFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        } catch (IllegalArgumentException e) {
+            xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, FALSE);
+        }
+        return xmlInputFactory;
+    }
+}
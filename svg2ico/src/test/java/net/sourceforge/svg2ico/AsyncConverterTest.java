@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.sourceforge.svg2ico.AsyncConverter.asyncConverter;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.SourceImage.sourceImage;
+import static net.sourceforge.svg2ico.SourceImage.sourceImageToCompress;
+import static net.sourceforge.svg2ico.TestingUtilities.ICON;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncConverterTest {
+
+    private static final String SLOW = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\">" +
+            "<filter id=\"f\"><feGaussianBlur stdDeviation=\"3\"/></filter>" +
+            "<circle cx=\"16\" cy=\"16\" r=\"12\" fill=\"#f00\" filter=\"url(#f)\"/>" +
+            "</svg>";
+
+    @Test
+    void convertsIcosLikeTheBlockingMethods() throws Exception {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final StringReader blockingReader = new StringReader(ICON);
+        Svg2Ico.svgToIco(expected, sourceImage(blockingReader, 16, 16), sourceImageToCompress(blockingReader, 48, 48));
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        final StringReader reader = new StringReader(ICON);
+        final CountingExecutor renderExecutor = new CountingExecutor();
+        final CountingExecutor ioExecutor = new CountingExecutor();
+        asyncConverter(renderExecutor, ioExecutor).svgToIco(actual, sourceImage(reader, 16, 16), sourceImageToCompress(reader, 48, 48)).get(1, MINUTES);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        assertEquals(1, renderExecutor.executions.get());
+        assertEquals(2, ioExecutor.executions.get());
+    }
+
+    @Test
+    void convertsPngsLikeTheBlockingMethods() throws Exception {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Svg2Png.svgToPng(new StringReader(ICON), expected, 64, 64);
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        asyncConverter(new CountingExecutor(), new CountingExecutor()).svgToPng(actual, sourceImage(new StringReader(ICON), 64, 64)).get(1, MINUTES);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    void convertsRasters() throws Exception {
+        final BufferedImage raster = asyncConverter(new CountingExecutor(), new CountingExecutor()).svgToRaster(sourceImage(new StringReader(ICON), 40, 30)).get(1, MINUTES);
+        assertEquals(40, raster.getWidth());
+        assertEquals(30, raster.getHeight());
+    }
+
+    @Test
+    void failsTheFutureWhenConversionFails() {
+        final CompletableFuture<BufferedImage> future = asyncConverter(new CountingExecutor(), new CountingExecutor()).svgToRaster(sourceImage(new StringReader("<svg"), 16, 16));
+        final ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(1, MINUTES));
+        assertInstanceOf(ImageConversionException.class, exception.getCause());
+    }
+
+    @Test
+    void cancellingStopsTheRenderWithoutLeavingItsThreadInterrupted() throws InterruptedException, ExecutionException, TimeoutException {
+        final ExecutorService renderExecutor = Executors.newSingleThreadExecutor();
+        final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final RenderOptions renderOptions = renderOptions().withTimeLimit(1, MINUTES);
+            final CompletableFuture<BufferedImage> future = asyncConverter(renderExecutor, ioExecutor).svgToRaster(sourceImage(new StringReader(SLOW), 6000, 6000).withRenderOptions(renderOptions));
+            Thread.sleep(200);
+            assertTrue(future.cancel(true));
+            final Future<Boolean> interrupted = renderExecutor.submit(() -> Thread.currentThread().isInterrupted());
+            assertFalse(interrupted.get(30, SECONDS));
+            assertTrue(future.isCancelled());
+        } finally {
+            renderExecutor.shutdownNow();
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    private static final class CountingExecutor implements Executor {
+        private final AtomicInteger executions = new AtomicInteger();
+
+        @Override
+        public void execute(final Runnable command) {
+            executions.incrementAndGet();
+            command.run();
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Base64;
+
+import static net.sourceforge.svg2ico.Output.spriteOutput;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CachingImageElementBridgeTest {
+
+    @Test
+    void rendersEmbeddedDataUriImagesInRepeatedConversions() throws ImageConversionException, IOException {
+        final BufferedImage red = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = red.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, 8, 8);
+        graphics.dispose();
+        final ByteArrayOutputStream redPng = new ByteArrayOutputStream();
+        ImageIO.write(red, "png", redPng);
+        final String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\"32\" height=\"32\" version=\"1.1\">\n" +
+                "    <image xlink:href=\"data:image/png;base64," + Base64.getEncoder().encodeToString(redPng.toByteArray()) + "\" width=\"32\" height=\"32\"/>\n" +
+                "</svg>\n";
+        for (int i = 0; i < 2; i++) {
+            final ByteArrayOutputStream sprite = new ByteArrayOutputStream();
+            Svg2Outputs.svgToOutputs(new StringReader(svg), spriteOutput(sprite, 16, 32));
+            final BufferedImage spriteImage = ImageIO.read(new ByteArrayInputStream(sprite.toByteArray()));
+            assertEquals(0xffff0000, spriteImage.getRGB(8, 8));
+            assertEquals(0xffff0000, spriteImage.getRGB(32, 16));
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import net.sourceforge.svg2ico.ConversionAbortedException.Reason;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.SvgDocument.svgDocument;
+import static net.sourceforge.svg2ico.TestingUtilities.ICON;
+import static net.sourceforge.svg2ico.TestingUtilities.assertImagesEqual;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConversionBudgetTest {
+
+    private static final String USE_BOMB = "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\"32\" height=\"32\">" +
+            "<defs>" +
+            "<rect id=\"a\" width=\"1\" height=\"1\"/>" +
+            "<g id=\"b\"><use xlink:href=\"#a\"/><use xlink:href=\"#a\"/><use xlink:href=\"#a\"/><use xlink:href=\"#a\"/><use xlink:href=\"#a\"/><use xlink:href=\"#a\"/></g>" +
+            "<g id=\"c\"><use xlink:href=\"#b\"/><use xlink:href=\"#b\"/><use xlink:href=\"#b\"/><use xlink:href=\"#b\"/><use xlink:href=\"#b\"/><use xlink:href=\"#b\"/></g>" +
+            "<g id=\"d\"><use xlink:href=\"#c\"/><use xlink:href=\"#c\"/><use xlink:href=\"#c\"/><use xlink:href=\"#c\"/><use xlink:href=\"#c\"/><use xlink:href=\"#c\"/></g>" +
+            "</defs>" +
+            "<use xlink:href=\"#d\"/>" +
+            "</svg>";
+
+    // Quick to parse and build, but slow to paint at a large size, since each group's blur is computed over the whole image.
+    private static final String SLOW_TO_PAINT = slowToPaint(16);
+
+    @Test
+    void rendersWithinLimitsLikeWithoutThem() throws ImageConversionException {
+        final RenderOptions renderOptions = renderOptions().withTimeLimit(1, MINUTES).withPixelLimit(97 * 211).withElementLimit(100);
+        assertImagesEqual(render(ICON, renderOptions(), 97, 211), render(ICON, renderOptions, 97, 211));
+    }
+
+    @Test
+    void abortsParsingDocumentsWithTooManyElements() {
+        final ConversionAbortedException exception = assertThrows(ConversionAbortedException.class, () -> svgDocument(new StringReader(ICON), renderOptions().withElementLimit(2)));
+        assertEquals(Reason.ELEMENT_LIMIT_EXCEEDED, exception.reason());
+    }
+
+    @Test
+    void abortsRenderingUseElementsThatMakeTooManyCopies() throws ImageConversionException {
+        final RenderOptions renderOptions = renderOptions().withElementLimit(100);
+        final SvgDocument svgDocument = svgDocument(new StringReader(USE_BOMB), renderOptions);
+        final ConversionAbortedException exception = assertThrows(ConversionAbortedException.class, () -> svgDocument.render(32, 32, null, renderOptions));
+        assertEquals(Reason.ELEMENT_LIMIT_EXCEEDED, exception.reason());
+    }
+
+    @Test
+    void abortsRenderingMorePixelsThanTheLimitAcrossRenders() throws ImageConversionException {
+        final RenderOptions renderOptions = renderOptions().withPixelLimit(48 * 48 + 32 * 32);
+        final SvgDocument svgDocument = svgDocument(new StringReader(ICON), renderOptions);
+        svgDocument.render(48, 48, null, renderOptions);
+        svgDocument.render(32, 32, null, renderOptions);
+        final ConversionAbortedException exception = assertThrows(ConversionAbortedException.class, () -> svgDocument.render(16, 16, null, renderOptions));
+        assertEquals(Reason.PIXEL_LIMIT_EXCEEDED, exception.reason());
+    }
+
+    @Test
+    void abortsConversionsThatTakeLongerThanTheTimeLimit() {
+        final ConversionAbortedException exception = assertThrows(ConversionAbortedException.class, () -> render(ICON, renderOptions().withTimeLimit(1, NANOSECONDS), 32, 32));
+        assertEquals(Reason.TIME_LIMIT_EXCEEDED, exception.reason());
+    }
+
+    @Test
+    void abortsConversionsOnInterruptedThreads() throws ImageConversionException {
+        final SvgDocument svgDocument = svgDocument(new StringReader(ICON), renderOptions());
+        Thread.currentThread().interrupt();
+        try {
+            final ConversionAbortedException exception = assertThrows(ConversionAbortedException.class, () -> svgDocument.render(32, 32, null, renderOptions()));
+            assertEquals(Reason.CANCELLED, exception.reason());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void abortsRendersThatExceedTheTimeLimitWhilePainting() throws ImageConversionException {
+        final RenderOptions renderOptions = renderOptions().withTimeLimit(500, MILLISECONDS);
+        final SvgDocument svgDocument = svgDocument(new StringReader(SLOW_TO_PAINT), renderOptions);
+        final ConversionAbortedException exception = assertThrows(ConversionAbortedException.class, () -> svgDocument.render(2000, 2000, null, renderOptions));
+        assertEquals(Reason.TIME_LIMIT_EXCEEDED, exception.reason());
+    }
+
+    @Test
+    void abortsRendersInterruptedWhilePainting() throws ImageConversionException, InterruptedException {
+        final SvgDocument svgDocument = svgDocument(new StringReader(SLOW_TO_PAINT), renderOptions());
+        final AtomicReference<Throwable> thrown = new AtomicReference<>();
+        final Thread thread = new Thread(() -> {
+            try {
+                svgDocument.render(2000, 2000, null, renderOptions());
+            } catch (ImageConversionException e) {
+                thrown.set(e);
+            }
+        });
+        thread.start();
+        MILLISECONDS.sleep(200);
+        thread.interrupt();
+        thread.join();
+        final ConversionAbortedException exception = assertInstanceOf(ConversionAbortedException.class, thrown.get());
+        assertEquals(Reason.CANCELLED, exception.reason());
+    }
+
+    private static String slowToPaint(final int groups) {
+        final StringBuilder svg = new StringBuilder("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\" viewBox=\"0 0 32 32\">")
+                .append("<filter id=\"blur\" filterUnits=\"userSpaceOnUse\" x=\"0\" y=\"0\" width=\"32\" height=\"32\"><feGaussianBlur stdDeviation=\"8\"/></filter>");
+        for (int i = 0; i < groups; i++) {
+            svg.append("<g filter=\"url(#blur)\"><circle cx=\"16\" cy=\"16\" r=\"10\" fill=\"#f80\"/></g>");
+        }
+        return svg.append("</svg>").toString();
+    }
+
+    private static BufferedImage render(final String svg, final RenderOptions renderOptions, final float width, final float height) throws ImageConversionException {
+        return svgDocument(new StringReader(svg), renderOptions).render(width, height, null, renderOptions);
+    }
+
+}
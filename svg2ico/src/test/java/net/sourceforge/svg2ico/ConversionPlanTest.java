@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static net.sourceforge.svg2ico.ConversionPlan.conversionPlan;
+import static net.sourceforge.svg2ico.IcoImage.icoImage;
+import static net.sourceforge.svg2ico.IcoImage.icoImageToCompress;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.SourceImage.sourceImage;
+import static net.sourceforge.svg2ico.SourceImage.sourceImageToCompress;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class ConversionPlanTest {
+
+    private static String icon(final String fill) {
+        return "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\" viewBox=\"0 0 32 32\">" +
+                "<circle cx=\"13\" cy=\"14\" r=\"10\" fill=\"" + fill + "\" stroke=\"#123\" stroke-width=\"1.5\"/>" +
+                "<rect x=\"12\" y=\"12\" width=\"17\" height=\"15\" rx=\"3\" fill=\"#0a0\" fill-opacity=\"0.3\" transform=\"rotate(20 20 20)\"/>" +
+                "</svg>";
+    }
+
+    @Test
+    void writesTheSameIcoAsSvg2Ico() throws Exception {
+        final ConversionPlan conversionPlan = conversionPlan(icoImage(16, 16), icoImage(24, 24), icoImage(32, 32), icoImage(48, 48), icoImage(64, 64), icoImage(256, 256));
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final StringReader reader = new StringReader(icon("#f80"));
+        Svg2Ico.svgToIco(expected, sourceImage(reader, 16, 16), sourceImage(reader, 24, 24), sourceImage(reader, 32, 32), sourceImage(reader, 48, 48), sourceImage(reader, 64, 64), sourceImage(reader, 256, 256));
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        conversionPlan.apply(new StringReader(icon("#f80")), actual);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    void writesTheSameIcoAsSvg2IcoForMixedDepthsAndCompression() throws Exception {
+        final ConversionPlan conversionPlan = conversionPlan(icoImage(16, 16, 8), icoImage(32, 32), icoImageToCompress(48, 48), icoImage(48, 48, 4));
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        final StringReader reader = new StringReader(icon("#f80"));
+        Svg2Ico.svgToIco(expected, sourceImage(reader, 16, 16, 8), sourceImage(reader, 32, 32), sourceImageToCompress(reader, 48, 48), sourceImage(reader, 48, 48, 4));
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        conversionPlan.apply(new ByteArrayInputStream(icon("#f80").getBytes(UTF_8)), actual);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    void appliesRenderOptions() throws Exception {
+        final ConversionPlan conversionPlan = conversionPlan(icoImage(16, 16), icoImage(64, 64)).withRenderOptions(renderOptions().withOffHeapRasters(true));
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        conversionPlan(icoImage(16, 16), icoImage(64, 64)).apply(new StringReader(icon("#f80")), expected);
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        conversionPlan.apply(new StringReader(icon("#f80")), actual);
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    void canBeAppliedFromManyThreadsAtOnce() throws Exception {
+        final ConversionPlan conversionPlan = conversionPlan(icoImage(16, 16), icoImage(32, 32), icoImage(48, 48));
+        final String[] fills = {"#f80", "#08f", "#f0f", "#333", "#fff", "#0f8"};
+        final List<byte[]> expected = new ArrayList<>();
+        for (final String fill : fills) {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            conversionPlan.apply(new StringReader(icon(fill)), outputStream);
+            expected.add(outputStream.toByteArray());
+        }
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<byte[]>> actual = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                for (final String fill : fills) {
+                    actual.add(executorService.submit(() -> {
+                        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                        conversionPlan.apply(new StringReader(icon(fill)), outputStream);
+                        return outputStream.toByteArray();
+                    }));
+                }
+            }
+            for (int i = 0; i < actual.size(); i++) {
+                assertArrayEquals(expected.get(i % fills.length), actual.get(i).get());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static net.sourceforge.svg2ico.ConversionProcessor.conversionProcessor;
+import static net.sourceforge.svg2ico.ConversionRequest.conversionRequest;
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.TestingUtilities.ICON;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversionProcessorTest {
+
+    @Test
+    void convertsEveryRequestAndReportsFailuresPerItem() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<ConversionRequest> conversionRequests = new ArrayList<>();
+            final List<ByteArrayOutputStream> pngs = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                final ByteArrayOutputStream png = new ByteArrayOutputStream();
+                pngs.add(png);
+                conversionRequests.add(conversionRequest(new StringReader(i == 7 ? "<svg" : ICON), pngOutput(png, 16, 16)));
+            }
+            final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            final ConversionProcessor conversionProcessor = conversionProcessor(executor, 3);
+            conversionProcessor.subscribe(subscriber);
+            new ListPublisher(conversionRequests).subscribe(conversionProcessor);
+            assertTrue(subscriber.terminated.await(1, MINUTES));
+            assertNull(subscriber.failure);
+            assertEquals(20, subscriber.conversionResults.size());
+            for (final ConversionResult conversionResult : subscriber.conversionResults) {
+                final int index = conversionRequests.indexOf(conversionResult.conversionRequest());
+                assertEquals(index != 7, conversionResult.succeeded());
+                assertEquals(index != 7, pngs.get(index).size() > 0);
+            }
+            final ConversionResult failedResult = subscriber.conversionResults.stream().filter(conversionResult -> !conversionResult.succeeded()).findFirst().orElseThrow(AssertionError::new);
+            assertThrows(ImageConversionException.class, failedResult::throwFailure);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void neverHoldsMoreThanTheMaximumInFlight() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<ConversionRequest> conversionRequests = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                conversionRequests.add(conversionRequest(new StringReader(ICON), pngOutput(new ByteArrayOutputStream(), 16, 16)));
+            }
+            final ListPublisher publisher = new ListPublisher(conversionRequests);
+            final AtomicInteger maximumHeld = new AtomicInteger();
+            final RecordingSubscriber subscriber = new RecordingSubscriber(1) {
+                @Override
+                public void onNext(final ConversionResult conversionResult) {
+                    super.onNext(conversionResult);
+                    maximumHeld.accumulateAndGet(publisher.delivered.get() - conversionResults.size() + 1, Math::max);
+                    subscription.request(1);
+                }
+            };
+            final ConversionProcessor conversionProcessor = conversionProcessor(executor, 5);
+            conversionProcessor.subscribe(subscriber);
+            publisher.subscribe(conversionProcessor);
+            assertTrue(subscriber.terminated.await(1, MINUTES));
+            assertNull(subscriber.failure);
+            assertEquals(50, subscriber.conversionResults.size());
+            assertTrue(maximumHeld.get() <= 5, "Held " + maximumHeld.get());
+            assertTrue(publisher.maximumOutstanding <= 5, "Requested " + publisher.maximumOutstanding);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void publishesNoMoreResultsThanDownstreamAskedFor() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<ConversionRequest> conversionRequests = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                conversionRequests.add(conversionRequest(new StringReader(ICON), pngOutput(new ByteArrayOutputStream(), 16, 16)));
+            }
+            final ListPublisher publisher = new ListPublisher(conversionRequests);
+            final RecordingSubscriber subscriber = new RecordingSubscriber(2);
+            final ConversionProcessor conversionProcessor = conversionProcessor(executor, 4);
+            conversionProcessor.subscribe(subscriber);
+            publisher.subscribe(conversionProcessor);
+            Thread.sleep(1000);
+            assertEquals(2, subscriber.conversionResults.size());
+            assertEquals(6, publisher.delivered.get());
+            assertFalse(subscriber.terminated.await(0, MINUTES));
+            subscriber.subscription.cancel();
+            assertTrue(publisher.cancelled);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsASecondSubscriber() {
+        final ConversionProcessor conversionProcessor = conversionProcessor(Runnable::run, 1);
+        conversionProcessor.subscribe(new RecordingSubscriber(0));
+        final RecordingSubscriber secondSubscriber = new RecordingSubscriber(0);
+        conversionProcessor.subscribe(secondSubscriber);
+        assertTrue(secondSubscriber.failure instanceof IllegalStateException);
+    }
+
+    private static class RecordingSubscriber implements Subscriber<ConversionResult> {
+        final List<ConversionResult> conversionResults = new ArrayList<>();
+        final CountDownLatch terminated = new CountDownLatch(1);
+        private final long initialRequest;
+        Subscription subscription;
+        Throwable failure;
+
+        RecordingSubscriber(final long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(final ConversionResult conversionResult) {
+            conversionResults.add(conversionResult);
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            failure = throwable;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            terminated.countDown();
+        }
+    }
+
+    private static final class ListPublisher implements Publisher<ConversionRequest> {
+        private final List<ConversionRequest> conversionRequests;
+        final AtomicInteger delivered = new AtomicInteger();
+        long maximumOutstanding = 0;
+        volatile boolean cancelled = false;
+
+        ListPublisher(final List<ConversionRequest> conversionRequests) {
+            this.conversionRequests = conversionRequests;
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super ConversionRequest> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                private long outstanding = 0;
+                private boolean delivering = false;
+
+                @Override
+                public synchronized void request(final long n) {
+                    outstanding += n;
+                    maximumOutstanding = Math.max(maximumOutstanding, outstanding);
+                    if (delivering) {
+                        return;
+                    }
+                    delivering = true;
+                    while (outstanding > 0 && !cancelled && delivered.get() < conversionRequests.size()) {
+                        outstanding--;
+                        subscriber.onNext(conversionRequests.get(delivered.getAndIncrement()));
+                    }
+                    if (delivered.get() == conversionRequests.size() && !cancelled) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                    delivering = false;
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+}
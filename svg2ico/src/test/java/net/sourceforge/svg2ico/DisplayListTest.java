@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.DisplayList.displayList;
+import static net.sourceforge.svg2ico.DisplayList.readDisplayList;
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.Svg2Outputs.svgToOutputs;
+import static net.sourceforge.svg2ico.TestingUtilities.premultiplied;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DisplayListTest {
+
+    private static final String ICON = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"48\" height=\"48\" viewBox=\"0 0 24 24\">" +
+            "<defs>" +
+            "<linearGradient id=\"linear\" x1=\"0\" x2=\"1\"><stop offset=\"0\" stop-color=\"#f00\"/><stop offset=\"1\" stop-color=\"#00f\"/></linearGradient>" +
+            "<radialGradient id=\"radial\"><stop offset=\"0\" stop-color=\"#ff0\"/><stop offset=\"1\" stop-color=\"#0f0\" stop-opacity=\"0.5\"/></radialGradient>" +
+            "</defs>" +
+            "<rect x=\"1\" y=\"1\" width=\"22\" height=\"10\" fill=\"url(#linear)\" fill-opacity=\"0.7\" transform=\"rotate(5 12 12)\"/>" +
+            "<circle cx=\"12\" cy=\"17\" r=\"6\" fill=\"url(#radial)\" stroke=\"#000\" stroke-width=\"0.7\" stroke-dasharray=\"2 1\"/>" +
+            "</svg>";
+
+    @Test
+    void replayingADisplayListStaysWithinAVisualDifferenceBudgetOfBatik() throws IOException, ImageConversionException {
+        final ByteArrayOutputStream serialised = new ByteArrayOutputStream();
+        displayList(new StringReader(ICON)).write(serialised);
+        final DisplayList displayList = readDisplayList(new ByteArrayInputStream(serialised.toByteArray()));
+        assertEquals(48, displayList.width());
+        assertEquals(48, displayList.height());
+        for (final int size : new int[]{16, 32, 64}) {
+            final ByteArrayOutputStream png = new ByteArrayOutputStream();
+            svgToOutputs(new StringReader(ICON), pngOutput(png, size, size));
+            final BufferedImage batikImage = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+            final BufferedImage displayListImage = displayList.toBufferedImage(size, size);
+            long totalDifference = 0;
+            int maximumDifference = 0;
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        final int difference = Math.abs(premultiplied(batikImage.getRGB(x, y), shift) - premultiplied(displayListImage.getRGB(x, y), shift));
+                        totalDifference += difference;
+                        maximumDifference = Math.max(maximumDifference, difference);
+                    }
+                }
+            }
+            assertTrue(totalDifference / (size * size * 4.0) < 1, "Mean difference at " + size + "px was " + totalDifference / (size * size * 4.0));
+            // java.awt's gradients sample their colours slightly differently to Batik's, which shows on the odd pixel at small sizes.
+            assertTrue(maximumDifference <= 40, "Maximum difference at " + size + "px was " + maximumDifference);
+        }
+    }
+
+    @Test
+    void recordsOpacityOfAShapeWithASinglePaint() throws ImageConversionException {
+        final BufferedImage image = displayList(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"4\" height=\"4\">" +
+                "<rect width=\"4\" height=\"4\" fill=\"#000\" opacity=\"0.5\"/>" +
+                "</svg>")).toBufferedImage(4, 4);
+        assertEquals(128, image.getRGB(2, 2) >>> 24);
+    }
+
+    @Test
+    void refusesDocumentsThatNeedAnOffscreenImage() {
+        assertThrows(ImageConversionException.class, () -> displayList(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"4\" height=\"4\">" +
+                "<filter id=\"blur\"><feGaussianBlur stdDeviation=\"1\"/></filter>" +
+                "<rect width=\"4\" height=\"4\" filter=\"url(#blur)\"/>" +
+                "</svg>")));
+    }
+
+    @Test
+    void rejectsCountsLargerThanTheRestOfTheDisplayList() throws IOException {
+        for (final int operationCount : new int[]{Integer.MAX_VALUE, -1}) {
+            final ByteArrayOutputStream serialised = new ByteArrayOutputStream();
+            writeHeader(new DataOutputStream(serialised), operationCount);
+            assertThrows(IOException.class, () -> readDisplayList(new ByteArrayInputStream(serialised.toByteArray())));
+        }
+    }
+
+    @Test
+    void rejectsWindingRulesStrokesAndGradientsThatJava2dWouldRefuse() throws IOException {
+        assertEquals(16, readDisplayList(new ByteArrayInputStream(strokedGradientPath(Path2D.WIND_NON_ZERO, 1, 1))).toBufferedImage(16, 16).getWidth());
+        assertThrows(IOException.class, () -> readDisplayList(new ByteArrayInputStream(strokedGradientPath(2, 1, 1))));
+        assertThrows(IOException.class, () -> readDisplayList(new ByteArrayInputStream(strokedGradientPath(Path2D.WIND_NON_ZERO, -1, 1))));
+        assertThrows(IOException.class, () -> readDisplayList(new ByteArrayInputStream(strokedGradientPath(Path2D.WIND_NON_ZERO, 1, 0))));
+    }
+
+    private static void writeHeader(final DataOutputStream dataOutputStream, final int operationCount) throws IOException {
+        dataOutputStream.writeInt(0x53564744);
+        dataOutputStream.writeByte(1);
+        dataOutputStream.writeFloat(16);
+        dataOutputStream.writeFloat(16);
+        dataOutputStream.writeBoolean(false);
+        dataOutputStream.writeByte(5);
+        dataOutputStream.writeBoolean(false);
+        dataOutputStream.writeInt(operationCount);
+    }
+
+    // A single closed path, stroked with a linear gradient from 0 to the given last fraction.
+    private static byte[] strokedGradientPath(final int windingRule, final float strokeWidth, final float lastFraction) throws IOException {
+        final ByteArrayOutputStream serialised = new ByteArrayOutputStream();
+        final DataOutputStream dataOutputStream = new DataOutputStream(serialised);
+        writeHeader(dataOutputStream, 1);
+        dataOutputStream.writeByte(windingRule);
+        dataOutputStream.writeInt(2);
+        dataOutputStream.writeByte(PathIterator.SEG_MOVETO);
+        dataOutputStream.writeFloat(2);
+        dataOutputStream.writeFloat(2);
+        dataOutputStream.writeByte(PathIterator.SEG_CLOSE);
+        dataOutputStream.writeBoolean(true);
+        dataOutputStream.writeFloat(strokeWidth);
+        dataOutputStream.writeByte(BasicStroke.CAP_BUTT);
+        dataOutputStream.writeByte(BasicStroke.JOIN_MITER);
+        dataOutputStream.writeFloat(10);
+        dataOutputStream.writeInt(0);
+        dataOutputStream.writeFloat(0);
+        dataOutputStream.writeByte(1);
+        dataOutputStream.writeFloat(0);
+        dataOutputStream.writeFloat(0);
+        dataOutputStream.writeFloat(16);
+        dataOutputStream.writeFloat(0);
+        dataOutputStream.writeInt(2);
+        dataOutputStream.writeFloat(0);
+        dataOutputStream.writeFloat(lastFraction);
+        dataOutputStream.writeInt(0xFFFF0000);
+        dataOutputStream.writeInt(0xFF0000FF);
+        dataOutputStream.writeByte(0);
+        dataOutputStream.writeByte(0);
+        writeIdentity(dataOutputStream);
+        dataOutputStream.writeFloat(1);
+        writeIdentity(dataOutputStream);
+        dataOutputStream.writeBoolean(false);
+        return serialised.toByteArray();
+    }
+
+    private static void writeIdentity(final DataOutputStream dataOutputStream) throws IOException {
+        for (final double value : new double[]{1, 0, 0, 1, 0, 0}) {
+            dataOutputStream.writeDouble(value);
+        }
+    }
+
+}
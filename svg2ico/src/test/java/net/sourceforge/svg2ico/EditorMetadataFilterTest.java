@@ -0,0 +1,57 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class EditorMetadataFilterTest {
+
+    @Test
+    void strippingEditorMetadataDoesNotChangeTheRenderedImage() throws ImageConversionException, IOException {
+        final String svg = "<?xml version=\"1.0\"?>\n" +
+                "<!-- Created with Inkscape (http://www.inkscape.org/) -->\n" +
+                "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:inkscape=\"http://www.inkscape.org/namespaces/inkscape\" xmlns:sodipodi=\"http://sodipodi.sourceforge.net/DTD/sodipodi-0.dtd\"\n" +
+                "     xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\" width=\"32\" height=\"32\" version=\"1.1\" inkscape:version=\"1.3\">\n" +
+                "    <sodipodi:namedview id=\"namedview\" inkscape:zoom=\"8\"/>\n" +
+                "    <metadata><rdf:RDF><rdf:Description about=\"\"/></rdf:RDF></metadata>\n" +
+                "    <g inkscape:label=\"Layer 1\" inkscape:groupmode=\"layer\">\n" +
+                "        <circle fill=\"#00ff00\" cx=\"16\" cy=\"16\" r=\"8\" sodipodi:nodetypes=\"cccc\"/>\n" +
+                "        <text x=\"2\" y=\"30\" font-size=\"4\" xml:space=\"preserve\">a  b</text>\n" +
+                "    </g>\n" +
+                "</svg>\n";
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(svg), pngOutput(expected, 32, 32));
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(svg), renderOptions().withStripEditorMetadata(true), pngOutput(actual, 32, 32));
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    void keepsWhitespaceInsideLinksInText() throws ImageConversionException, IOException {
+        final String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"64\" height=\"32\" version=\"1.1\">\n" +
+                "    <text x=\"2\" y=\"20\" font-size=\"12\">Hello<a> </a>world</text>\n" +
+                "</svg>\n";
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(svg), pngOutput(expected, 64, 32));
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(svg), renderOptions().withStripEditorMetadata(true), pngOutput(actual, 64, 32));
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+}
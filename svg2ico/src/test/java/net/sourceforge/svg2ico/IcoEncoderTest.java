@@ -0,0 +1,87 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package net.sourceforge.svg2ico;
+
+import net.sf.image4j.codec.ico.ICODecoder;
+import net.sf.image4j.codec.ico.ICOEncoder;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Arrays.asList;
+import static java.util.Arrays.copyOfRange;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IcoEncoderTest {
+
+    @Test
+    void encodesOpaqueAndTransparentPixelsLikeImage4j() throws IOException {
+        final List<BufferedImage> images = asList(image(16, 16, false), image(13, 7, false), image(256, 256, false));
+        assertArrayEquals(image4jIco(images, new int[]{-1, 32, -1}, new boolean[]{false, false, false}), ico(images, new int[]{-1, 32, -1}, new boolean[]{false, false, false}));
+    }
+
+    @Test
+    void leavesOtherColourDepthsAndCompressionToImage4j() throws IOException {
+        final List<BufferedImage> images = asList(image(16, 16, false), image(32, 32, true), image(48, 48, true));
+        assertArrayEquals(image4jIco(images, new int[]{8, 32, 24}, new boolean[]{false, true, false}), ico(images, new int[]{8, 32, 24}, new boolean[]{false, true, false}));
+    }
+
+    @Test
+    void translucentPixelsSurviveARoundTrip() throws IOException {
+        final BufferedImage image = image(37, 21, true);
+        final BufferedImage decoded = ICODecoder.read(new ByteArrayInputStream(ico(asList(image), new int[]{-1}, new boolean[]{false}))).get(0);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                assertEquals(image.getRGB(x, y), decoded.getRGB(x, y), "Pixel " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    void masksOnlyFullyTransparentPixels() throws IOException {
+        final BufferedImage image = new BufferedImage(9, 1, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 9, 1, new int[]{0, 0x01FFFFFF, 0x80000000, 0xFF000000, 0, 0, 0xFE123456, 0x00FFFFFF, 0}, 0, 9);
+        final byte[] imageData = IcoEncoder.icoEntry(image, -1, false).imageData();
+        assertArrayEquals(new byte[]{(byte) 0x8D, (byte) 0x80, 0, 0}, copyOfRange(imageData, imageData.length - 4, imageData.length));
+    }
+
+    private static BufferedImage image(final int width, final int height, final boolean translucent) {
+        final Random random = new Random(width * 31L + height);
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int alpha = translucent ? 1 + random.nextInt(255) : random.nextBoolean() ? 0xFF : 0;
+                image.setRGB(x, y, alpha == 0 ? 0 : alpha << 24 | random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static byte[] ico(final List<BufferedImage> images, final int[] colourDepth, final boolean[] compress) throws IOException {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        IcoEncoder.write(images, colourDepth, compress, byteArrayOutputStream);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private static byte[] image4jIco(final List<BufferedImage> images, final int[] colourDepth, final boolean[] compress) throws IOException {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        ICOEncoder.write(images, colourDepth, compress, byteArrayOutputStream);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+}
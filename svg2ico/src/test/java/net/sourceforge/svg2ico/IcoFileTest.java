@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static net.sourceforge.svg2ico.IcoFile.mergeIcoFiles;
+import static net.sourceforge.svg2ico.IcoFile.readIcoFile;
+import static net.sourceforge.svg2ico.SourceImage.sourceImage;
+import static net.sourceforge.svg2ico.SourceImage.sourceImageToCompress;
+import static net.sourceforge.svg2ico.TestingUtilities.GREEN_CIRCLE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IcoFileTest {
+
+    @Test
+    void readingAndWritingAnIcoIsLossless() throws ImageConversionException, IOException {
+        final byte[] original = ico(sourceImage(new StringReader(GREEN_CIRCLE), 32, 32), sourceImageToCompress(new StringReader(GREEN_CIRCLE), 16, 16));
+        final IcoFile icoFile = readIcoFile(new ByteArrayInputStream(original));
+        assertEquals(2, icoFile.entries().size());
+        assertEquals(32, icoFile.entries().get(0).width());
+        assertEquals(16, icoFile.entries().get(1).height());
+        assertTrue(icoFile.entries().get(1).compressed());
+        assertArrayEquals(original, bytes(icoFile));
+    }
+
+    @Test
+    void canReplaceAnEntryWithoutTouchingTheOthers() throws ImageConversionException, IOException {
+        final IcoFile icoFile = readIcoFile(new ByteArrayInputStream(ico(sourceImage(new StringReader(GREEN_CIRCLE), 32, 32), sourceImage(new StringReader(GREEN_CIRCLE), 16, 16))));
+        final IcoFile updated = icoFile.withImage(sourceImage(new StringReader(GREEN_CIRCLE.replace("#00ff00", "#ff0000")), 16, 16));
+        assertEquals(2, updated.entries().size());
+        assertSame(icoFile.entries().get(0), updated.entries().get(0));
+        assertEquals(16, updated.entries().get(1).width());
+        assertFalse(Arrays.equals(icoFile.entries().get(1).imageData(), updated.entries().get(1).imageData()));
+    }
+
+    @Test
+    void mergingCombinesEntriesPreferringLaterFiles() throws ImageConversionException, IOException {
+        final IcoFile first = readIcoFile(new ByteArrayInputStream(ico(sourceImage(new StringReader(GREEN_CIRCLE), 32, 32), sourceImage(new StringReader(GREEN_CIRCLE), 16, 16))));
+        final IcoFile second = readIcoFile(new ByteArrayInputStream(ico(sourceImage(new StringReader(GREEN_CIRCLE), 16, 16), sourceImage(new StringReader(GREEN_CIRCLE), 24, 24))));
+        final IcoFile merged = mergeIcoFiles(first, second);
+        assertEquals(3, merged.entries().size());
+        assertSame(second.entries().get(0), merged.entries().get(1));
+        assertEquals(3, readIcoFile(new ByteArrayInputStream(bytes(merged))).entries().size());
+    }
+
+    @Test
+    void rejectsFilesThatAreNotIcos() {
+        assertThrows(IOException.class, () -> readIcoFile(new ByteArrayInputStream(GREEN_CIRCLE.getBytes("UTF-8"))));
+    }
+
+    private static byte[] ico(final SourceImage... sourceImages) throws ImageConversionException, IOException {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        Svg2Ico.svgToIco(byteArrayOutputStream, sourceImages);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private static byte[] bytes(final IcoFile icoFile) throws IOException {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        icoFile.write(byteArrayOutputStream);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+}
\ No newline at end of file
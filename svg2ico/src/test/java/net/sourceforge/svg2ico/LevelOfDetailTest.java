@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.TestingUtilities.premultiplied;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LevelOfDetailTest {
+
+    @Test
+    void levelOfDetailCullingStaysWithinAVisualDifferenceBudget() throws ImageConversionException, IOException {
+        final StringBuilder svg = new StringBuilder("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"256\" height=\"256\" version=\"1.1\">\n")
+                .append("    <circle fill=\"#00ff00\" cx=\"128\" cy=\"128\" r=\"96\"/>\n");
+        for (int i = 0; i < 400; i++) {
+            svg.append("    <circle fill=\"#0000ff\" cx=\"").append(8 + (i * 37) % 240).append("\" cy=\"").append(8 + (i * 53) % 240).append("\" r=\"1\"/>\n");
+        }
+        svg.append("    <rect fill=\"#ff0000\" x=\"300\" y=\"300\" width=\"64\" height=\"64\"/>\n</svg>\n");
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(svg.toString()), pngOutput(expected, 16, 16));
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(svg.toString()), renderOptions().withLevelOfDetailThreshold(0.25f), pngOutput(actual, 16, 16));
+        final BufferedImage expectedImage = ImageIO.read(new ByteArrayInputStream(expected.toByteArray()));
+        final BufferedImage actualImage = ImageIO.read(new ByteArrayInputStream(actual.toByteArray()));
+        long totalDifference = 0;
+        int maximumDifference = 0;
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                for (int shift = 0; shift < 32; shift += 8) {
+                    final int difference = Math.abs(premultiplied(expectedImage.getRGB(x, y), shift) - premultiplied(actualImage.getRGB(x, y), shift));
+                    totalDifference += difference;
+                    maximumDifference = Math.max(maximumDifference, difference);
+                }
+            }
+        }
+        assertTrue(totalDifference / (16 * 16 * 4.0) < 2, "Mean channel difference was " + totalDifference / (16 * 16 * 4.0));
+        assertTrue(maximumDifference <= 16, "Maximum channel difference was " + maximumDifference);
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import net.sourceforge.svg2ico.ConversionAbortedException.Reason;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static net.sourceforge.svg2ico.IcoImage.icoImage;
+import static net.sourceforge.svg2ico.MemoryBudget.memoryBudget;
+import static net.sourceforge.svg2ico.Output.icoOutput;
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.SvgDocument.svgDocument;
+import static net.sourceforge.svg2ico.SvgScan.svgScan;
+import static net.sourceforge.svg2ico.TestingUtilities.ICON;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryBudgetTest {
+
+    @Test
+    void givesBackWhatARenderTookOnceItFinishes() throws ImageConversionException {
+        final MemoryBudget memoryBudget = memoryBudget(1 << 20);
+        final BufferedImage image = render(renderOptions().withMemoryBudget(memoryBudget), 64, 64);
+        assertEquals(64, image.getWidth());
+        assertEquals(memoryBudget.bytes(), memoryBudget.availableBytes());
+    }
+
+    @Test
+    void rejectsRendersThatNeedMoreThanTheWholeBudget() {
+        final ConversionAbortedException exception = assertThrows(ConversionAbortedException.class, () -> render(renderOptions().withMemoryBudget(memoryBudget(64 * 64 * 4)), 64, 64));
+        assertEquals(Reason.MEMORY_BUDGET_EXCEEDED, exception.reason());
+    }
+
+    @Test
+    void rejectsRendersThatCantStartWithinTheMaximumWait() throws ImageConversionException {
+        final MemoryBudget memoryBudget = memoryBudget(1 << 20, 0, MILLISECONDS);
+        memoryBudget.acquire(1 << 19);
+        final ConversionAbortedException exception = assertThrows(ConversionAbortedException.class, () -> render(renderOptions().withMemoryBudget(memoryBudget), 256, 256));
+        assertEquals(Reason.MEMORY_BUDGET_EXCEEDED, exception.reason());
+        assertEquals(1 << 19, memoryBudget.availableBytes());
+    }
+
+    @Test
+    void rendersOnceEnoughOfTheBudgetIsFree() throws Exception {
+        final MemoryBudget memoryBudget = memoryBudget(1 << 20, 1, MINUTES);
+        memoryBudget.acquire(1 << 19);
+        final Thread releasingThread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                memoryBudget.release(1 << 19);
+            }
+        };
+        releasingThread.start();
+        assertEquals(256, render(renderOptions().withMemoryBudget(memoryBudget), 256, 256).getWidth());
+        releasingThread.join();
+        assertEquals(memoryBudget.bytes(), memoryBudget.availableBytes());
+    }
+
+    @Test
+    void cancelsRendersInterruptedWhileWaiting() throws ImageConversionException {
+        final MemoryBudget memoryBudget = memoryBudget(1 << 20);
+        memoryBudget.acquire(1 << 20);
+        final SvgDocument svgDocument = svgDocument(new StringReader(ICON), renderOptions().withMemoryBudget(memoryBudget));
+        Thread.currentThread().interrupt();
+        try {
+            final ConversionAbortedException exception = assertThrows(ConversionAbortedException.class, () -> svgDocument.render(32, 32, null, renderOptions().withMemoryBudget(memoryBudget)));
+            assertEquals(Reason.CANCELLED, exception.reason());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void holdsEachSizeOfAConversionUntilItsOutputsAreWritten() throws ImageConversionException, IOException {
+        final long budget = MemoryBudget.estimatedBytes(svgScan(new StringReader(ICON)), 256, 256, renderOptions(), false) + 128 * 256 * 4;
+        final MemoryBudget memoryBudget = memoryBudget(budget, 0, MILLISECONDS);
+        final RenderOptions renderOptions = renderOptions().withMemoryBudget(memoryBudget);
+        Svg2Outputs.svgToOutputs(new StringReader(ICON), renderOptions, icoOutput(new ByteArrayOutputStream(), icoImage(256, 256)));
+        final ConversionAbortedException exception = assertThrows(ConversionAbortedException.class, () -> Svg2Outputs.svgToOutputs(new StringReader(ICON), renderOptions, icoOutput(new ByteArrayOutputStream(), icoImage(256, 256), icoImage(255, 255))));
+        assertEquals(Reason.MEMORY_BUDGET_EXCEEDED, exception.reason());
+        assertEquals(budget, memoryBudget.availableBytes());
+    }
+
+    @Test
+    void concurrentConversionsDontEachHoldPartOfTheBudgetWhileWaitingForTheRest() throws ImageConversionException, InterruptedException {
+        final MemoryBudget memoryBudget = memoryBudget(MemoryBudget.estimatedBytes(svgScan(new StringReader(ICON)), 256, 256, renderOptions(), false) + 256 * 256 * 4);
+        final RenderOptions renderOptions = renderOptions().withMemoryBudget(memoryBudget);
+        final CyclicBarrier firstSizesWritten = new CyclicBarrier(2);
+        final Queue<Exception> failures = new ConcurrentLinkedQueue<>();
+        final List<Thread> conversions = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            final Thread conversion = new Thread(() -> {
+                try {
+                    Svg2Outputs.svgToOutputs(new StringReader(ICON), renderOptions, pngOutput(awaitingOnFirstWrite(firstSizesWritten), 256, 256), pngOutput(new ByteArrayOutputStream(), 255, 255));
+                } catch (IOException | ImageConversionException e) {
+                    failures.add(e);
+                }
+            });
+            conversion.setDaemon(true);
+            conversion.start();
+            conversions.add(conversion);
+        }
+        for (final Thread conversion : conversions) {
+            conversion.join(SECONDS.toMillis(30));
+            assertFalse(conversion.isAlive(), "Conversion is still waiting for the memory budget");
+        }
+        assertEquals(emptyList(), new ArrayList<>(failures));
+        assertEquals(memoryBudget.bytes(), memoryBudget.availableBytes());
+    }
+
+    @Test
+    void givesBackEverySizeOnceTheOutputsAreWritten() throws ImageConversionException, IOException {
+        final MemoryBudget memoryBudget = memoryBudget(1 << 22, 0, MILLISECONDS);
+        final ByteArrayOutputStream ico = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(ICON), renderOptions().withMemoryBudget(memoryBudget), icoOutput(ico, icoImage(256, 256), icoImage(128, 128), icoImage(64, 64)));
+        assertEquals(3, IcoFile.readIcoFile(new ByteArrayInputStream(ico.toByteArray())).entries().size());
+        assertEquals(memoryBudget.bytes(), memoryBudget.availableBytes());
+    }
+
+    @Test
+    void estimatesMoreForDocumentsWithFilters() throws ImageConversionException {
+        final long withoutScan = MemoryBudget.estimatedBytes(null, 100, 100, renderOptions(), false);
+        final long withScan = MemoryBudget.estimatedBytes(svgScan(new StringReader(ICON)), 100, 100, renderOptions(), false);
+        assertEquals(2 * 100 * 100 * 4, withoutScan);
+        assertTrue(withScan >= withoutScan + 100 * 100 * 4, "Estimated " + withScan);
+    }
+
+    // Gives the other conversion a chance to render its first size too, if it can, before this one renders its second.
+    private static OutputStream awaitingOnFirstWrite(final CyclicBarrier barrier) {
+        return new ByteArrayOutputStream() {
+            private boolean awaited;
+
+            @Override
+            public synchronized void write(final int b) {
+                await();
+                super.write(b);
+            }
+
+            @Override
+            public synchronized void write(final byte[] b, final int off, final int len) {
+                await();
+                super.write(b, off, len);
+            }
+
+            private void await() {
+                if (!awaited) {
+                    awaited = true;
+                    try {
+                        barrier.await(2, SECONDS);
+                    } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                        // The other conversion is waiting for the budget, so this one carries on alone.
+                    }
+                }
+            }
+        };
+    }
+
+    private static BufferedImage render(final RenderOptions renderOptions, final float width, final float height) throws ImageConversionException {
+        return svgDocument(new StringReader(ICON), renderOptions).render(width, height, null, renderOptions);
+    }
+
+}
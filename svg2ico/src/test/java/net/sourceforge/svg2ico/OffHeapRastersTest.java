@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.SvgDocument.svgDocument;
+import static net.sourceforge.svg2ico.Svg2Outputs.svgToOutputs;
+import static net.sourceforge.svg2ico.TestingUtilities.ICON;
+import static net.sourceforge.svg2ico.TestingUtilities.assertImagesEqual;
+import static net.sourceforge.svg2ico.TestingUtilities.premultiplied;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OffHeapRastersTest {
+
+    @Test
+    void rendersSmallImagesOffHeapExactlyLikeOnHeap() throws ImageConversionException {
+        final BufferedImage offHeap = render(renderOptions().withOffHeapRasters(true), 97, 211);
+        assertTrue(OffHeapRasters.isOffHeap(offHeap));
+        assertImagesEqual(render(renderOptions(), 97, 211), offHeap);
+    }
+
+    // Java 2D clips curves to each strip before flattening them, so antialiased curved edges come out slightly differently from a render in one piece.
+    @Test
+    void rendersLargeImagesOffHeapLikeOnHeap() throws ImageConversionException {
+        assertImagesSimilar(render(renderOptions(), 640, 480), render(renderOptions().withOffHeapRasters(true), 640, 480));
+    }
+
+    @Test
+    void rendersPremultipliedOffHeapLikeOnHeap() throws ImageConversionException {
+        final RenderOptions renderOptions = renderOptions().withPremultipliedAlpha(true);
+        assertImagesSimilar(render(renderOptions, 333, 777), render(renderOptions.withOffHeapRasters(true), 333, 777));
+    }
+
+    @Test
+    void encodesOffHeapPngsLikeOnHeapOnes() throws IOException, ImageConversionException {
+        final RenderOptions renderOptions = renderOptions().withOffHeapRasters(true);
+        assertImagesEqual(render(renderOptions, 640, 480), png(renderOptions, 640, 480));
+    }
+
+    private static void assertImagesSimilar(final BufferedImage expected, final BufferedImage actual) {
+        long totalDifference = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                for (int shift = 0; shift < 32; shift += 8) {
+                    final int difference = Math.abs(premultiplied(expected.getRGB(x, y), shift) - premultiplied(actual.getRGB(x, y), shift));
+                    assertTrue(difference <= 32, "Pixel " + x + ", " + y + " differed by " + difference);
+                    totalDifference += difference;
+                }
+            }
+        }
+        assertTrue(totalDifference < expected.getWidth() * expected.getHeight() * 4 / 20, "Mean difference was " + (double) totalDifference / (expected.getWidth() * expected.getHeight() * 4));
+    }
+
+    private static BufferedImage render(final RenderOptions renderOptions, final float width, final float height) throws ImageConversionException {
+        return svgDocument(new StringReader(ICON), renderOptions).render(width, height, null, renderOptions);
+    }
+
+    private static BufferedImage png(final RenderOptions renderOptions, final float width, final float height) throws IOException, ImageConversionException {
+        final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        svgToOutputs(new StringReader(ICON), renderOptions, pngOutput(png, width, height));
+        return ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.SvgDocument.svgDocument;
+import static net.sourceforge.svg2ico.TestingUtilities.premultiplied;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PremultipliedAlphaTest {
+
+    private static final String TRANSLUCENT_ICON = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\">" +
+            "<linearGradient id=\"g\"><stop offset=\"0\" stop-color=\"#f80\"/><stop offset=\"1\" stop-color=\"#08f\"/></linearGradient>" +
+            "<circle cx=\"13\" cy=\"14\" r=\"10\" fill=\"url(#g)\" fill-opacity=\"0.6\" stroke=\"#123\" stroke-opacity=\"0.5\" stroke-width=\"1.5\"/>" +
+            "<rect x=\"12\" y=\"12\" width=\"17\" height=\"15\" rx=\"3\" fill=\"#0a0\" fill-opacity=\"0.3\" transform=\"rotate(20 20 20)\"/>" +
+            "</svg>";
+
+    @Test
+    void rendersStraightAlphaImages() throws ImageConversionException {
+        assertEquals(BufferedImage.TYPE_INT_ARGB, render(renderOptions().withPremultipliedAlpha(true)).getType());
+    }
+
+    @Test
+    void rendersLikeStraightAlphaWithinRounding() throws ImageConversionException {
+        final BufferedImage expected = render(renderOptions());
+        final BufferedImage actual = render(renderOptions().withPremultipliedAlpha(true));
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                for (int shift = 0; shift < 32; shift += 8) {
+                    final int difference = Math.abs(premultiplied(expected.getRGB(x, y), shift) - premultiplied(actual.getRGB(x, y), shift));
+                    assertTrue(difference <= 5, "Pixel " + x + ", " + y + " differed by " + difference);
+                }
+            }
+        }
+    }
+
+    private static BufferedImage render(final RenderOptions renderOptions) throws ImageConversionException {
+        return svgDocument(new StringReader(TRANSLUCENT_ICON), renderOptions).render(32, 32, null, renderOptions);
+    }
+
+}
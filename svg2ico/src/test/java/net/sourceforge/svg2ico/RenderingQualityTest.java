@@ -0,0 +1,67 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.Svg2Outputs.svgToOutputs;
+import static net.sourceforge.svg2ico.TestingUtilities.assertImagesEqual;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderingQualityTest {
+
+    private static final String ICON = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\">" +
+            "<circle cx=\"16\" cy=\"16\" r=\"11\" fill=\"#08f\" stroke=\"#123\" stroke-width=\"1.5\" stroke-dasharray=\"3 1\"/>" +
+            "</svg>";
+
+    @Test
+    void qualityIsTheDefault() throws IOException, ImageConversionException {
+        assertImagesEqual(png(renderOptions()), png(renderOptions().withRenderingQuality(RenderingQuality.QUALITY)));
+    }
+
+    @Test
+    void balancedRendersVectorContentLikeQuality() throws IOException, ImageConversionException {
+        assertImagesEqual(png(renderOptions().withRenderingQuality(RenderingQuality.QUALITY)), png(renderOptions().withRenderingQuality(RenderingQuality.BALANCED)));
+    }
+
+    @Test
+    void draftRendersWithoutAntialiasing() throws IOException, ImageConversionException {
+        final BufferedImage image = png(renderOptions().withRenderingQuality(RenderingQuality.DRAFT));
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                final int alpha = image.getRGB(x, y) >>> 24;
+                assertTrue(alpha == 0 || alpha == 255, "Pixel " + x + ", " + y + " had alpha " + alpha);
+            }
+        }
+    }
+
+    @Test
+    void rejectsMissingRenderingQuality() {
+        assertThrows(IllegalArgumentException.class, () -> renderOptions().withRenderingQuality(null));
+    }
+
+    private static BufferedImage png(final RenderOptions renderOptions) throws IOException, ImageConversionException {
+        final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        svgToOutputs(new StringReader(ICON), renderOptions, pngOutput(png, 32, 32));
+        return ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+    }
+
+}
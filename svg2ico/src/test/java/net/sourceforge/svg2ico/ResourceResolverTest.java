@@ -0,0 +1,98 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.ResourceResolver.directoryResourceResolver;
+import static net.sourceforge.svg2ico.ResourceResolver.inMemoryResourceResolver;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResourceResolverTest {
+
+    @Test
+    void resolvesImagesFromAnInMemoryBundle() throws ImageConversionException, IOException {
+        final BufferedImage red = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = red.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, 8, 8);
+        graphics.dispose();
+        final ByteArrayOutputStream redPng = new ByteArrayOutputStream();
+        ImageIO.write(red, "png", redPng);
+        final ResourceResolver resourceResolver = inMemoryResourceResolver(singletonMap(URI.create("https://example.invalid/red.png"), redPng.toByteArray()));
+        final String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\"32\" height=\"32\" version=\"1.1\">\n" +
+                "    <image xlink:href=\"https://example.invalid/red.png\" width=\"32\" height=\"32\"/>\n" +
+                "</svg>\n";
+        for (int i = 0; i < 2; i++) {
+            final ByteArrayOutputStream png = new ByteArrayOutputStream();
+            Svg2Outputs.svgToOutputs(new StringReader(svg), renderOptions().withResourceResolver(resourceResolver), pngOutput(png, 32, 32));
+            assertEquals(0xffff0000, ImageIO.read(new ByteArrayInputStream(png.toByteArray())).getRGB(16, 16));
+        }
+    }
+
+    @Test
+    void resolvesReferencedDocumentsFromALocalDirectory(@TempDir final Path tempDir) throws ImageConversionException, IOException {
+        Files.write(tempDir.resolve("shapes.svg"), ("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\">\n" +
+                "    <circle id=\"dot\" fill=\"#0000ff\" cx=\"16\" cy=\"16\" r=\"8\"/>\n" +
+                "</svg>\n").getBytes(StandardCharsets.UTF_8));
+        final String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\"32\" height=\"32\" version=\"1.1\">\n" +
+                "    <use xlink:href=\"https://example.invalid/icons/shapes.svg#dot\"/>\n" +
+                "</svg>\n";
+        final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(
+                new StringReader(svg),
+                renderOptions().withResourceResolver(directoryResourceResolver(URI.create("https://example.invalid/icons/"), tempDir.toFile())),
+                pngOutput(png, 32, 32)
+        );
+        assertEquals(0xff0000ff, ImageIO.read(new ByteArrayInputStream(png.toByteArray())).getRGB(16, 16));
+    }
+
+    @Test
+    void resolvesAReferencedDocumentOnceForBothTheSecurityCheckAndTheLoad() throws ImageConversionException, IOException {
+        final List<URI> resolved = new ArrayList<>();
+        final ResourceResolver resourceResolver = new ResourceResolver() {
+            @Override
+            protected byte[] resolve(final URI uri) {
+                resolved.add(uri);
+                return ("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\">\n" +
+                        "    <circle id=\"dot\" fill=\"#0000ff\" cx=\"16\" cy=\"16\" r=\"8\"/>\n" +
+                        "</svg>\n").getBytes(StandardCharsets.UTF_8);
+            }
+        };
+        final String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" width=\"32\" height=\"32\" version=\"1.1\">\n" +
+                "    <use xlink:href=\"https://example.invalid/icons/shapes.svg#dot\"/>\n" +
+                "</svg>\n";
+        final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(svg), renderOptions().withResourceResolver(resourceResolver), pngOutput(png, 32, 32));
+        assertEquals(0xff0000ff, ImageIO.read(new ByteArrayInputStream(png.toByteArray())).getRGB(16, 16));
+        assertEquals(singletonList(URI.create("https://example.invalid/icons/shapes.svg")), resolved);
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.apache.batik.util.XMLResourceDescriptor;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.RenderBudget.renderBudget;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.TestingUtilities.GREEN_CIRCLE;
+import static org.apache.batik.util.SVGConstants.SVG_NAMESPACE_URI;
+import static org.apache.batik.util.SVGConstants.SVG_SVG_TAG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReusableSvgDocumentFactoryTest {
+
+    @Test
+    void keepsEachDocumentsXmlDeclaration() throws IOException {
+        final ReusableSvgDocumentFactory documentFactory = new ReusableSvgDocumentFactory(XMLResourceDescriptor.getXMLParserClassName());
+        documentFactory.setRenderBudget(renderBudget(renderOptions(), System.nanoTime()));
+        final Document standalone = documentFactory.createDocument(SVG_NAMESPACE_URI, SVG_SVG_TAG, null, new StringReader(
+                "<?xml version=\"1.1\" standalone=\"yes\"?><svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\"/>"
+        ));
+        assertEquals("1.1", standalone.getXmlVersion());
+        assertTrue(standalone.getXmlStandalone());
+        final Document notStandalone = documentFactory.createDocument(SVG_NAMESPACE_URI, SVG_SVG_TAG, null, new StringReader(
+                "<?xml version=\"1.0\"?><svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\"/>"
+        ));
+        assertEquals("1.0", notStandalone.getXmlVersion());
+        assertFalse(notStandalone.getXmlStandalone());
+    }
+
+    @Test
+    void convertsAValidDocumentAfterAMalformedOne() throws ImageConversionException, IOException {
+        assertThrows(ImageConversionException.class, () -> Svg2Outputs.svgToOutputs(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\"><circle></svg>"), pngOutput(new ByteArrayOutputStream(), 32, 32)));
+        final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(GREEN_CIRCLE), pngOutput(png, 32, 32));
+        assertEquals(0xff00ff00, ImageIO.read(new ByteArrayInputStream(png.toByteArray())).getRGB(16, 16));
+    }
+
+}
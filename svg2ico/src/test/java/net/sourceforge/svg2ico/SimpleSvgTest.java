@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static net.sourceforge.svg2ico.SimpleSvg.simpleSvg;
+import static net.sourceforge.svg2ico.Svg2Outputs.svgToOutputs;
+import static net.sourceforge.svg2ico.TestingUtilities.assertImagesEqual;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SimpleSvgTest {
+
+    private static final String SIMPLE_ICON = "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:inkscape=\"http://www.inkscape.org/namespaces/inkscape\" width=\"48\" height=\"48\" viewBox=\"0 0 24 24\">" +
+            "<title>Simple icon</title>" +
+            "<defs>" +
+            "<linearGradient id=\"boundingBox\" x1=\"0\" x2=\"1\" gradientTransform=\"rotate(30)\">" +
+            "<stop offset=\"0\" stop-color=\"#f00\"/><stop offset=\"60%\" stop-color=\"rgb(0,128,255)\" stop-opacity=\".5\"/><stop offset=\"1\" style=\"stop-color:navy\"/>" +
+            "</linearGradient>" +
+            "</defs>" +
+            "<g transform=\"translate(1 1) scale(0.9)\" fill=\"url(#boundingBox)\" inkscape:label=\"Layer 1\">" +
+            "<rect x=\"1\" y=\"1\" width=\"22\" height=\"10\" rx=\"3\" transform=\"rotate(5 12 12)\"/>" +
+            "<circle cx=\"12\" cy=\"17\" r=\"6\" fill=\"#0a0\" fill-opacity=\"0.6\"/>" +
+            "</g>" +
+            "<path d=\"M2 2 a 5 3 30 1 1 8 4 l3-2 Q 15 0 18 3 T 22 4 C20 8, 22 10 20 12 S 16 14 14 12 z M4 20 h5 v3 h-5 Z\" fill-rule=\"evenodd\" style=\"fill:#123456;stroke:none\"/>" +
+            "<ellipse cx=\"18\" cy=\"19\" rx=\"4\" ry=\"2\" fill=\"url(#userSpace)\" transform=\"skewX(10)\"/>" +
+            "<linearGradient id=\"userSpace\" gradientUnits=\"userSpaceOnUse\" x1=\"14\" y1=\"0\" x2=\"22\" y2=\"0\" spreadMethod=\"reflect\">" +
+            "<stop offset=\"0\" stop-color=\"yellow\"/><stop offset=\"0.5\" stop-color=\"purple\"/>" +
+            "</linearGradient>" +
+            "</svg>";
+
+    @Test
+    void rendersTheSimpleSubsetTheSameAsBatik() throws IOException, ImageConversionException {
+        assertNotNull(simpleSvg(new StringReader(SIMPLE_ICON)));
+        for (final int size : new int[]{16, 32, 64}) {
+            assertImagesEqual(png(SIMPLE_ICON, renderOptions(), size), png(SIMPLE_ICON, renderOptions().withSimpleSvgRenderer(true), size));
+        }
+    }
+
+    @Test
+    void fallsBackToBatikForDocumentsOutsideTheSubset() throws IOException, ImageConversionException {
+        final String strokedIcon = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"16\" height=\"16\">" +
+                "<rect x=\"2\" y=\"2\" width=\"12\" height=\"12\" fill=\"red\" stroke=\"blue\" stroke-width=\"2\"/>" +
+                "</svg>";
+        assertNull(simpleSvg(new StringReader(strokedIcon)));
+        final BufferedImage batikImage = png(strokedIcon, renderOptions(), 16);
+        final BufferedImage fallbackImage = png(strokedIcon, renderOptions().withSimpleSvgRenderer(true), 16);
+        for (int y = 0; y < 16; y++) {
+            for (int x = 0; x < 16; x++) {
+                assertEquals(batikImage.getRGB(x, y), fallbackImage.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    void rejectsGroupOpacityAndInvalidPathData() {
+        assertNull(simpleSvg(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"16\" height=\"16\"><g opacity=\"0.5\"><rect width=\"4\" height=\"4\"/></g></svg>")));
+        assertNull(simpleSvg(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"16\" height=\"16\"><path d=\"L4 4\"/></svg>")));
+    }
+
+    private static BufferedImage png(final String svg, final RenderOptions renderOptions, final int size) throws IOException, ImageConversionException {
+        final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        svgToOutputs(new StringReader(svg), renderOptions, pngOutput(png, size, size));
+        return ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.RenderOptions.renderOptions;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StaticOnlyRenderingTest {
+
+    @Test
+    void staticOnlyRenderingIgnoresScriptsAndAnimations() throws ImageConversionException, IOException {
+        final String svg = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\" version=\"1.1\" onload=\"document.getElementById('dot').setAttribute('fill', '#0000ff')\">\n" +
+                "    <circle id=\"dot\" fill=\"#00ff00\" cx=\"16\" cy=\"16\" r=\"8\">\n" +
+                "        <set attributeName=\"fill\" to=\"#ff0000\" begin=\"0s\"/>\n" +
+                "    </circle>\n" +
+                "</svg>\n";
+        final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(svg), renderOptions().withStaticOnly(true), pngOutput(png, 32, 32));
+        assertEquals(0xff00ff00, ImageIO.read(new ByteArrayInputStream(png.toByteArray())).getRGB(16, 16));
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.TestingUtilities.GREEN_CIRCLE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StylesheetCacheTest {
+
+    @Test
+    void picksUpChangesToACachedStylesheet(@TempDir final Path tempDir) throws ImageConversionException, IOException {
+        final Path stylesheet = Files.write(tempDir.resolve("theme.css"), ".dot { fill: red }".getBytes(StandardCharsets.UTF_8));
+        final ByteArrayOutputStream before = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(GREEN_CIRCLE.replace("fill=\"#00ff00\"", "class=\"dot\"")), stylesheet.toUri(), pngOutput(before, 32, 32));
+        Files.write(stylesheet, ".dot { fill: #0000ff }".getBytes(StandardCharsets.UTF_8));
+        final ByteArrayOutputStream after = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(GREEN_CIRCLE.replace("fill=\"#00ff00\"", "class=\"dot\"")), stylesheet.toUri(), pngOutput(after, 32, 32));
+        assertEquals(0xffff0000, ImageIO.read(new ByteArrayInputStream(before.toByteArray())).getRGB(16, 16));
+        assertEquals(0xff0000ff, ImageIO.read(new ByteArrayInputStream(after.toByteArray())).getRGB(16, 16));
+    }
+
+}
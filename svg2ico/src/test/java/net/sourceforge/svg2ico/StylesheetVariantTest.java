@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.StylesheetVariant.stylesheetVariant;
+import static net.sourceforge.svg2ico.TestingUtilities.GREEN_CIRCLE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StylesheetVariantTest {
+
+    @Test
+    void rendersEachStylesheetVariantFromOneParse(@TempDir final Path tempDir) throws ImageConversionException, IOException {
+        final Path light = Files.write(tempDir.resolve("light.css"), ".dot { fill: #ff0000 }".getBytes(StandardCharsets.UTF_8));
+        final Path dark = Files.write(tempDir.resolve("dark.css"), ".dot { fill: #0000ff }".getBytes(StandardCharsets.UTF_8));
+        final ByteArrayOutputStream lightPng = new ByteArrayOutputStream();
+        final ByteArrayOutputStream darkPng = new ByteArrayOutputStream();
+        Svg2Outputs.svgToStylesheetVariants(
+                new StringReader(GREEN_CIRCLE.replace("fill=\"#00ff00\"", "class=\"dot\"")),
+                stylesheetVariant(light.toUri(), pngOutput(lightPng, 32, 32)),
+                stylesheetVariant(dark.toUri(), pngOutput(darkPng, 32, 32))
+        );
+        assertEquals(0xffff0000, ImageIO.read(new ByteArrayInputStream(lightPng.toByteArray())).getRGB(16, 16));
+        assertEquals(0xff0000ff, ImageIO.read(new ByteArrayInputStream(darkPng.toByteArray())).getRGB(16, 16));
+    }
+
+}
@@ -12,10 +12,16 @@ package net.sourceforge.svg2ico;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.List;
 
+import static net.sourceforge.svg2ico.SourceImage.sourceImage;
+import static net.sourceforge.svg2ico.SourceImage.sourceImageToCompress;
 import static org.apache.commons.io.output.NullOutputStream.INSTANCE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class Svg2IcoTest {
 
@@ -26,4 +32,17 @@ class Svg2IcoTest {
                 "</svg>\n"), INSTANCE, 32.0f, 32.0f);
     }
 
+    @Test
+    void sourceImagesSharingAReaderAreRenderedFromOneParse() throws ImageConversionException, IOException {
+        final StringReader reader = new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\" version=\"1.1\">\n" +
+                "    <circle fill=\"#00ff00\" cx=\"16\" cy=\"16\" r=\"8\"/>\n" +
+                "</svg>\n");
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Svg2Ico.svgToIco(outputStream, sourceImage(reader, 32, 32, 32), sourceImage(reader, 32, 32, 8), sourceImageToCompress(reader, 16, 16, 4));
+        final List<IcoEntry> entries = IcoFile.readIcoFile(new ByteArrayInputStream(outputStream.toByteArray())).entries();
+        assertEquals(3, entries.size());
+        assertEquals(8, entries.get(1).colourDepth());
+        assertEquals(4, entries.get(2).colourDepth());
+    }
+
 }
\ No newline at end of file
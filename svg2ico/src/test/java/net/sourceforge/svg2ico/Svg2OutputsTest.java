@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.IcoImage.icoImage;
+import static net.sourceforge.svg2ico.IcoImage.icoImageToCompress;
+import static net.sourceforge.svg2ico.Output.icoOutput;
+import static net.sourceforge.svg2ico.Output.pngOutput;
+import static net.sourceforge.svg2ico.Output.spriteOutput;
+import static net.sourceforge.svg2ico.TestingUtilities.GREEN_CIRCLE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Svg2OutputsTest {
+
+    @Test
+    void canConvertASampleSvgToSeveralOutputs() throws ImageConversionException, IOException {
+        final ByteArrayOutputStream ico = new ByteArrayOutputStream();
+        final ByteArrayOutputStream png = new ByteArrayOutputStream();
+        final ByteArrayOutputStream sprite = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(
+                new StringReader(GREEN_CIRCLE),
+                icoOutput(ico, icoImage(32, 32), icoImageToCompress(16, 16), icoImage(16, 16, 8)),
+                pngOutput(png, 32, 32),
+                spriteOutput(sprite, 16, 32)
+        );
+        assertEquals(3, IcoFile.readIcoFile(new ByteArrayInputStream(ico.toByteArray())).entries().size());
+        final BufferedImage pngImage = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+        assertEquals(32, pngImage.getWidth());
+        final BufferedImage spriteImage = ImageIO.read(new ByteArrayInputStream(sprite.toByteArray()));
+        assertEquals(48, spriteImage.getWidth());
+        assertEquals(32, spriteImage.getHeight());
+    }
+
+    @Test
+    void producesTheSameIcoAsConvertingEachSizeSeparately() throws ImageConversionException, IOException {
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Svg2Ico.svgToIco(expected, SourceImage.sourceImage(new StringReader(GREEN_CIRCLE), 32, 32), SourceImage.sourceImage(new StringReader(GREEN_CIRCLE), 16, 16));
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        Svg2Outputs.svgToOutputs(new StringReader(GREEN_CIRCLE), icoOutput(actual, icoImage(32, 32), icoImage(16, 16)));
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+}
\ No newline at end of file
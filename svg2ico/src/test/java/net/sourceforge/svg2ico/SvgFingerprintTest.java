@@ -0,0 +1,71 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.SvgFingerprint.svgFingerprint;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class SvgFingerprintTest {
+
+    @Test
+    void ignoresDifferencesThatDoNotAffectRendering() throws ImageConversionException {
+        final String original = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\" version=\"1.1\">\n" +
+                "    <defs><linearGradient id=\"gradient\"><stop offset=\"0\" stop-color=\"#00ff00\"/></linearGradient></defs>\n" +
+                "    <path id=\"path12\" fill=\"url(#gradient)\" d=\"M 1.50,2 L 3 4 z\"/>\n" +
+                "</svg>\n";
+        final String reExported = "<?xml version=\"1.0\"?>\n" +
+                "<!-- Re-exported -->\n" +
+                "<svg version=\"1.1\" height=\"32\" width=\"32.0\" xmlns=\"http://www.w3.org/2000/svg\" xmlns:inkscape=\"http://www.inkscape.org/namespaces/inkscape\">" +
+                "<defs><linearGradient id=\"linearGradient873\"><stop stop-color=\"#00ff00\" offset=\"0.0\"/></linearGradient></defs>" +
+                "<path d=\"M1.5 2L3 4z\" fill=\"url(#linearGradient873)\" inkscape:label=\"dot\"/>" +
+                "</svg>";
+        assertEquals(svgFingerprint(new StringReader(original)), svgFingerprint(new StringReader(reExported)));
+    }
+
+    @Test
+    void distinguishesDifferentGeometry() throws ImageConversionException {
+        assertNotEquals(
+                svgFingerprint(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\"><path d=\"M1 2L3 4\"/></svg>")),
+                svgFingerprint(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\"><path d=\"M1 2L3 5\"/></svg>"))
+        );
+    }
+
+    @Test
+    void distinguishesWhichElementAReferenceTargets() throws ImageConversionException {
+        final String defs = "<defs><circle id=\"a\" r=\"1\"/><circle id=\"b\" r=\"2\"/></defs>";
+        assertNotEquals(
+                svgFingerprint(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">" + defs + "<use xlink:href=\"#a\"/></svg>")),
+                svgFingerprint(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\">" + defs + "<use xlink:href=\"#b\"/></svg>"))
+        );
+    }
+
+    @Test
+    void doesNotMistakeHexColoursForReferences() throws ImageConversionException {
+        assertEquals(
+                svgFingerprint(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\"><circle id=\"fff\" fill=\"#fff\" stroke=\"#abcdef\" r=\"1\"/><style>circle { color: #abcdef }</style></svg>")),
+                svgFingerprint(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\"><circle id=\"abcdef\" fill=\"#fff\" stroke=\"#abcdef\" r=\"1\"/><style>circle { color: #abcdef }</style></svg>"))
+        );
+    }
+
+    @Test
+    void distinguishesWhitespaceBetweenWordsInDifferentTextChunks() throws ImageConversionException {
+        assertNotEquals(
+                svgFingerprint(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\"><text>Hello <tspan>world</tspan></text></svg>")),
+                svgFingerprint(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\"><text>Hello<tspan>world</tspan></text></svg>"))
+        );
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+
+import static net.sourceforge.svg2ico.SvgScan.svgScan;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SvgScanTest {
+
+    @Test
+    void readsSizeAndComplexityOfAnSvg() throws ImageConversionException {
+        final SvgScan svgScan = svgScan(new StringReader("<?xml version=\"1.0\"?>\n" +
+                "<!DOCTYPE svg PUBLIC \"-//W3C//DTD SVG 1.1//EN\" \"http://www.w3.org/Graphics/SVG/1.1/DTD/svg11.dtd\">\n" +
+                "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"1in\" height=\"50%\" viewBox=\"0 0 10 20\" version=\"1.1\">\n" +
+                "    <path d=\"M0 0L1 1 2 2 3 3z\" style=\"filter: url(#blur)\"/>\n" +
+                "    <polygon points=\"0,0 1,1 2,2\" mask=\"url(#mask)\"/>\n" +
+                "</svg>\n"));
+        assertEquals(96, svgScan.width());
+        assertEquals(20, svgScan.height());
+        assertArrayEquals(new float[]{0, 0, 10, 20}, svgScan.viewBox());
+        assertEquals(3, svgScan.elementCount());
+        assertEquals(8, svgScan.pathSegmentCount());
+        assertEquals(1, svgScan.filterCount());
+        assertEquals(1, svgScan.maskCount());
+    }
+
+    @Test
+    void rejectsMalformedSvg() {
+        assertThrows(ImageConversionException.class, () -> svgScan(new StringReader("<svg xmlns=\"http://www.w3.org/2000/svg\"><circle></svg>")));
+    }
+
+    @Test
+    void rejectsDocumentsThatAreNotSvg() {
+        assertThrows(ImageConversionException.class, () -> svgScan(new StringReader("<html xmlns=\"http://www.w3.org/1999/xhtml\"/>")));
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 Mark Slater
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License. You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package net.sourceforge.svg2ico;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+final class TestingUtilities {
+
+    // Solid green at the centre and transparent in the corners.
+    static final String GREEN_CIRCLE = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\" version=\"1.1\">\n" +
+            "    <circle fill=\"#00ff00\" cx=\"16\" cy=\"16\" r=\"8\"/>\n" +
+            "</svg>\n";
+
+    // Curves, a stroke, a translucent gradient, a rotated translucent shape and a blur, so renders exercise antialiasing, alpha and filters.
+    static final String ICON = "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"32\" height=\"32\" viewBox=\"0 0 32 32\">" +
+            "<linearGradient id=\"g\"><stop offset=\"0\" stop-color=\"#f80\"/><stop offset=\"1\" stop-color=\"#08f\" stop-opacity=\"0.5\"/></linearGradient>" +
+            "<filter id=\"f\"><feGaussianBlur stdDeviation=\"1\"/></filter>" +
+            "<circle cx=\"13\" cy=\"14\" r=\"10\" fill=\"url(#g)\" stroke=\"#123\" stroke-width=\"1.5\"/>" +
+            "<rect x=\"12\" y=\"12\" width=\"17\" height=\"15\" rx=\"3\" fill=\"#0a0\" fill-opacity=\"0.3\" transform=\"rotate(20 20 20)\"/>" +
+            "<path d=\"M4 4 L28 4 L28 10 Z\" fill=\"#80f\" fill-opacity=\"0.6\" filter=\"url(#f)\"/>" +
+            "</svg>";
+
+    private TestingUtilities() {
+    }
+
+    // Compares colours weighted by coverage, since the colour of an almost transparent pixel is invisible.
+    static int premultiplied(final int argb, final int shift) {
+        return shift == 24 ? argb >>> 24 : (argb >>> shift & 0xff) * (argb >>> 24) / 255;
+    }
+
+    static void assertImagesEqual(final BufferedImage expected, final BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "Pixel " + x + ", " + y);
+            }
+        }
+    }
+
+}